@@ -191,11 +191,49 @@ public class Bits {
 
     public static class Ray {
 
+        private static final long[] BETWEEN = new long[Square.COUNT * Square.COUNT];
+        private static final long[] LINE = new long[Square.COUNT * Square.COUNT];
+
+        static {
+            for (int from = 0; from < Square.COUNT; from++) {
+                for (int to = 0; to < Square.COUNT; to++) {
+                    BETWEEN[from * Square.COUNT + to] = calculateBetween(from, to);
+                }
+            }
+            for (int from = 0; from < Square.COUNT; from++) {
+                for (int to = 0; to < Square.COUNT; to++) {
+                    if (from == to || direction(from, to) == 0) continue;
+                    long line = Bits.of(from) | Bits.of(to) | between(from, to);
+                    for (int sq = 0; sq < Square.COUNT; sq++) {
+                        if (contains(between(from, sq), to) || contains(between(to, sq), from)) {
+                            line |= Bits.of(sq);
+                        }
+                    }
+                    LINE[from * Square.COUNT + to] = line;
+                }
+            }
+        }
+
         /**
-         * Calculates the ray (bitboard) between two squares on the chessboard.
+         * Returns the ray (bitboard) between two squares on the chessboard, exclusive of both squares.
          */
         public static long between(int from, int to) {
-            if (!Square.isValid(from) || !Square.isValid(to) || (from == to)) {
+            if (!Square.isValid(from) || !Square.isValid(to)) {
+                return 0L;
+            }
+            return BETWEEN[from * Square.COUNT + to];
+        }
+
+        /**
+         * Returns the full line (bitboard) through two squares on the chessboard, from edge to edge and inclusive of both
+         * squares, or an empty bitboard if the squares do not share a rank, file or diagonal.
+         */
+        public static long line(int from, int to) {
+            return LINE[from * Square.COUNT + to];
+        }
+
+        private static long calculateBetween(int from, int to) {
+            if (from == to) {
                 return 0L;
             }
             int offset = direction(from, to);
@@ -1,7 +1,9 @@
 package com.kelseyde.calvin.board;
 
 import com.kelseyde.calvin.board.Bits.File;
+import com.kelseyde.calvin.board.Bits.Ray;
 import com.kelseyde.calvin.board.Bits.Square;
+import com.kelseyde.calvin.movegen.Attacks;
 import com.kelseyde.calvin.search.Search;
 import com.kelseyde.calvin.uci.UCI;
 import com.kelseyde.calvin.utils.notation.FEN;
@@ -18,22 +20,61 @@ import java.util.Arrays;
  */
 public class Board {
 
+    private static final byte NO_PIECE = -1;
+    private static final long[] NO_HISTORY = new long[0];
+
+    private static final byte CHECKERS_COMPUTED = 1;
+    private static final byte PINNED_COMPUTED   = 2;
+    private static final byte THREATS_COMPUTED  = 4;
+    private static final byte CHECK_SQUARES_COMPUTED  = 8;
+    private static final byte CHECK_BLOCKERS_COMPUTED = 16;
+
     private long[] bitboards;
-    private Piece[] pieces;
-    private BoardState state;
-    private BoardState[] states;
+    private byte[] pieces;
     private Move[] moves;
     private boolean white;
     private int ply;
 
+    // The state of each position in the game, indexed by ply, with the current position at the top of the stack. Making
+    // a move copies the current state one slot up the stack and updates it in place, and unmaking a move drops back down
+    // again, so that nothing is allocated during make/unmake. The non-pawn keys are stored two per ply, one per colour.
+    private long[] keys;
+    private long[] pawnKeys;
+    private long[] nonPawnKeys;
+    private int[] rights;
+    private byte[] enPassantFiles;
+    private int[] halfMoveClocks;
+    private byte[] moved;
+    private byte[] captured;
+
+    // The checkers, pinned pieces and enemy attacks of each position on the stack, indexed by ply. These are computed
+    // lazily the first time they are asked for, and the flags record which of them are already known for each ply. A
+    // position never changes while it is on the stack, so they stay valid after unmaking the moves played from it. The
+    // check squares are stored once per piece type for each ply.
+    private long[] checkers;
+    private long[] pinned;
+    private long[] threats;
+    private long[] checkSquares;
+    private long[] checkBlockers;
+    private byte[] computed;
+
+    // The keys of the positions played before the bottom of the stack that could still be repeated - those since the last
+    // irreversible move - oldest first. This prefix of the game history is never modified, and so a single copy of it is
+    // shared between every board copied from the same root position, such as the boards of each search thread.
+    private long[] history;
+
     public Board() {
-        this.bitboards   = new long[Piece.COUNT + 2];
-        this.pieces      = new Piece[Square.COUNT];
-        this.moves       = new Move[Search.MAX_DEPTH];
-        this.states      = new BoardState[Search.MAX_DEPTH];
-        this.state       = new BoardState();
-        this.white       = true;
-        this.ply         = 0;
+        this.bitboards      = new long[Piece.COUNT + 2];
+        this.pieces         = new byte[Square.COUNT];
+        this.white          = true;
+        this.ply            = 0;
+        this.history        = NO_HISTORY;
+        Arrays.fill(pieces, NO_PIECE);
+        allocateStack(Search.MAX_DEPTH);
+        this.rights[0]          = Castling.startpos();
+        this.enPassantFiles[0]  = -1;
+        this.moved[0]           = NO_PIECE;
+        this.captured[0]        = NO_PIECE;
     }
 
     // Updates the internal board representation with the move just made. Toggles the piece bitboards to
@@ -43,10 +84,11 @@ public class Board {
 
         int from = move.from();
         int to = move.to();
-        Piece piece = pieces[from];
+        Piece piece = pieceAt(from);
         if (piece == null) return false;
-        Piece captured = move.isEnPassant() ? Piece.PAWN : pieces[to];
-        states[ply] = state.copy();
+        Piece captured = move.isEnPassant() ? Piece.PAWN : pieceAt(to);
+        pushState();
+        moves[ply - 1] = move;
 
         if (move.isPawnDoubleMove())  makePawnDoubleMove(from, to);
         else if (move.isCastling())   makeCastleMove(from, to);
@@ -55,8 +97,6 @@ public class Board {
         else                          makeStandardMove(from, to, piece, captured);
 
         updateState(from, to, piece, captured, move);
-        moves[ply++] = move;
-        checkMaxPly();
         white = !white;
 
         return true;
@@ -69,17 +109,18 @@ public class Board {
     public void unmakeMove() {
 
         white = !white;
-        Move move = moves[--ply];
+        Move move = moves[ply - 1];
         int from = move.from();
         int to = move.to();
         Piece piece = pieceAt(to);
+        Piece captured = Piece.of(this.captured[ply]);
 
         if (move.isCastling())        unmakeCastlingMove(from, to);
-        else if (move.isPromotion())  unmakePromotionMove(from, to, move.promoPiece());
+        else if (move.isPromotion())  unmakePromotionMove(from, to, move.promoPiece(), captured);
         else if (move.isEnPassant())  unmakeEnPassantMove(from, to);
-        else                          unmakeStandardMove(from, to, piece);
+        else                          unmakeStandardMove(from, to, piece, captured);
 
-        state = states[ply];
+        ply--;
 
     }
 
@@ -195,20 +236,20 @@ public class Board {
 
     private void updateState(int from, int to, Piece piece, Piece captured, Move move) {
 
-        state.moved = piece;
-        state.captured = captured;
+        this.moved[ply] = (byte) piece.index;
+        this.captured[ply] = captured != null ? (byte) captured.index : NO_PIECE;
         boolean resetClock = captured != null || Piece.PAWN.equals(piece);
-        state.halfMoveClock = resetClock ? 0 : ++state.halfMoveClock;
+        halfMoveClocks[ply] = resetClock ? 0 : halfMoveClocks[ply] + 1;
 
         int castleRights = updateCastleRights(from, to, piece);
-        state.key ^= Key.rights(state.rights, castleRights);
-        state.rights = castleRights;
+        keys[ply] ^= Key.rights(rights[ply], castleRights);
+        rights[ply] = castleRights;
 
         int enPassantFile = move.isPawnDoubleMove() ? File.of(to) : -1;
-        state.key ^= Key.enPassant(state.enPassantFile, enPassantFile);
-        state.enPassantFile = enPassantFile;
+        keys[ply] ^= Key.enPassant(enPassantFiles[ply], enPassantFile);
+        enPassantFiles[ply] = (byte) enPassantFile;
 
-        state.key ^= Key.sideToMove();
+        keys[ply] ^= Key.sideToMove();
 
     }
 
@@ -255,7 +296,7 @@ public class Board {
 
     }
 
-    private void unmakePromotionMove(int from, int to, Piece promotionPiece) {
+    private void unmakePromotionMove(int from, int to, Piece promotionPiece, Piece captured) {
 
         // Remove promoted piece
         updateBitboard(to, promotionPiece, white);
@@ -263,11 +304,11 @@ public class Board {
         updateMailbox(from, Piece.PAWN);
         updateBitboard(from, Piece.PAWN, white);
         // Put back captured piece
-        if (state.getCaptured() != null) {
-            updateBitboard(to, state.getCaptured(), !white);
+        if (captured != null) {
+            updateBitboard(to, captured, !white);
         }
         // If no piece was captured, this correctly nullifies the promo square
-        updateMailbox(to, state.getCaptured());
+        updateMailbox(to, captured);
 
     }
 
@@ -283,15 +324,15 @@ public class Board {
 
     }
 
-    private void unmakeStandardMove(int from, int to, Piece piece) {
+    private void unmakeStandardMove(int from, int to, Piece piece, Piece captured) {
 
         // Put back moving piece
         updateBitboards(to, from, piece, white);
         updateMailbox(to, from, piece);
-        if (state.getCaptured() != null) {
+        if (captured != null) {
             // Add back captured piece
-            updateBitboard(to, state.getCaptured(), !white);
-            updateMailbox(to, state.getCaptured());
+            updateBitboard(to, captured, !white);
+            updateMailbox(to, captured);
         }
 
     }
@@ -300,17 +341,55 @@ public class Board {
     // Used exclusively for null-move pruning during search.
     public void makeNullMove() {
         white = !white;
-        long key = state.key ^ Key.nullMove(state.enPassantFile);
-        long[] nonPawnKeys = new long[] {state.nonPawnKeys[0], state.nonPawnKeys[1]};
-        BoardState newState = new BoardState(key, state.pawnKey, nonPawnKeys, null, null, -1, state.getRights(), 0);
-        states[ply++] = state;
-        state = newState;
+        pushState();
+        keys[ply] ^= Key.nullMove(enPassantFiles[ply]);
+        enPassantFiles[ply] = -1;
+        halfMoveClocks[ply] = 0;
+        moved[ply] = NO_PIECE;
+        captured[ply] = NO_PIECE;
     }
 
     // Unmake the 'null' move used during null-move pruning to try and prove a beta cut-off.
     public void unmakeNullMove() {
         white = !white;
-        state = states[--ply];
+        ply--;
+    }
+
+    // Copy the current state one slot up the stack, and make it the current state.
+    private void pushState() {
+        if (ply + 1 >= keys.length) {
+            allocateStack(keys.length + 64);
+        }
+        int next = ply + 1;
+        keys[next] = keys[ply];
+        pawnKeys[next] = pawnKeys[ply];
+        nonPawnKeys[2 * next] = nonPawnKeys[2 * ply];
+        nonPawnKeys[2 * next + 1] = nonPawnKeys[2 * ply + 1];
+        rights[next] = rights[ply];
+        enPassantFiles[next] = enPassantFiles[ply];
+        halfMoveClocks[next] = halfMoveClocks[ply];
+        computed[next] = 0;
+        ply = next;
+    }
+
+    // Allocate the state stack with the given capacity, keeping any existing contents. The stack only grows when the
+    // game itself is longer than the stack, so this is never called during search.
+    private void allocateStack(int capacity) {
+        this.moves          = moves == null ? new Move[capacity] : Arrays.copyOf(moves, capacity);
+        this.keys           = keys == null ? new long[capacity] : Arrays.copyOf(keys, capacity);
+        this.pawnKeys       = pawnKeys == null ? new long[capacity] : Arrays.copyOf(pawnKeys, capacity);
+        this.nonPawnKeys    = nonPawnKeys == null ? new long[2 * capacity] : Arrays.copyOf(nonPawnKeys, 2 * capacity);
+        this.rights         = rights == null ? new int[capacity] : Arrays.copyOf(rights, capacity);
+        this.enPassantFiles = enPassantFiles == null ? new byte[capacity] : Arrays.copyOf(enPassantFiles, capacity);
+        this.halfMoveClocks = halfMoveClocks == null ? new int[capacity] : Arrays.copyOf(halfMoveClocks, capacity);
+        this.moved          = moved == null ? new byte[capacity] : Arrays.copyOf(moved, capacity);
+        this.captured       = captured == null ? new byte[capacity] : Arrays.copyOf(captured, capacity);
+        this.checkers       = checkers == null ? new long[capacity] : Arrays.copyOf(checkers, capacity);
+        this.pinned         = pinned == null ? new long[capacity] : Arrays.copyOf(pinned, capacity);
+        this.threats        = threats == null ? new long[capacity] : Arrays.copyOf(threats, capacity);
+        this.checkSquares   = checkSquares == null ? new long[Piece.COUNT * capacity] : Arrays.copyOf(checkSquares, Piece.COUNT * capacity);
+        this.checkBlockers  = checkBlockers == null ? new long[capacity] : Arrays.copyOf(checkBlockers, capacity);
+        this.computed       = computed == null ? new byte[capacity] : Arrays.copyOf(computed, capacity);
     }
 
     public void updateBitboards(int from, int to, Piece piece, boolean white) {
@@ -332,53 +411,35 @@ public class Board {
 
     private void updateKeys(int from, int to, Piece piece, boolean white) {
         long hash = Key.piece(from, to, piece, white);
-        state.key ^= hash;
+        keys[ply] ^= hash;
         if (piece == Piece.PAWN) {
-            state.pawnKey ^= hash;
+            pawnKeys[ply] ^= hash;
         } else {
-            int colourIndex = Colour.index(white);
-            state.nonPawnKeys[colourIndex] ^= hash;
+            nonPawnKeys[2 * ply + Colour.index(white)] ^= hash;
         }
     }
 
     private void updateKeys(int square, Piece piece, boolean white) {
         long hash = Key.piece(square, piece, white);
-        state.key ^= hash;
+        keys[ply] ^= hash;
         if (piece == Piece.PAWN) {
-            state.pawnKey ^= hash;
+            pawnKeys[ply] ^= hash;
         } else {
-            int colourIndex = Colour.index(white);
-            state.nonPawnKeys[colourIndex] ^= hash;
+            nonPawnKeys[2 * ply + Colour.index(white)] ^= hash;
         }
     }
 
     private void updateMailbox(int from, int to, Piece piece) {
-        pieces[from] = null;
-        pieces[to] = piece;
+        pieces[from] = NO_PIECE;
+        pieces[to] = (byte) piece.index;
     }
 
     private void updateMailbox(int square, Piece piece) {
-        pieces[square] = piece;
-    }
-
-    public void removeKing(boolean white) {
-        int pieceIndex = Piece.KING.index;
-        int colourIndex = white ? Piece.WHITE_PIECES : Piece.BLACK_PIECES;
-        long toggleMask = bitboards[pieceIndex] & bitboards[colourIndex];
-        bitboards[pieceIndex] ^= toggleMask;
-        bitboards[colourIndex] ^= toggleMask;
-    }
-
-    public void addKing(int kingSquare, boolean white) {
-        long toggleMask = Bits.of(kingSquare);
-        int pieceIndex = Piece.KING.index;
-        int colourIndex = white ? Piece.WHITE_PIECES : Piece.BLACK_PIECES;
-        bitboards[pieceIndex] |= toggleMask;
-        bitboards[colourIndex] |= toggleMask;
+        pieces[square] = piece != null ? (byte) piece.index : NO_PIECE;
     }
 
     private int updateCastleRights(int from, int to, Piece pieceType) {
-        int newRights = state.getRights();
+        int newRights = rights[ply];
         if (newRights == Castling.empty()) {
             // Both sides already lost castling rights, so nothing to calculate.
             return newRights;
@@ -410,7 +471,7 @@ public class Board {
     }
 
     public Piece pieceAt(int square) {
-        return pieces[square];
+        return Piece.of(pieces[square]);
     }
 
     public Piece captured(Move move) {
@@ -482,58 +543,84 @@ public class Board {
 
     public void setPawns(long pawns) {
         this.bitboards[Piece.PAWN.index] = pawns;
+        invalidateAttacks();
     }
 
     public void setKnights(long knights) {
         this.bitboards[Piece.KNIGHT.index] = knights;
+        invalidateAttacks();
     }
 
     public void setBishops(long bishops) {
         this.bitboards[Piece.BISHOP.index] = bishops;
+        invalidateAttacks();
     }
 
     public void setRooks(long rooks) {
         this.bitboards[Piece.ROOK.index] = rooks;
+        invalidateAttacks();
     }
 
     public void setQueens(long queens) {
         this.bitboards[Piece.QUEEN.index] = queens;
+        invalidateAttacks();
     }
 
     public void setKings(long kings) {
         this.bitboards[Piece.KING.index] = kings;
+        invalidateAttacks();
     }
 
     public void setWhitePieces(long whitePieces) {
         this.bitboards[Piece.WHITE_PIECES] = whitePieces;
+        invalidateAttacks();
     }
 
     public void setBlackPieces(long blackPieces) {
         this.bitboards[Piece.BLACK_PIECES] = blackPieces;
+        invalidateAttacks();
     }
 
     public void setBitboards(long[] bitboards) {
         this.bitboards = bitboards;
+        invalidateAttacks();
     }
 
     public void setPieces(Piece[] pieces) {
-        this.pieces = pieces;
+        for (int square = 0; square < Square.COUNT; square++) {
+            updateMailbox(square, pieces[square]);
+        }
+        invalidateAttacks();
     }
 
     public void setWhite(boolean white) {
         this.white = white;
+        invalidateAttacks();
+    }
+
+    public void setKey(long key) {
+        this.keys[ply] = key;
     }
 
-    public void setState(BoardState state) {
-        this.state = state;
+    public void setPawnKey(long pawnKey) {
+        this.pawnKeys[ply] = pawnKey;
     }
 
-    public void setStates(BoardState[] states) {
-        this.states = states;
+    public void setNonPawnKeys(long[] nonPawnKeys) {
+        this.nonPawnKeys[2 * ply] = nonPawnKeys[Colour.WHITE];
+        this.nonPawnKeys[2 * ply + 1] = nonPawnKeys[Colour.BLACK];
     }
 
-    public void setMoves(Move[] moves) {
-        this.moves = moves;
+    public void setRights(int rights) {
+        this.rights[ply] = rights;
+    }
+
+    public void setEnPassantFile(int enPassantFile) {
+        this.enPassantFiles[ply] = (byte) enPassantFile;
+    }
+
+    public void setHalfMoveClock(int halfMoveClock) {
+        this.halfMoveClocks[ply] = halfMoveClock;
     }
 
     public long getPawns() {
@@ -572,22 +659,10 @@ public class Board {
         return bitboards[Piece.WHITE_PIECES] | bitboards[Piece.BLACK_PIECES];
     }
 
-    public Piece[] getPieces() {
-        return pieces;
-    }
-
     public boolean isWhite() {
         return white;
     }
 
-    public BoardState getState() {
-        return state;
-    }
-
-    public BoardState[] getStates() {
-        return states;
-    }
-
     public Move[] getMoves() {
         return moves;
     }
@@ -597,15 +672,250 @@ public class Board {
     }
 
     public long key() {
-        return state.getKey();
+        return keys[ply];
     }
 
     public long pawnKey() {
-        return state.getPawnKey();
+        return pawnKeys[ply];
     }
 
+    public long nonPawnKey(boolean white) {
+        return nonPawnKeys[2 * ply + Colour.index(white)];
+    }
+
+    // A copy of the non-pawn keys of both sides, indexed by colour.
     public long[] nonPawnKeys() {
-        return state.nonPawnKeys;
+        return new long[] { nonPawnKey(true), nonPawnKey(false) };
+    }
+
+    public int rights() {
+        return rights[ply];
+    }
+
+    public int enPassantFile() {
+        return enPassantFiles[ply];
+    }
+
+    public int halfMoveClock() {
+        return halfMoveClocks[ply];
+    }
+
+    // The number of positions in the shared game history before the bottom of the stack. These positions are addressed
+    // with negative plies, from -1 for the position just before the bottom of the stack to -historyLength().
+    public int historyLength() {
+        return history.length;
+    }
+
+    // The key of the position at the given ply of the game history, which is negative for the shared history.
+    public long keyAt(int ply) {
+        return ply >= 0 ? keys[ply] : history[history.length + ply];
+    }
+
+    // Whether the position at the given ply of the game history was reached by an irreversible move - a capture or a
+    // pawn move - in which case no earlier position can ever be repeated. The shared history stops at the last such
+    // position, so it never needs to be checked.
+    public boolean isIrreversibleAt(int ply) {
+        return ply >= 0 && (captured[ply] != NO_PIECE || moved[ply] == Piece.PAWN.index);
+    }
+
+    /**
+     * The pieces giving check to the side to move.
+     */
+    public long checkers() {
+        if ((computed[ply] & CHECKERS_COMPUTED) == 0) {
+            checkers[ply] = calculateCheckers();
+            computed[ply] |= CHECKERS_COMPUTED;
+        }
+        return checkers[ply];
+    }
+
+    public boolean inCheck() {
+        return checkers() != 0;
+    }
+
+    /**
+     * The pieces of the side to move that are pinned to their king by an enemy slider.
+     */
+    public long pinned() {
+        if ((computed[ply] & PINNED_COMPUTED) == 0) {
+            pinned[ply] = calculatePinned();
+            computed[ply] |= PINNED_COMPUTED;
+        }
+        return pinned[ply];
+    }
+
+    /**
+     * The squares attacked by the opponent of the side to move. Sliders attack through the king of the side to move, so
+     * that the squares the king would still be attacked on if it stepped back along the line of a check are included,
+     * and the king can move exactly to those squares that are not in this set.
+     */
+    public long threats() {
+        if ((computed[ply] & THREATS_COMPUTED) == 0) {
+            threats[ply] = calculateThreats();
+            computed[ply] |= THREATS_COMPUTED;
+        }
+        return threats[ply];
+    }
+
+    /**
+     * The squares from which a piece of the given type belonging to the side to move would give check to the opponent's
+     * king - excluding any discovered check uncovered by the move that puts it there.
+     */
+    public long checkSquares(Piece piece) {
+        if ((computed[ply] & CHECK_SQUARES_COMPUTED) == 0) {
+            calculateCheckSquares();
+            computed[ply] |= CHECK_SQUARES_COMPUTED;
+        }
+        return checkSquares[Piece.COUNT * ply + piece.index];
+    }
+
+    /**
+     * The pieces of the side to move that stand alone between one of our sliders and the opponent's king. Moving one of
+     * these off the line between the slider and the king gives discovered check.
+     */
+    public long checkBlockers() {
+        if ((computed[ply] & CHECK_BLOCKERS_COMPUTED) == 0) {
+            checkBlockers[ply] = calculateBlockers(kingSquare(!white), !white) & us();
+            computed[ply] |= CHECK_BLOCKERS_COMPUTED;
+        }
+        return checkBlockers[ply];
+    }
+
+    /**
+     * Checks if a move gives check, *before* the move is made on the board. Ordinary moves are resolved with the cached
+     * check squares and check blockers; only promotions, castling and en passant need their attacks calculating.
+     */
+    public boolean givesCheck(Move move) {
+
+        int from = move.from();
+        int to = move.to();
+
+        if (move.isCastling())
+            return castlingGivesCheck(from, to);
+
+        // Direct check
+        if (!move.isPromotion() && Bits.contains(checkSquares(Piece.of(pieces[from])), to))
+            return true;
+
+        // Discovered check
+        long blockers = checkBlockers();
+        if (blockers != 0 && Bits.contains(blockers, from) && !Bits.contains(Ray.line(kingSquare(!white), from), to))
+            return true;
+
+        if (move.isPromotion()) {
+            long occupied = getOccupied() ^ Bits.of(from);
+            return Bits.contains(Attacks.attacks(to, move.promoPiece(), occupied, white), kingSquare(!white));
+        }
+
+        if (move.isEnPassant()) {
+            // Removing the captured pawn can uncover a check along its rank or diagonal.
+            int captureSquare = white ? to - 8 : to + 8;
+            long occupied = getOccupied() ^ Bits.of(from) ^ Bits.of(captureSquare) | Bits.of(to);
+            return isAttackedBySliders(kingSquare(!white), occupied, getRooks(white));
+        }
+
+        return false;
+
+    }
+
+    // Either the rook gives check after castling, or the king uncovers a check as it moves away.
+    private boolean castlingGivesCheck(int from, int to) {
+        boolean kingside = Castling.isKingside(from, to);
+        int rookFrom = UCI.Options.chess960 ? to : Castling.rookFrom(kingside, white);
+        int rookTo = Castling.rookTo(kingside, white);
+        int kingTo = Castling.kingTo(kingside, white);
+        long occupied = getOccupied() ^ Bits.of(from) ^ Bits.of(rookFrom) | Bits.of(kingTo) | Bits.of(rookTo);
+        long rooks = getRooks(white) ^ Bits.of(rookFrom) | Bits.of(rookTo);
+        return isAttackedBySliders(kingSquare(!white), occupied, rooks);
+    }
+
+    // Whether the given square is attacked by a slider of the side to move, given the occupancy and rooks after a move.
+    private boolean isAttackedBySliders(int square, long occupied, long rooks) {
+        long diagonals = getBishops(white) | getQueens(white);
+        long orthogonals = rooks | getQueens(white);
+        return (Attacks.bishopAttacks(square, occupied) & diagonals) != 0
+                || (Attacks.rookAttacks(square, occupied) & orthogonals) != 0;
+    }
+
+    private long calculateCheckers() {
+        int kingSquare = kingSquare(white);
+        long occupied = getOccupied();
+        long diagonals = getBishops(!white) | getQueens(!white);
+        long orthogonals = getRooks(!white) | getQueens(!white);
+        return (Attacks.pawnAttacks(Bits.of(kingSquare), white) & getPawns(!white))
+                | (Attacks.knightAttacks(kingSquare) & getKnights(!white))
+                | (Attacks.bishopAttacks(kingSquare, occupied) & diagonals)
+                | (Attacks.rookAttacks(kingSquare, occupied) & orthogonals);
+    }
+
+    private long calculatePinned() {
+        return calculateBlockers(kingSquare(white), white) & us();
+    }
+
+    // Find the pieces of either colour that stand alone between the king on the given square and an enemy slider.
+    private long calculateBlockers(int kingSquare, boolean white) {
+        long occupied = getOccupied();
+        long diagonals = getBishops(!white) | getQueens(!white);
+        long orthogonals = getRooks(!white) | getQueens(!white);
+
+        // The sliders that would attack the king on an empty board are blocked by the piece between them and the king,
+        // if there is exactly one.
+        long snipers = (Attacks.bishopAttacks(kingSquare, 0L) & diagonals)
+                | (Attacks.rookAttacks(kingSquare, 0L) & orthogonals);
+        long blockers = 0L;
+        while (snipers != 0) {
+            int sniper = Bits.next(snipers);
+            long between = Ray.between(kingSquare, sniper) & occupied;
+            if (Bits.count(between) == 1) {
+                blockers |= between;
+            }
+            snipers = Bits.pop(snipers);
+        }
+        return blockers;
+    }
+
+    private void calculateCheckSquares() {
+        int kingSquare = kingSquare(!white);
+        long occupied = getOccupied();
+        int index = Piece.COUNT * ply;
+        long bishopSquares = Attacks.bishopAttacks(kingSquare, occupied);
+        long rookSquares = Attacks.rookAttacks(kingSquare, occupied);
+        checkSquares[index + Piece.PAWN.index]   = Attacks.pawnAttacks(Bits.of(kingSquare), !white);
+        checkSquares[index + Piece.KNIGHT.index] = Attacks.knightAttacks(kingSquare);
+        checkSquares[index + Piece.BISHOP.index] = bishopSquares;
+        checkSquares[index + Piece.ROOK.index]   = rookSquares;
+        checkSquares[index + Piece.QUEEN.index]  = bishopSquares | rookSquares;
+        checkSquares[index + Piece.KING.index]   = 0L;
+    }
+
+    private long calculateThreats() {
+        long occupied = getOccupied() ^ getKing(white);
+        long threats = Attacks.pawnAttacks(getPawns(!white), !white);
+
+        long knights = getKnights(!white);
+        while (knights != 0) {
+            threats |= Attacks.knightAttacks(Bits.next(knights));
+            knights = Bits.pop(knights);
+        }
+
+        long diagonals = getBishops(!white) | getQueens(!white);
+        while (diagonals != 0) {
+            threats |= Attacks.bishopAttacks(Bits.next(diagonals), occupied);
+            diagonals = Bits.pop(diagonals);
+        }
+
+        long orthogonals = getRooks(!white) | getQueens(!white);
+        while (orthogonals != 0) {
+            threats |= Attacks.rookAttacks(Bits.next(orthogonals), occupied);
+            orthogonals = Bits.pop(orthogonals);
+        }
+
+        return threats | Attacks.kingAttacks(kingSquare(!white));
+    }
+
+    // Forget the attack information of the current position, after it has been modified other than by making a move.
+    private void invalidateAttacks() {
+        computed[ply] = 0;
     }
 
     public int kingSquare(boolean white) {
@@ -633,51 +943,42 @@ public class Board {
         return FEN.parse(fen).toBoard();
     }
 
-    private void checkMaxPly() {
-        if (ply >= states.length) {
-            BoardState[] newStates = new BoardState[states.length + 64];
-            System.arraycopy(states, 0, newStates, 0, states.length);
-
-            Move[] newMoves = new Move[moves.length + 64];
-            System.arraycopy(moves, 0, newMoves, 0, moves.length);
-
-            states = newStates;
-            moves = newMoves;
-        }
-    }
-
+    // Copies the current position, which becomes the bottom of the stack of the copy. The part of the game history that
+    // could still be repeated is handed over as the shared history of the copy. If the current position is already at
+    // the bottom of the stack, the shared history is simply passed on, so copying a root position for each search thread
+    // costs the same however long the game has been.
     public Board copy() {
         Board newBoard = new Board();
-        newBoard.setPawns(this.getPawns());
-        newBoard.setKnights(this.getKnights());
-        newBoard.setBishops(this.getBishops());
-        newBoard.setRooks(this.getRooks());
-        newBoard.setQueens(this.getQueens());
-        newBoard.setKings(this.getKings());
-        newBoard.setWhitePieces(this.getWhitePieces());
-        newBoard.setBlackPieces(this.getBlackPieces());
-        newBoard.setWhite(this.isWhite());
-        newBoard.setState(this.getState().copy());
-        BoardState[] newStates = new BoardState[this.getStates().length];
-        for (int i = 0; i < this.getStates().length; i++) {
-            if (this.getStates()[i] == null) {
-                break;
-            }
-            newStates[i] = this.getStates()[i].copy();
-        }
-        newBoard.setStates(newStates);
-        Move[] newMoves = new Move[this.getMoves().length];
-        for (int i = 0; i < this.getMoves().length; i++) {
-            if (this.getMoves()[i] == null) {
-                break;
-            }
-            newMoves[i] = new Move(this.getMoves()[i].value());
-        }
-        newBoard.setMoves(newMoves);
-        newBoard.setPieces(Arrays.copyOf(this.getPieces(), this.getPieces().length));
+        newBoard.bitboards = Arrays.copyOf(bitboards, bitboards.length);
+        newBoard.pieces = Arrays.copyOf(pieces, pieces.length);
+        newBoard.white = white;
+        newBoard.keys[0] = keys[ply];
+        newBoard.pawnKeys[0] = pawnKeys[ply];
+        newBoard.nonPawnKeys[0] = nonPawnKeys[2 * ply];
+        newBoard.nonPawnKeys[1] = nonPawnKeys[2 * ply + 1];
+        newBoard.rights[0] = rights[ply];
+        newBoard.enPassantFiles[0] = enPassantFiles[ply];
+        newBoard.halfMoveClocks[0] = halfMoveClocks[ply];
+        newBoard.moved[0] = moved[ply];
+        newBoard.captured[0] = captured[ply];
+        newBoard.history = ply == 0 ? history : repeatableHistory();
         return newBoard;
     }
 
+    // Collect the keys of the positions before the current one that could still be repeated, oldest first. Positions
+    // before the last irreversible move are left out, which bounds the size of the history by the fifty-move rule.
+    private long[] repeatableHistory() {
+        int start = ply;
+        while (start > 0 && !isIrreversibleAt(start)) {
+            start--;
+        }
+        int inherited = start == 0 && !isIrreversibleAt(0) ? history.length : 0;
+        long[] repeatable = new long[inherited + ply - start];
+        System.arraycopy(history, history.length - inherited, repeatable, 0, inherited);
+        System.arraycopy(keys, start, repeatable, inherited, ply - start);
+        return repeatable;
+    }
+
     public void print() {
 
         for (int rank = 7; rank >= 0; --rank) {
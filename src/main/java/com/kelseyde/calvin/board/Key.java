@@ -70,8 +70,8 @@ public class Key {
         }
 
         // Update key with en passant, castling rights, and side to move
-        key ^= EN_PASSANT_FILE[board.getState().getEnPassantFile() + 1];
-        key ^= castling(board.getState().getRights());
+        key ^= EN_PASSANT_FILE[board.enPassantFile() + 1];
+        key ^= castling(board.rights());
         if (board.isWhite()) {
             key ^= SIDE_TO_MOVE;
         }
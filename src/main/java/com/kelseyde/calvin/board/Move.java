@@ -33,33 +33,27 @@ public record Move(short value) {
     }
 
     public int from() {
-        return value & FROM_MASK;
+        return from(value);
     }
 
     public int to() {
-        return (value & TO_MASK) >>> 6;
+        return to(value);
     }
 
     public int flag() {
-        return value >>> 12;
+        return flag(value);
     }
 
     public Piece promoPiece() {
-        return switch (flag()) {
-            case PROMOTE_TO_QUEEN_FLAG -> Piece.QUEEN;
-            case PROMOTE_TO_ROOK_FLAG -> Piece.ROOK;
-            case PROMOTE_TO_BISHOP_FLAG -> Piece.BISHOP;
-            case PROMOTE_TO_KNIGHT_FLAG -> Piece.KNIGHT;
-            default -> null;
-        };
+        return promoPiece(value);
     }
 
     public boolean isPromotion() {
-        return flag() >= PROMOTE_TO_QUEEN_FLAG;
+        return isPromotion(value);
     }
 
     public boolean isEnPassant() {
-        return flag() == EN_PASSANT_FLAG;
+        return isEnPassant(value);
     }
 
     public boolean isCastling() {
@@ -89,6 +83,38 @@ public record Move(short value) {
         return this.from() == move.from() && this.to() == move.to() && this.flag() == move.flag();
     }
 
+    // Accessors for an encoded move, so that moves in a move list can be inspected without creating a Move.
+
+    public static int from(short move) {
+        return move & FROM_MASK;
+    }
+
+    public static int to(short move) {
+        return (move & TO_MASK) >>> 6;
+    }
+
+    public static int flag(short move) {
+        return move >>> 12;
+    }
+
+    public static Piece promoPiece(short move) {
+        return switch (flag(move)) {
+            case PROMOTE_TO_QUEEN_FLAG -> Piece.QUEEN;
+            case PROMOTE_TO_ROOK_FLAG -> Piece.ROOK;
+            case PROMOTE_TO_BISHOP_FLAG -> Piece.BISHOP;
+            case PROMOTE_TO_KNIGHT_FLAG -> Piece.KNIGHT;
+            default -> null;
+        };
+    }
+
+    public static boolean isPromotion(short move) {
+        return flag(move) >= PROMOTE_TO_QUEEN_FLAG;
+    }
+
+    public static boolean isEnPassant(short move) {
+        return flag(move) == EN_PASSANT_FLAG;
+    }
+
     /**
      * Generate a {@link Move} from combined algebraic notation (e.g. "e2e4"), as used in the UCI protocol.
      * Special case promotion: "a2a1q" - values 'q' | 'b' | 'r' | 'n'
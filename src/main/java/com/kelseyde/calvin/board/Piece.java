@@ -18,6 +18,8 @@ public enum Piece {
     public static final int WHITE_PIECES = 6;
     public static final int BLACK_PIECES = 7;
 
+    private static final Piece[] VALUES = values();
+
     final int index;
 
     final String code;
@@ -35,6 +37,11 @@ public enum Piece {
         return code;
     }
 
+    // The piece with the given index, or null if the index is negative (an empty square).
+    public static Piece of(int index) {
+        return index < 0 ? null : VALUES[index];
+    }
+
     public boolean isSlider() {
         return this == BISHOP || this == ROOK || this == QUEEN;
     }
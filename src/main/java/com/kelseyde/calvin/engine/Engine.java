@@ -2,12 +2,15 @@ package com.kelseyde.calvin.engine;
 
 import com.kelseyde.calvin.board.Board;
 import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.evaluation.BatchEvaluator;
+import com.kelseyde.calvin.evaluation.NNUE;
 import com.kelseyde.calvin.movegen.MoveGenerator;
 import com.kelseyde.calvin.search.ParallelSearcher;
 import com.kelseyde.calvin.search.Search;
 import com.kelseyde.calvin.search.SearchLimits;
 import com.kelseyde.calvin.search.SearchResult;
 import com.kelseyde.calvin.tables.tt.HashEntry;
+import com.kelseyde.calvin.tables.tt.HashStats;
 import com.kelseyde.calvin.tables.tt.TranspositionTable;
 import com.kelseyde.calvin.uci.UCI;
 import com.kelseyde.calvin.uci.UCICommand.GoCommand;
@@ -16,10 +19,14 @@ import com.kelseyde.calvin.utils.Perft;
 import com.kelseyde.calvin.utils.notation.FEN;
 import com.kelseyde.calvin.utils.notation.FEN.InvalidFenException;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.IntStream;
 
 /**
@@ -42,10 +49,12 @@ public class Engine {
     final EngineConfig config;
     final MoveGenerator movegen;
     final Perft perft;
-    final Search searcher;
+    final ParallelSearcher searcher;
+    final ExecutorService thinker;
 
     CompletableFuture<SearchResult> think;
     Board board;
+    BatchEvaluator batchEvaluator;
 
     private Engine() {
         this.config = new EngineConfig();
@@ -54,6 +63,11 @@ public class Engine {
         this.perft = new Perft();
         this.searcher = new ParallelSearcher(config, movegen, new TranspositionTable(config.hashConfig.defaultSizeMb));
         this.searcher.setPosition(board);
+        this.thinker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "think-thread");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     public void newGame() {
@@ -86,7 +100,7 @@ public class Engine {
             this.config.pondering = command.ponder();
             setSearchCancelled(false);
             stopThinking();
-            think = CompletableFuture.supplyAsync(() -> think(limits));
+            think = CompletableFuture.supplyAsync(() -> think(limits), thinker);
             think.thenAccept(UCI::writeMove);
         }
 
@@ -158,6 +172,53 @@ public class Engine {
         return pv;
     }
 
+    public void saveHash(Path path) throws IOException {
+        searcher.getTranspositionTable().save(path);
+    }
+
+    public void loadHash(Path path) throws IOException {
+        searcher.getTranspositionTable().load(path);
+    }
+
+    /**
+     * Returns the batch evaluator, creating it on first use. The evaluator and its pool of accumulators are kept between
+     * batches, and only recreated if the number of available cores has changed or a new EvalFile has been loaded.
+     */
+    public BatchEvaluator getBatchEvaluator() {
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        if (batchEvaluator == null || batchEvaluator.threadCount() != threadCount) {
+            if (batchEvaluator != null) {
+                batchEvaluator.shutdown();
+            }
+            batchEvaluator = new BatchEvaluator(threadCount);
+        }
+        return batchEvaluator;
+    }
+
+    public void loadEvalFile(Path path) throws IOException {
+        NNUE.loadNetwork(path);
+        // The input bucket caches of the batch evaluator hold accumulators computed with the previous network.
+        if (batchEvaluator != null) {
+            batchEvaluator.shutdown();
+            batchEvaluator = null;
+        }
+        // Every accumulator, and every search result in the hash table, was computed with the previous network.
+        searcher.clearHistory();
+        searcher.setPosition(board);
+    }
+
+    public HashStats hashStats() {
+        return searcher.getTranspositionTable().getStats();
+    }
+
+    public void setHashStatsEnabled(boolean enabled) {
+        searcher.getTranspositionTable().setStatsEnabled(enabled);
+    }
+
+    public long[] searchTimes() {
+        return searcher.searchTimes();
+    }
+
     public int hashfull() {
         return searcher.getTranspositionTable().fill();
     }
@@ -21,7 +21,7 @@ public class EngineConfig {
 
     public HashConfig hashConfig = HashConfig.builder()
             .minSizeMb(1)
-            .maxSizeMb(1024)
+            .maxSizeMb(65536)
             .defaultSizeMb(16)
             .build();
 
@@ -1,8 +1,8 @@
 package com.kelseyde.calvin.evaluation;
 
 import com.kelseyde.calvin.board.Colour;
-import jdk.incubator.vector.ShortVector;
-import jdk.incubator.vector.VectorSpecies;
+import com.kelseyde.calvin.evaluation.kernel.KernelSelector;
+import com.kelseyde.calvin.evaluation.kernel.Kernels;
 
 /**
  * The accumulator keeps track of the activations of the hidden layer of the neural network. It is incrementally updated
@@ -10,263 +10,104 @@ import jdk.incubator.vector.VectorSpecies;
  * from both white's and black's perspective, so that during evaluation the 'side to move' and 'not side to move' can be
  * easily flipped.
  * </p>
- * The Java Vector API is used to give the accumulator updates a performance boost via SIMD instructions.
+ * The updates themselves are delegated to the {@link Kernels} chosen on startup, which use SIMD instructions via the
+ * Java Vector API where the host supports it.
  */
 public class Accumulator {
 
-    private static final int HIDDEN_SIZE = NNUE.NETWORK.hiddenSize();
-    private static final short[] BIASES = NNUE.NETWORK.inputBiases();
-    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
-    private static final int LOOP_LENGTH = SPECIES.loopBound(HIDDEN_SIZE);
+    private static final Kernels KERNELS = KernelSelector.KERNELS;
 
     public short[] whiteFeatures;
     public short[] blackFeatures;
     public final boolean[] mirrored;
+    public final int[] buckets;
+
+    // The update that produces this accumulator from the one at the previous ply. Updates are applied lazily, so the
+    // features for each perspective are only valid once computed is set. The update is re-used for every move made at
+    // this ply, so that making a move does not allocate.
+    public final AccumulatorUpdate update;
+    public final boolean[] computed;
 
     public Accumulator(int featureCount) {
         this.whiteFeatures = new short[featureCount];
         this.blackFeatures = new short[featureCount];
         this.mirrored = new boolean[2];
+        this.buckets = new int[2];
+        this.update = new AccumulatorUpdate();
+        this.computed = new boolean[2];
     }
 
-    public void add(short[] weights, Feature feature, boolean whitePerspective) {
+    public void add(int bucket, int offset, boolean whitePerspective) {
         // Add a single feature to the accumulator.
-        boolean mirror = mirrored[Colour.index(whitePerspective)];
-        int offset = feature.index(whitePerspective, mirror) * HIDDEN_SIZE;
         short[] features = whitePerspective ? whiteFeatures : blackFeatures;
-
-        for (int i = 0; i < LOOP_LENGTH; i += SPECIES.length()) {
-
-            ShortVector.fromArray(SPECIES, features, i)
-                    .add(ShortVector.fromArray(SPECIES, weights, i + offset))
-                    .intoArray(features, i);
-
-        }
+        KERNELS.add(features, features, bucket, offset);
     }
 
-    public void sub(short[] weights, Feature feature, boolean whitePerspective) {
+    public void sub(int bucket, int offset, boolean whitePerspective) {
         // Subtract a single feature from the accumulator.
-        boolean mirror = mirrored[Colour.index(whitePerspective)];
-        int offset = feature.index(whitePerspective, mirror) * HIDDEN_SIZE;
         short[] features = whitePerspective ? whiteFeatures : blackFeatures;
-
-        for (int i = 0; i < LOOP_LENGTH; i += SPECIES.length()) {
-
-            ShortVector.fromArray(SPECIES, features, i)
-                    .sub(ShortVector.fromArray(SPECIES, weights, i + offset))
-                    .intoArray(features, i);
-
-        }
+        KERNELS.sub(features, features, bucket, offset);
     }
 
-    public void addAddAddAdd(short[] weights, Feature feat1, Feature feat2, Feature feat3, Feature feat4, boolean whitePerspective) {
+    public void addAddAddAdd(int bucket, int offset1, int offset2, int offset3, int offset4, boolean whitePerspective) {
         // Add a quartet of features to the accumulator.
-        boolean mirror = mirrored[Colour.index(whitePerspective)];
-        int offset1 = feat1.index(whitePerspective, mirror) * HIDDEN_SIZE;
-        int offset2 = feat2.index(whitePerspective, mirror) * HIDDEN_SIZE;
-        int offset3 = feat3.index(whitePerspective, mirror) * HIDDEN_SIZE;
-        int offset4 = feat4.index(whitePerspective, mirror) * HIDDEN_SIZE;
         short[] features = whitePerspective ? whiteFeatures : blackFeatures;
-
-        for (int i = 0; i < LOOP_LENGTH; i += SPECIES.length()) {
-
-            ShortVector.fromArray(SPECIES, features, i)
-                    .add(ShortVector.fromArray(SPECIES, weights, i + offset1))
-                    .add(ShortVector.fromArray(SPECIES, weights, i + offset2))
-                    .add(ShortVector.fromArray(SPECIES, weights, i + offset3))
-                    .add(ShortVector.fromArray(SPECIES, weights, i + offset4))
-                    .intoArray(features, i);
-
-        }
+        KERNELS.addAddAddAdd(features, features, bucket, offset1, offset2, offset3, offset4);
     }
 
-    public void subSubSubSub(short[] weights, Feature feat1, Feature feat2, Feature feat3, Feature feat4, boolean whitePerspective) {
+    public void subSubSubSub(int bucket, int offset1, int offset2, int offset3, int offset4, boolean whitePerspective) {
         // Subtract a quartet of features from the accumulator.
-        boolean mirror = mirrored[Colour.index(whitePerspective)];
-        int offset1 = feat1.index(whitePerspective, mirror) * HIDDEN_SIZE;
-        int offset2 = feat2.index(whitePerspective, mirror) * HIDDEN_SIZE;
-        int offset3 = feat3.index(whitePerspective, mirror) * HIDDEN_SIZE;
-        int offset4 = feat4.index(whitePerspective, mirror) * HIDDEN_SIZE;
         short[] features = whitePerspective ? whiteFeatures : blackFeatures;
-
-        for (int i = 0; i < LOOP_LENGTH; i += SPECIES.length()) {
-
-            ShortVector.fromArray(SPECIES, features, i)
-                    .sub(ShortVector.fromArray(SPECIES, weights, i + offset1))
-                    .sub(ShortVector.fromArray(SPECIES, weights, i + offset2))
-                    .sub(ShortVector.fromArray(SPECIES, weights, i + offset3))
-                    .sub(ShortVector.fromArray(SPECIES, weights, i + offset4))
-                    .intoArray(features, i);
-
-        }
+        KERNELS.subSubSubSub(features, features, bucket, offset1, offset2, offset3, offset4);
     }
 
-    public void apply(Accumulator prev, AccumulatorUpdate update, short[] whiteWeights, short[] blackWeights) {
+    public void apply(Accumulator prev, AccumulatorUpdate update, int bucket, boolean whitePerspective) {
         // Accumulator updates are 'fused' together, so that multiple feature updates can be applied in a single pass.
-        switch (update.getUpdateType()) {
-            case ADD -> add(prev, update, whiteWeights, blackWeights);
-            case ADD_SUB -> addSub(prev, update, whiteWeights, blackWeights);
-            case ADD_SUB_SUB -> addSubSub(prev, update, whiteWeights, blackWeights);
-            case ADD_ADD_SUB_SUB -> addAddSubSub(prev, update, whiteWeights, blackWeights);
-        }
-    }
-
-    public void add(Accumulator prev, AccumulatorUpdate update, short[] whiteWeights, short[] blackWeights) {
-
-        Feature add1 = update.adds[0];
-
-        boolean whiteMirror = mirrored[Colour.WHITE];
-        boolean blackMirror = mirrored[Colour.BLACK];
-
-        int wOffset = add1.index(true, whiteMirror) * HIDDEN_SIZE;
-        int bOffset = add1.index(false, blackMirror) * HIDDEN_SIZE;
-
-        for (int i = 0; i < LOOP_LENGTH; i += SPECIES.length()) {
-
-            ShortVector.fromArray(SPECIES, prev.whiteFeatures, i)
-                    .add(ShortVector.fromArray(SPECIES, whiteWeights, i + wOffset))
-                    .intoArray(whiteFeatures, i);
-
-            ShortVector.fromArray(SPECIES, prev.blackFeatures, i)
-                    .add(ShortVector.fromArray(SPECIES, blackWeights, i + bOffset))
-                    .intoArray(blackFeatures, i);
-
-        }
-    }
-
-    public void addSub(Accumulator prev, AccumulatorUpdate update, short[] whiteWeights, short[] blackWeights) {
-
-        Feature add1 = update.adds[0];
-        Feature sub1 = update.subs[0];
+        int perspective = Colour.index(whitePerspective);
+        int[] adds = update.adds[perspective];
+        int[] subs = update.subs[perspective];
 
-        boolean whiteMirror = mirrored[Colour.WHITE];
-        boolean blackMirror = mirrored[Colour.BLACK];
-
-        int wOffset1 = add1.index(true, whiteMirror) * HIDDEN_SIZE;
-        int bOffset1 = add1.index(false, blackMirror) * HIDDEN_SIZE;
-        int wOffset2 = sub1.index(true, whiteMirror) * HIDDEN_SIZE;
-        int bOffset2 = sub1.index(false, blackMirror) * HIDDEN_SIZE;
-
-        for (int i = 0; i < LOOP_LENGTH; i += SPECIES.length()) {
-
-            ShortVector.fromArray(SPECIES, prev.whiteFeatures, i)
-                    .add(ShortVector.fromArray(SPECIES, whiteWeights, i + wOffset1))
-                    .sub(ShortVector.fromArray(SPECIES, whiteWeights, i + wOffset2))
-                    .intoArray(whiteFeatures, i);
-
-            ShortVector.fromArray(SPECIES, prev.blackFeatures, i)
-                    .add(ShortVector.fromArray(SPECIES, blackWeights, i + bOffset1))
-                    .sub(ShortVector.fromArray(SPECIES, blackWeights, i + bOffset2))
-                    .intoArray(blackFeatures, i);
-
-        }
-    }
-
-    public void addSubSub(Accumulator prev, AccumulatorUpdate update, short[] whiteWeights, short[] blackWeights) {
-
-        Feature add1 = update.adds[0];
-        Feature sub1 = update.subs[0];
-        Feature sub2 = update.subs[1];
-
-        boolean whiteMirror = mirrored[Colour.WHITE];
-        boolean blackMirror = mirrored[Colour.BLACK];
-
-        int wOffset1 = add1.index(true, whiteMirror) * HIDDEN_SIZE;
-        int bOffset1 = add1.index(false, blackMirror) * HIDDEN_SIZE;
-        int wOffset2 = sub1.index(true, whiteMirror) * HIDDEN_SIZE;
-        int bOffset2 = sub1.index(false, blackMirror) * HIDDEN_SIZE;
-        int wOffset3 = sub2.index(true, whiteMirror) * HIDDEN_SIZE;
-        int bOffset3 = sub2.index(false, blackMirror) * HIDDEN_SIZE;
-
-        for (int i = 0; i < LOOP_LENGTH; i += SPECIES.length()) {
-
-            ShortVector.fromArray(SPECIES, prev.whiteFeatures, i)
-                    .add(ShortVector.fromArray(SPECIES, whiteWeights, i + wOffset1))
-                    .sub(ShortVector.fromArray(SPECIES, whiteWeights, i + wOffset2))
-                    .sub(ShortVector.fromArray(SPECIES, whiteWeights, i + wOffset3))
-                    .intoArray(whiteFeatures, i);
-
-            ShortVector.fromArray(SPECIES, prev.blackFeatures, i)
-                    .add(ShortVector.fromArray(SPECIES, blackWeights, i + bOffset1))
-                    .sub(ShortVector.fromArray(SPECIES, blackWeights, i + bOffset2))
-                    .sub(ShortVector.fromArray(SPECIES, blackWeights, i + bOffset3))
-                    .intoArray(blackFeatures, i);
-
-        }
-    }
-
-    public void addAddSubSub(Accumulator prev, AccumulatorUpdate update, short[] whiteWeights, short[] blackWeights) {
-
-        Feature add1 = update.adds[0];
-        Feature add2 = update.adds[1];
-        Feature sub1 = update.subs[0];
-        Feature sub2 = update.subs[1];
-
-        boolean whiteMirror = mirrored[Colour.WHITE];
-        boolean blackMirror = mirrored[Colour.BLACK];
-
-        int wOffset1 = add1.index(true, whiteMirror) * HIDDEN_SIZE;
-        int bOffset1 = add1.index(false, blackMirror) * HIDDEN_SIZE;
-        int wOffset2 = add2.index(true, whiteMirror) * HIDDEN_SIZE;
-        int bOffset2 = add2.index(false, blackMirror) * HIDDEN_SIZE;
-        int wOffset3 = sub1.index(true, whiteMirror) * HIDDEN_SIZE;
-        int bOffset3 = sub1.index(false, blackMirror) * HIDDEN_SIZE;
-        int wOffset4 = sub2.index(true, whiteMirror) * HIDDEN_SIZE;
-        int bOffset4 = sub2.index(false, blackMirror) * HIDDEN_SIZE;
-
-        for (int i = 0; i < LOOP_LENGTH; i += SPECIES.length()) {
-
-            ShortVector.fromArray(SPECIES, prev.whiteFeatures, i)
-                    .add(ShortVector.fromArray(SPECIES, whiteWeights, i + wOffset1))
-                    .add(ShortVector.fromArray(SPECIES, whiteWeights, i + wOffset2))
-                    .sub(ShortVector.fromArray(SPECIES, whiteWeights, i + wOffset3))
-                    .sub(ShortVector.fromArray(SPECIES, whiteWeights, i + wOffset4))
-                    .intoArray(whiteFeatures, i);
-
-            ShortVector.fromArray(SPECIES, prev.blackFeatures, i)
-                    .add(ShortVector.fromArray(SPECIES, blackWeights, i + bOffset1))
-                    .add(ShortVector.fromArray(SPECIES, blackWeights, i + bOffset2))
-                    .sub(ShortVector.fromArray(SPECIES, blackWeights, i + bOffset3))
-                    .sub(ShortVector.fromArray(SPECIES, blackWeights, i + bOffset4))
-                    .intoArray(blackFeatures, i);
+        short[] prevFeatures = whitePerspective ? prev.whiteFeatures : prev.blackFeatures;
+        short[] features = whitePerspective ? whiteFeatures : blackFeatures;
 
+        switch (update.getUpdateType()) {
+            case ADD -> KERNELS.add(prevFeatures, features, bucket, adds[0]);
+            case ADD_SUB -> KERNELS.addSub(prevFeatures, features, bucket, adds[0], subs[0]);
+            case ADD_SUB_SUB -> KERNELS.addSubSub(prevFeatures, features, bucket, adds[0], subs[0], subs[1]);
+            case ADD_ADD_SUB_SUB -> KERNELS.addAddSubSub(prevFeatures, features, bucket, adds[0], adds[1], subs[0], subs[1]);
         }
     }
 
     public void copyFrom(short[] features, boolean whitePerspective) {
-        if (whitePerspective) {
-            vectorCopy(features, whiteFeatures, features.length);
-        } else {
-            vectorCopy(features, blackFeatures, features.length);
-        }
-    }
-
-    public void copyFrom(Accumulator accumulator) {
-        vectorCopy(accumulator.whiteFeatures, whiteFeatures, whiteFeatures.length);
-        vectorCopy(accumulator.blackFeatures, blackFeatures, blackFeatures.length);
-        System.arraycopy(accumulator.mirrored, 0, mirrored, 0, mirrored.length);
+        copy(features, whitePerspective ? whiteFeatures : blackFeatures);
     }
 
-    public static void vectorCopy(short[] src, short[] dest, int length) {
-        for (int i = 0; i <= length - SPECIES.length(); i += SPECIES.length()) {
-            ShortVector.fromArray(SPECIES, src, i).intoArray(dest, i);
-        }
+    public static void copy(short[] src, short[] dest) {
+        KERNELS.copy(src, dest);
     }
 
     public static class AccumulatorUpdate {
 
-        public final Feature[] adds = new Feature[2];
-        public final Feature[] subs = new Feature[2];
+        // The offsets of the weight rows of the features to add and remove, indexed by perspective.
+        public final int[][] adds = new int[2][2];
+        public final int[][] subs = new int[2][2];
 
         public int addCount = 0;
         public int subCount = 0;
 
-        public void pushAdd(Feature add) {
-            adds[addCount++] = add;
+        public void clear() {
+            addCount = 0;
+            subCount = 0;
+        }
+
+        public void pushAdd(int whiteOffset, int blackOffset) {
+            adds[Colour.WHITE][addCount] = whiteOffset;
+            adds[Colour.BLACK][addCount++] = blackOffset;
         }
 
-        public void pushSub(Feature sub) {
-            subs[subCount++] = sub;
+        public void pushSub(int whiteOffset, int blackOffset) {
+            subs[Colour.WHITE][subCount] = whiteOffset;
+            subs[Colour.BLACK][subCount++] = blackOffset;
         }
 
         public UpdateType getUpdateType() {
@@ -0,0 +1,107 @@
+package com.kelseyde.calvin.evaluation;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.utils.notation.FEN;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Evaluates many positions at once, for tools such as data scoring and network comparison that need raw evaluations
+ * rather than searches.
+ * <p>
+ * Each worker thread owns one {@link NNUE} from a pool that is allocated once, up front, so a batch allocates nothing
+ * beyond its result array. Before evaluating, the positions are sorted by the input buckets of both kings, and each
+ * worker is given a contiguous run of the sorted positions. Consecutive positions therefore tend to share entries in
+ * the worker's input bucket cache, and most refreshes only need to apply the few pieces that differ between them.
+ * <p>
+ * The scores are returned in the original order of the positions, from the perspective of the side to move.
+ */
+public class BatchEvaluator {
+
+    private final NNUE[] pool;
+    private final ExecutorService executor;
+
+    public BatchEvaluator(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1");
+        }
+        this.pool = new NNUE[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            pool[i] = new NNUE();
+        }
+        this.executor = initPool(threadCount);
+    }
+
+    public int[] evaluate(String[] fens) {
+        Board[] boards = new Board[fens.length];
+        for (int i = 0; i < fens.length; i++) {
+            boards[i] = FEN.parse(fens[i]).toBoard();
+        }
+        return evaluate(boards);
+    }
+
+    public int[] evaluate(Board[] boards) {
+
+        int count = boards.length;
+        int[] scores = new int[count];
+        if (count == 0) {
+            return scores;
+        }
+
+        // Sort the positions by their refresh key, keeping the original index in the low bits.
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = (long) NNUE.refreshKey(boards[i]) << 32 | i;
+        }
+        Arrays.sort(order);
+
+        // Split the sorted positions into one contiguous chunk per worker. Small batches are evaluated on the calling
+        // thread, since handing them off would cost more than evaluating them.
+        int chunks = Math.min(pool.length, count);
+        if (chunks == 1) {
+            evaluate(pool[0], boards, order, 0, count, scores);
+            return scores;
+        }
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[chunks];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            NNUE nnue = pool[chunk];
+            int from = (int) ((long) count * chunk / chunks);
+            int to = (int) ((long) count * (chunk + 1) / chunks);
+            futures[chunk] = CompletableFuture.runAsync(() -> evaluate(nnue, boards, order, from, to, scores), executor);
+        }
+        CompletableFuture.allOf(futures).join();
+        return scores;
+
+    }
+
+    public int threadCount() {
+        return pool.length;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static void evaluate(NNUE nnue, Board[] boards, long[] order, int from, int to, int[] scores) {
+        for (int i = from; i < to; i++) {
+            int index = (int) order[i];
+            scores[index] = nnue.evaluate(boards[index]);
+        }
+    }
+
+    private static ExecutorService initPool(int threadCount) {
+        AtomicInteger index = new AtomicInteger(0);
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "eval-thread-" + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(threadCount, factory);
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.kelseyde.calvin.evaluation;
+
+import java.util.Arrays;
+
+/**
+ * A small direct-mapped cache of static evaluations, indexed by zobrist key. The search probes this cache before
+ * running a full {@link NNUE} evaluation of a position that is not found in the transposition table. This way, the
+ * transposition table does not need to hold placeholder entries that only store the static eval, and can be reserved
+ * for the results of searches.
+ * </p>
+ * Each entry is a single long: the upper 48 bits of the zobrist key are used to verify the entry, and the lower 16 bits
+ * hold the static evaluation. The cache is local to a search thread, so no synchronisation is required.
+ * </p>
+ * The search sizes the cache in proportion to the transposition table, via {@link #sizeFor(long)}, so that it grows
+ * with the Hash option in the same way as the static evals that used to be stored in the table.
+ */
+public class EvalCache {
+
+    public static final int MISS = Integer.MIN_VALUE;
+
+    private static final int DEFAULT_SIZE = 1 << 16;
+    private static final int MAX_SIZE = 1 << 20;
+
+    private static final long KEY_MASK  = 0xffffffffffff0000L;
+    private static final long EVAL_MASK = 0x000000000000ffffL;
+
+    private final long[] entries;
+    private final int mask;
+
+    public EvalCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    public EvalCache(int size) {
+        if (Integer.bitCount(size) != 1)
+            throw new IllegalArgumentException("Eval cache size must be a power of two: " + size);
+        this.entries = new long[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * The size of the eval cache for a transposition table with the given number of entries. The cache takes an eighth
+     * of the memory of the table, rounded down to a power of two, and is kept between 512KB and 8MB.
+     */
+    public static int sizeFor(long tableSize) {
+        long size = Long.highestOneBit(tableSize / 4);
+        return (int) Math.max(DEFAULT_SIZE, Math.min(MAX_SIZE, size));
+    }
+
+    /**
+     * Retrieve the cached static evaluation for the given zobrist key.
+     * @return the static evaluation, or {@link #MISS} if the position is not in the cache.
+     */
+    public int get(long key) {
+        long entry = entries[index(key)];
+        if (entry == 0 || ((entry ^ key) & KEY_MASK) != 0)
+            return MISS;
+        return (short) (entry & EVAL_MASK);
+    }
+
+    public void put(long key, int staticEval) {
+        entries[index(key)] = (key & KEY_MASK) | (staticEval & EVAL_MASK);
+    }
+
+    public void clear() {
+        Arrays.fill(entries, 0);
+    }
+
+    private int index(long key) {
+        return (int) key & mask;
+    }
+
+}
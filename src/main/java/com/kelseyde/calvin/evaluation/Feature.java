@@ -1,6 +1,7 @@
 package com.kelseyde.calvin.evaluation;
 
 import com.kelseyde.calvin.board.Bits.Square;
+import com.kelseyde.calvin.board.Colour;
 import com.kelseyde.calvin.board.Piece;
 
 /**
@@ -8,22 +9,51 @@ import com.kelseyde.calvin.board.Piece;
  * (white or black). The feature can either be activated - meaning the piece is present on that square - or not
  * activated - meaning the piece is not present on that square. The presence or absence of a feature is represented by
  * a 1 or 0 respectively in the input layer.
+ * </p>
+ * Features are never allocated as objects. Instead, a feature is identified by the offset of its row in the input
+ * weights, which is all that the {@link Accumulator} needs to add or remove it. The offsets of every feature, from
+ * each perspective and with or without the horizontal mirror, are precomputed on startup into a flat lookup table.
  */
-public record Feature(Piece piece, int square, boolean white) {
+public class Feature {
 
-    public int index(boolean whitePerspective, boolean mirror) {
-        int squareIndex = squareIndex(whitePerspective, mirror);
-        int pieceIndex = piece.index();
+    private static final int HIDDEN_SIZE = NNUE.NETWORK.hiddenSize();
+
+    // Weight-row offsets, indexed by perspective, mirror, colour, piece and square.
+    private static final int[] OFFSETS = initOffsets();
+
+    public static int offset(int pieceIndex, int square, boolean white, boolean whitePerspective, boolean mirror) {
+        int table = (Colour.index(whitePerspective) << 2) | ((mirror ? 1 : 0) << 1) | Colour.index(white);
+        return OFFSETS[(table * Piece.COUNT + pieceIndex) * Square.COUNT + square];
+    }
+
+    public static int index(int pieceIndex, int square, boolean white, boolean whitePerspective, boolean mirror) {
+        int squareIndex = squareIndex(square, whitePerspective, mirror);
         int pieceOffset = pieceIndex * Square.COUNT;
         boolean ourPiece = white == whitePerspective;
         int colourOffset = ourPiece ? 0 : (Square.COUNT * Piece.COUNT);
         return colourOffset + pieceOffset + squareIndex;
     }
 
-    private int squareIndex(boolean whitePerspective, boolean mirror) {
+    private static int squareIndex(int square, boolean whitePerspective, boolean mirror) {
         int squareIndex = whitePerspective ? square : Square.flipRank(square);
         if (mirror) squareIndex = Square.flipFile(squareIndex);
         return squareIndex;
     }
 
+    private static int[] initOffsets() {
+        int[] offsets = new int[8 * Piece.COUNT * Square.COUNT];
+        for (int table = 0; table < 8; table++) {
+            boolean whitePerspective = (table >> 2) == Colour.WHITE;
+            boolean mirror = ((table >> 1) & 1) == 1;
+            boolean white = (table & 1) == Colour.WHITE;
+            for (int pieceIndex = 0; pieceIndex < Piece.COUNT; pieceIndex++) {
+                for (int square = 0; square < Square.COUNT; square++) {
+                    int index = index(pieceIndex, square, white, whitePerspective, mirror);
+                    offsets[(table * Piece.COUNT + pieceIndex) * Square.COUNT + square] = index * HIDDEN_SIZE;
+                }
+            }
+        }
+        return offsets;
+    }
+
 }
@@ -1,7 +1,10 @@
 package com.kelseyde.calvin.evaluation;
 
+import com.kelseyde.calvin.board.Bits;
 import com.kelseyde.calvin.board.Piece;
 
+import java.util.Arrays;
+
 /**
  * Whenever the king changes bucket, a costly full refresh of the accumulator is required. This service implements a
  * technique to improve the performance of this refresh known as 'Finny tables'.
@@ -15,10 +18,31 @@ public class InputBucketCache {
     public static final class BucketCacheEntry {
 
         // Each piece bitboard (0-5) and the two sides' bitboards (6-7)
-        public long[] bitboards = new long[Piece.COUNT + 2];
+        public final long[] bitboards = new long[Piece.COUNT + 2];
+
+        // The cached accumulator last used for this bucket. Initially this is the accumulator of the empty board, which
+        // is just the input biases.
+        public final short[] features = NNUE.NETWORK.inputBiases().clone();
+
+        // Reset the entry to the empty board, in place.
+        public void clear() {
+            Arrays.fill(bitboards, 0L);
+            Accumulator.copy(NNUE.NETWORK.inputBiases(), features);
+        }
 
-        // The cached accumulator last used for this bucket
-        public short[] features;
+        // The number of features that differ between the cached board state and the given board state, which is the
+        // number of accumulator updates needed to bring the cached features up to date.
+        public int distance(long[] boardBitboards) {
+            int distance = 0;
+            for (int colourIndex = Piece.COUNT; colourIndex < Piece.COUNT + 2; colourIndex++) {
+                for (int pieceIndex = 0; pieceIndex < Piece.COUNT; pieceIndex++) {
+                    long pieces = boardBitboards[pieceIndex] & boardBitboards[colourIndex];
+                    long cachedPieces = bitboards[pieceIndex] & bitboards[colourIndex];
+                    distance += Bits.count(pieces ^ cachedPieces);
+                }
+            }
+            return distance;
+        }
 
     }
 
@@ -36,6 +60,17 @@ public class InputBucketCache {
         }
     }
 
+    // Reset every entry to the empty board, in place.
+    public void clear() {
+        for (BucketCacheEntry[][] perspective : cache) {
+            for (BucketCacheEntry[] mirror : perspective) {
+                for (BucketCacheEntry entry : mirror) {
+                    entry.clear();
+                }
+            }
+        }
+    }
+
     public BucketCacheEntry get(boolean whitePerspective, boolean mirror, int bucket) {
         return cache[whitePerspective ? 0 : 1][mirror ? 0 : 1][bucket];
     }
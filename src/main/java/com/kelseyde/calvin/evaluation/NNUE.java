@@ -3,13 +3,17 @@ package com.kelseyde.calvin.evaluation;
 import com.kelseyde.calvin.board.*;
 import com.kelseyde.calvin.board.Bits.File;
 import com.kelseyde.calvin.board.Bits.Square;
-import com.kelseyde.calvin.evaluation.Accumulator.AccumulatorUpdate;
 import com.kelseyde.calvin.evaluation.InputBucketCache.BucketCacheEntry;
 import com.kelseyde.calvin.evaluation.activation.Activation;
 import com.kelseyde.calvin.search.Search;
 import com.kelseyde.calvin.uci.UCI;
+import com.kelseyde.calvin.utils.Bench;
+import com.kelseyde.calvin.utils.NetworkCompressor;
+import com.kelseyde.calvin.utils.notation.FEN;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
 
 /**
  * Calvin's evaluation function is an Efficiently Updatable Neural Network (NNUE).
@@ -19,6 +23,10 @@ import java.util.Arrays;
  * and one from black's. It is 'efficiently updatable' due to the fact that, on each move, only the features of the
  * relevant pieces need to be re-calculated, not the features of the entire board; this is a significant speed boost.
  * <p>
+ * The accumulator updates are also lazy: making a move only records which features have changed, and the accumulator
+ * is brought up to date when the position is actually evaluated. Many nodes in the search are cut off before they are
+ * ever evaluated, and for those nodes the update is skipped entirely.
+ * <p>
  * The network was trained on positions taken from a dataset of Leela Chess Zero, which were then re-scored with
  * Calvin's own search and evaluation.
  *
@@ -26,8 +34,10 @@ import java.util.Arrays;
  */
 public class NNUE {
 
-    public static final Network NETWORK = Network.builder()
-            .file("calvin1024_8b.nnue")
+    public static final String DEFAULT_FILE = "calvin1024_8b.nnue";
+
+    private static final Network.Builder ARCHITECTURE = Network.builder()
+            .file(DEFAULT_FILE)
             .inputSize(768)
             .hiddenSize(1024)
             .activation(Activation.SCReLU)
@@ -43,16 +53,26 @@ public class NNUE {
                     7, 7, 7, 7, 7, 7, 7, 7,
             })
             .quantisations(new int[]{255, 64})
-            .scale(400)
-            .build();
+            .scale(400);
+
+    public static final Network NETWORK = ARCHITECTURE.build();
 
     private static final int STACK_SIZE = Search.MAX_DEPTH + 1;
 
-    private Accumulator[] accumulatorStack;
-    private InputBucketCache bucketCache;
+    // The input bucket and horizontal mirror of each king square, precomputed for each perspective.
+    private static final int[][] KING_BUCKETS = initKingBuckets();
+    private static final boolean[] MIRRORED = initMirrored();
+
+    // The accumulator stack and input bucket cache are allocated once, and are reset in place for each new position.
+    private final Accumulator[] accumulatorStack;
+    private final InputBucketCache bucketCache;
     private int current;
     private Board board;
 
+    // Re-usable buffers for the weight offsets of the features added and removed during a full refresh.
+    private final int[] refreshAdds = new int[32];
+    private final int[] refreshSubs = new int[32];
+
     public NNUE() {
         this.current = 0;
         this.accumulatorStack = new Accumulator[STACK_SIZE];
@@ -63,13 +83,8 @@ public class NNUE {
     }
 
     public NNUE(Board board) {
+        this();
         this.board = board;
-        this.current = 0;
-        this.accumulatorStack = new Accumulator[STACK_SIZE];
-        for (int i = 0; i < STACK_SIZE; i++) {
-            this.accumulatorStack[i] = new Accumulator(NETWORK.hiddenSize());
-        }
-        this.bucketCache = new InputBucketCache(NETWORK.inputBucketCount());
         fullRefresh(board);
     }
 
@@ -80,6 +95,8 @@ public class NNUE {
 
         boolean white = board.isWhite();
         Accumulator acc = accumulatorStack[current];
+        materialise(true);
+        materialise(false);
 
         short[] us = white ? acc.whiteFeatures : acc.blackFeatures;
         short[] them = white ? acc.blackFeatures : acc.whiteFeatures;
@@ -90,63 +107,113 @@ public class NNUE {
 
     }
 
+    // Evaluates a standalone position, outside of any search. The accumulator at the root of the stack is refreshed
+    // from the input bucket cache, so consecutive positions that share king buckets only pay for the pieces that differ
+    // between them. Nothing is allocated, so a single instance can be reused to evaluate any number of positions.
+    public int evaluate(Board board) {
+
+        this.current = 0;
+        this.board = board;
+        fullRefresh(board);
+        return evaluate();
+
+    }
+
+    // A key identifying the input buckets and mirroring of both kings. Positions with the same key share entries in the
+    // input bucket cache, so evaluating them one after another makes the most of the cache.
+    static int refreshKey(Board board) {
+
+        int whiteKing = board.kingSquare(true);
+        int blackKing = board.kingSquare(false);
+        int whiteKey = KING_BUCKETS[Colour.WHITE][whiteKing] << 1 | (MIRRORED[whiteKing] ? 1 : 0);
+        int blackKey = KING_BUCKETS[Colour.BLACK][blackKing] << 1 | (MIRRORED[blackKing] ? 1 : 0);
+        return whiteKey * 2 * NETWORK.inputBucketCount() + blackKey;
+
+    }
+
+    // Brings the accumulator for the current ply up to date for one perspective. Walks back up the stack to the nearest
+    // ancestor that has already been computed, and then applies the recorded updates from there to the current ply.
+    private void materialise(boolean whitePerspective) {
+
+        int perspective = Colour.index(whitePerspective);
+        if (accumulatorStack[current].computed[perspective])
+            return;
+
+        int ply = current;
+        while (!accumulatorStack[ply].computed[perspective])
+            ply--;
+
+        for (int i = ply + 1; i <= current; i++) {
+            Accumulator prev = accumulatorStack[i - 1];
+            Accumulator curr = accumulatorStack[i];
+            curr.apply(prev, curr.update, curr.buckets[perspective], whitePerspective);
+            curr.computed[perspective] = true;
+        }
+
+    }
+
     // Fully refreshes the accumulator for both perspectives based on the current board state.
     private void fullRefresh(Board board) {
 
         Accumulator acc = accumulatorStack[current];
-        boolean whiteMirror = shouldMirror(board.kingSquare(true));
-        boolean blackMirror = shouldMirror(board.kingSquare(false));
-        int whiteKingBucket = kingBucket(board.kingSquare(true), true);
-        int blackKingBucket = kingBucket(board.kingSquare(false), false);
-        fullRefresh(board, acc, true, whiteMirror, whiteKingBucket);
-        fullRefresh(board, acc, false, blackMirror, blackKingBucket);
+        fullRefresh(board, acc, true);
+        fullRefresh(board, acc, false);
+
+    }
+
+    // Fully refreshes the accumulator for one perspective, using the mirror and input bucket of the current king square.
+    private void fullRefresh(Board board, Accumulator acc, boolean whitePerspective) {
+
+        int perspective = Colour.index(whitePerspective);
+        int kingSquare = board.kingSquare(whitePerspective);
+        acc.mirrored[perspective] = shouldMirror(kingSquare);
+        acc.buckets[perspective] = kingBucket(kingSquare, whitePerspective);
+        fullRefresh(board, acc, whitePerspective, acc.mirrored[perspective], acc.buckets[perspective]);
+        acc.computed[perspective] = true;
 
     }
 
     // Fully refreshes the accumulator for one perspective, using the features of all pieces on the board.
-    // Uses the cached features for the current bucket if available; otherwise initializes the accumulator
-    // with the initial bias values and updates it from scratch.
+    // Starts from the cached features for the current bucket, which are initially just the input biases, and
+    // applies the difference between the cached board state and the current board state.
     private void fullRefresh(Board board, Accumulator acc, boolean whitePerspective, boolean mirror, int bucket) {
 
         acc.mirrored[Colour.index(whitePerspective)] = mirror;
 
         BucketCacheEntry cacheEntry = bucketCache.get(whitePerspective, mirror, bucket);
-        short[] cachedFeatures = cacheEntry.features;
+        long[] bitboards = board.getBitboards();
 
-        if (cachedFeatures == null) {
-            // If there is no cached accumulator for this bucket, then we will need to
-            // reset every feature in the accumulator to the initial bias value.
-            cachedFeatures = Arrays.copyOf(NETWORK.inputBiases(), NETWORK.inputBiases().length);
+        // If the cached board state has drifted so far from the current one that it would take more updates to patch
+        // it than to build the accumulator from the empty board, then start over from the empty board instead.
+        if (cacheEntry.distance(bitboards) > Bits.count(bitboards[Piece.COUNT] | bitboards[Piece.COUNT + 1])) {
+            cacheEntry.clear();
         }
-        acc.copyFrom(cachedFeatures, whitePerspective);
-
-        short[] weights = NETWORK.inputWeights()[bucket];
+        acc.copyFrom(cacheEntry.features, whitePerspective);
 
         int addIndex = 0, subIndex = 0;
-        Feature[] adds = new Feature[32];
-        Feature[] subs = new Feature[32];
+        int[] adds = refreshAdds;
+        int[] subs = refreshSubs;
 
         // Loop over each colour and piece type
         for (int colourIndex = 0; colourIndex < 2; colourIndex++) {
             boolean white = colourIndex == 0;
             for (int pieceIndex = 0; pieceIndex < Piece.COUNT; pieceIndex++) {
 
-                Piece piece = Piece.values()[pieceIndex];
-                long pieces = board.getPieces(piece, white);
+                long pieces = bitboards[pieceIndex] & bitboards[Piece.COUNT + colourIndex];
                 long cachedPieces = cacheEntry.bitboards[pieceIndex] & cacheEntry.bitboards[Piece.COUNT + colourIndex];
 
                 // Calculate which pieces need to be added and removed from the accumulator.
                 long added = pieces & ~cachedPieces;
                 while (added != 0) {
                     int square = Bits.next(added);
-                    adds[addIndex++] = new Feature(piece, square, white);
+                    adds[addIndex++] = Feature.offset(pieceIndex, square, white, whitePerspective, mirror);
                     added = Bits.pop(added);
                 }
 
                 long removed = cachedPieces & ~pieces;
                 while (removed != 0) {
                     int square = Bits.next(removed);
-                    subs[subIndex++] = new Feature(piece, square, white);
+                    subs[subIndex++] = Feature.offset(pieceIndex, square, white, whitePerspective, mirror);
                     removed = Bits.pop(removed);
                 }
 
@@ -155,91 +222,93 @@ public class NNUE {
 
         // Fuse together updates to the accumulator for efficiency.
         while (addIndex >= 4)
-            acc.addAddAddAdd(weights, adds[--addIndex], adds[--addIndex], adds[--addIndex], adds[--addIndex], whitePerspective);
+            acc.addAddAddAdd(bucket, adds[--addIndex], adds[--addIndex], adds[--addIndex], adds[--addIndex], whitePerspective);
         while (addIndex > 0)
-            acc.add(weights, adds[--addIndex], whitePerspective);
+            acc.add(bucket, adds[--addIndex], whitePerspective);
 
         while (subIndex >= 4)
-            acc.subSubSubSub(weights, subs[--subIndex], subs[--subIndex], subs[--subIndex], subs[--subIndex], whitePerspective);
+            acc.subSubSubSub(bucket, subs[--subIndex], subs[--subIndex], subs[--subIndex], subs[--subIndex], whitePerspective);
         while (subIndex > 0)
-            acc.sub(weights, subs[--subIndex], whitePerspective);
+            acc.sub(bucket, subs[--subIndex], whitePerspective);
 
 
         // Finally, update the cache entry with the new board state and accumulated features.
-        cacheEntry.bitboards = Arrays.copyOf(board.getBitboards(), Piece.COUNT + 2);
-        if (cacheEntry.features == null)
-            cacheEntry.features = new short[NETWORK.hiddenSize()];
-        Accumulator.vectorCopy(whitePerspective ? acc.whiteFeatures : acc.blackFeatures, cacheEntry.features, NETWORK.hiddenSize());
+        System.arraycopy(bitboards, 0, cacheEntry.bitboards, 0, Piece.COUNT + 2);
+        Accumulator.copy(whitePerspective ? acc.whiteFeatures : acc.blackFeatures, cacheEntry.features);
 
     }
 
 
-    // Efficiently update the accumulator after a move has been made, based on the type of move (standard, capture,
-    // or castle). Only updates the features of the pieces that have changed, rather than recalculating the entire
-    // board state. If the move causes the king to cross into a new bucket - or cross the horizontal axis - then
-    // a full refresh of the accumulator is required.
+    // Record the update to the accumulator after a move has been made, based on the type of move (standard, capture,
+    // or castle). Only the features of the pieces that have changed are recorded; the update itself is deferred until
+    // the position is evaluated. If the move causes the king to cross into a new bucket - or cross the horizontal
+    // axis - then the accumulator for that perspective is refreshed straight away instead.
     public void makeMove(Board board, Move move) {
 
         Accumulator prev = accumulatorStack[current];
         Accumulator curr = accumulatorStack[++current];
-        curr.copyFrom(prev);
 
         boolean white = board.isWhite();
         Piece piece = board.pieceAt(move.from());
 
-        int whiteKingSquare = kingSquare(board, move, piece, true);
-        int blackKingSquare = kingSquare(board, move, piece, false);
+        setKingState(curr, true, kingSquare(board, move, piece, true));
+        setKingState(curr, false, kingSquare(board, move, piece, false));
 
-        int whiteKingBucket = kingBucket(whiteKingSquare, true);
-        int blackKingBucket = kingBucket(blackKingSquare, false);
+        // Determine which features need to be updated based on the move type (standard, capture, or castle).
+        curr.update.clear();
+        switch (moveType(board, move)) {
+            case STANDARD -> handleStandardMove(board, move, curr, white);
+            case CASTLE -> handleCastleMove(move, curr, white);
+            case CAPTURE -> handleCapture(board, move, curr, white);
+        }
 
-        short[] whiteWeights = NETWORK.inputWeights()[whiteKingBucket];
-        short[] blackWeights = NETWORK.inputWeights()[blackKingBucket];
+        refreshIfRequired(board, prev, curr, true);
+        refreshIfRequired(board, prev, curr, false);
 
-        // Determine which features need to be updated based on the move type (standard, capture, or castle).
-        AccumulatorUpdate update = switch (moveType(board, move)) {
-            case STANDARD -> handleStandardMove(board, move, white);
-            case CASTLE -> handleCastleMove(move, white);
-            case CAPTURE -> handleCapture(board, move, white);
-        };
-
-        // We must do a full accumulator refresh if either a) the network is horizontally mirrored, and the king has just
-        // crossed the central axis, or b) the network has input buckets, and the king has just moved to a different bucket.
-        boolean mirrorChanged = mirrorChanged(board, move, piece);
-        boolean bucketChanged = bucketChanged(board, move, piece, white);
-        boolean refreshRequired = mirrorChanged || bucketChanged;
-
-        if (refreshRequired) {
-            boolean mirror = shouldMirror(board.kingSquare(white));
-            if (mirrorChanged) {
-                mirror = !mirror;
-            }
-            int bucket = white ? whiteKingBucket : blackKingBucket;
-            fullRefresh(board, curr, white, mirror, bucket);
-            curr.apply(curr, update, whiteWeights, blackWeights);
-        } else {
-            curr.apply(prev, update, whiteWeights, blackWeights);
+    }
+
+    // Record the mirror and input bucket of one perspective after a move.
+    private void setKingState(Accumulator curr, boolean whitePerspective, int kingSquare) {
+
+        int perspective = Colour.index(whitePerspective);
+        curr.mirrored[perspective] = shouldMirror(kingSquare);
+        curr.buckets[perspective] = kingBucket(kingSquare, whitePerspective);
+        curr.computed[perspective] = false;
+
+    }
+
+    // We must do a full accumulator refresh if either a) the network is horizontally mirrored, and the king has just
+    // crossed the central axis, or b) the network has input buckets, and the king has just moved to a different bucket.
+    // The refresh is done eagerly, from the board before the move plus the update for the move, so that the rest of
+    // the subtree can be updated incrementally.
+    private void refreshIfRequired(Board board, Accumulator prev, Accumulator curr, boolean whitePerspective) {
+
+        int perspective = Colour.index(whitePerspective);
+        boolean mirror = curr.mirrored[perspective];
+        int bucket = curr.buckets[perspective];
+
+        if (mirror != prev.mirrored[perspective] || bucket != prev.buckets[perspective]) {
+            fullRefresh(board, curr, whitePerspective, mirror, bucket);
+            curr.apply(curr, curr.update, bucket, whitePerspective);
+            curr.computed[perspective] = true;
         }
 
     }
 
     // For standard moves we simply need to remove the piece from the 'from' square and add it to the 'to' square.
-    private AccumulatorUpdate handleStandardMove(Board board, Move move, boolean white) {
+    private void handleStandardMove(Board board, Move move, Accumulator acc, boolean white) {
 
         Piece piece = board.pieceAt(move.from());
         Piece newPiece = move.isPromotion() ? move.promoPiece() : piece;
 
-        AccumulatorUpdate update = new AccumulatorUpdate();
-        update.pushAdd(new Feature(newPiece, move.to(), white));
-        update.pushSub(new Feature(piece, move.from(), white));
-        return update;
+        pushAdd(acc, newPiece, move.to(), white);
+        pushSub(acc, piece, move.from(), white);
 
     }
 
     // For castling moves we need to move both the king and the rook, with some special handling for Chess960.
-    private AccumulatorUpdate handleCastleMove(Move move, boolean white) {
+    private void handleCastleMove(Move move, Accumulator acc, boolean white) {
 
-        AccumulatorUpdate update = new AccumulatorUpdate();
         boolean kingside = Castling.isKingside(move.from(), move.to());
 
         // In Chess960, castling is encoded as 'king captures rook'.
@@ -248,34 +317,44 @@ public class NNUE {
         int rookFrom = UCI.Options.chess960 ? move.to() : Castling.rookFrom(kingside, white);
         int rookTo = Castling.rookTo(kingside, white);
 
-        update.pushSub(new Feature(Piece.KING, kingFrom, white));
-        update.pushSub(new Feature(Piece.ROOK, rookFrom, white));
-        update.pushAdd(new Feature(Piece.KING, kingTo, white));
-        update.pushAdd(new Feature(Piece.ROOK, rookTo, white));
-
-        return update;
+        pushSub(acc, Piece.KING, kingFrom, white);
+        pushSub(acc, Piece.ROOK, rookFrom, white);
+        pushAdd(acc, Piece.KING, kingTo, white);
+        pushAdd(acc, Piece.ROOK, rookTo, white);
 
     }
 
     // For captures, we need to remove the captured piece as well as updating the capturing piece.
-    private AccumulatorUpdate handleCapture(Board board, Move move, boolean white) {
+    private void handleCapture(Board board, Move move, Accumulator acc, boolean white) {
 
         Piece piece = board.pieceAt(move.from());
         Piece newPiece = move.isPromotion() ? move.promoPiece() : piece;
         Piece captured = move.isEnPassant() ? Piece.PAWN : board.pieceAt(move.to());
 
-        AccumulatorUpdate update = new AccumulatorUpdate();
         int captureSquare = move.to();
         if (move.isEnPassant()) {
             captureSquare = white ? move.to() - 8 : move.to() + 8;
         }
-        update.pushSub(new Feature(piece, move.from(), white));
-        update.pushAdd(new Feature(newPiece, move.to(), white));
-        update.pushSub(new Feature(captured, captureSquare, !white));
-        return update;
+        pushSub(acc, piece, move.from(), white);
+        pushAdd(acc, newPiece, move.to(), white);
+        pushSub(acc, captured, captureSquare, !white);
 
     }
 
+    // Record a feature to add in the update, as the offset of its weight row from each perspective.
+    private void pushAdd(Accumulator acc, Piece piece, int square, boolean white) {
+        int whiteOffset = Feature.offset(piece.index(), square, white, true, acc.mirrored[Colour.WHITE]);
+        int blackOffset = Feature.offset(piece.index(), square, white, false, acc.mirrored[Colour.BLACK]);
+        acc.update.pushAdd(whiteOffset, blackOffset);
+    }
+
+    // Record a feature to remove in the update, as the offset of its weight row from each perspective.
+    private void pushSub(Accumulator acc, Piece piece, int square, boolean white) {
+        int whiteOffset = Feature.offset(piece.index(), square, white, true, acc.mirrored[Colour.WHITE]);
+        int blackOffset = Feature.offset(piece.index(), square, white, false, acc.mirrored[Colour.BLACK]);
+        acc.update.pushSub(whiteOffset, blackOffset);
+    }
+
     // 'Unmake' the last move by decrementing the current accumulator index, resetting the head to the accumulator
     // from before the move was played.
     public void unmakeMove() {
@@ -284,11 +363,12 @@ public class NNUE {
 
     }
 
-    // Set the position of the board and clear the history. This is used to reset the evaluation when a new
-    // position command is received from UCI.
+    // Set the position of the board, resetting the accumulator stack to its root. This is used to reset the evaluation
+    // when a new position command is received from UCI. The input bucket cache is kept, since consecutive positions in a
+    // game are close to each other, and so the cached board states are a better starting point than an empty board.
     public void setPosition(Board board) {
 
-        clearHistory();
+        this.current = 0;
         this.board = board;
         fullRefresh(board);
 
@@ -301,7 +381,7 @@ public class NNUE {
     private int scaleEvaluation(Board board, int eval) {
 
         eval = eval * (22400 + materialPhase(board)) / 32768;
-        eval = eval * (200 - board.getState().getHalfMoveClock()) / 200;
+        eval = eval * (200 - board.halfMoveClock()) / 200;
         return eval;
 
     }
@@ -317,45 +397,11 @@ public class NNUE {
 
     }
 
-    // Check if the horizontal mirror has changed based on the move made. If the king has crossed the central
-    // axis, then we need to fully refresh the accumulator.
-    private boolean mirrorChanged(Board board, Move move, Piece piece) {
-
-        if (!NETWORK.horizontalMirror() || piece != Piece.KING) {
-            return false;
-        }
-        int prevKingSquare = move.from();
-        int currKingSquare = move.to();
-        if (move.isCastling() && UCI.Options.chess960) {
-            boolean kingside = Castling.isKingside(move.from(), move.to());
-            currKingSquare = Castling.kingTo(kingside, board.isWhite());
-        }
-        return shouldMirror(prevKingSquare) != shouldMirror(currKingSquare);
-
-    }
-
-    // Check if the king has moved to a different input bucket based on the move made. If it has, we need to
-    // fully refresh the accumulator with the weights from the new bucket.
-    private boolean bucketChanged(Board board, Move move, Piece piece, boolean white) {
-
-        if (piece != Piece.KING) {
-            return false;
-        }
-        int prevKingSquare = move.from();
-        int currKingSquare = move.to();
-        if (move.isCastling() && UCI.Options.chess960) {
-            boolean kingside = Castling.isKingside(move.from(), move.to());
-            currKingSquare = Castling.kingTo(kingside, board.isWhite());
-        }
-        return kingBucket(prevKingSquare, white) != kingBucket(currKingSquare, white);
-
-    }
-
     // Check if the king is on the horizontally mirrored side of the board. If it is, then all features should
     // be flipped across the central axis.
     private boolean shouldMirror(int kingSquare) {
 
-        return NETWORK.horizontalMirror() && File.of(kingSquare) > 3;
+        return MIRRORED[kingSquare];
 
     }
 
@@ -377,11 +423,27 @@ public class NNUE {
     // Get the input bucket for the current king square.
     private int kingBucket(int kingSquare, boolean white) {
 
-        kingSquare = white ? kingSquare : Square.flipRank(kingSquare);
-        return NETWORK.inputBuckets()[kingSquare];
+        return KING_BUCKETS[Colour.index(white)][kingSquare];
 
     }
 
+    private static int[][] initKingBuckets() {
+        int[][] buckets = new int[2][Square.COUNT];
+        for (int square = 0; square < Square.COUNT; square++) {
+            buckets[Colour.WHITE][square] = NETWORK.inputBuckets()[square];
+            buckets[Colour.BLACK][square] = NETWORK.inputBuckets()[Square.flipRank(square)];
+        }
+        return buckets;
+    }
+
+    private static boolean[] initMirrored() {
+        boolean[] mirrored = new boolean[Square.COUNT];
+        for (int square = 0; square < Square.COUNT; square++) {
+            mirrored[square] = NETWORK.horizontalMirror() && File.of(square) > 3;
+        }
+        return mirrored;
+    }
+
     // Determine the type of move being made based on whether it is a castling, capture, or standard move.
     private MoveType moveType(Board board, Move move) {
 
@@ -394,15 +456,44 @@ public class NNUE {
 
     }
 
-    // Clear the history of the accumulator stack and reset the current index to 0.
+    /**
+     * Replace the weights of the network with those of an external network file, which must share the architecture of
+     * the bundled network. If no file is given, the bundled network is restored. The network takes on the input weight
+     * format of the file, so a compressed file is evaluated with its int8 weights. Every NNUE instance must be refreshed
+     * from scratch after the weights are replaced.
+     * </p>
+     * A file with compressed int8 input weights is first checked against the bundled int16 network, and is rejected if
+     * its output differs by more than {@link NetworkCompressor#TOLERANCE} on any of the bench positions.
+     */
+    public static void loadNetwork(Path path) throws IOException {
+        Network network = path != null ? ARCHITECTURE.loadNetwork(path) : ARCHITECTURE.loadNetwork();
+        if (path != null && network.compressed()) {
+            validateCompressed(network);
+        }
+        NETWORK.load(network);
+    }
+
+    // If the bundled network is itself compressed, there is no int16 reference to check against.
+    private static void validateCompressed(Network compressed) throws IOException {
+        Network reference = ARCHITECTURE.loadNetwork();
+        if (reference.compressed()) {
+            return;
+        }
+        List<Board> boards = Bench.FENS.stream().map(fen -> FEN.parse(fen).toBoard()).toList();
+        int error = NetworkCompressor.maxError(reference, compressed, boards);
+        if (error > NetworkCompressor.TOLERANCE) {
+            throw new IOException(String.format(
+                    "Compressed network differs from the int16 network by %s, more than the tolerance of %s",
+                    error, NetworkCompressor.TOLERANCE));
+        }
+    }
+
+    // Clear the history, for a new game or a new network. The accumulators and the input bucket cache are reset in
+    // place rather than reallocated; each cache entry goes back to the empty board, with just the input biases.
     public void clearHistory() {
 
         this.current = 0;
-        this.accumulatorStack = new Accumulator[STACK_SIZE];
-        for (int i = 0; i < STACK_SIZE; i++) {
-            this.accumulatorStack[i] = new Accumulator(NETWORK.hiddenSize());
-        }
-        this.bucketCache = new InputBucketCache(NETWORK.inputBucketCount());
+        bucketCache.clear();
 
     }
 
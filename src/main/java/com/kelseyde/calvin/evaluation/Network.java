@@ -8,33 +8,225 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 
 /**
  * Represents the neural network used by the engine in its evaluation function.
  * The network is loaded from the configured file on startup. The network file location, architecture, and activation
  * function are all configurable in the code via the {@link Network.Builder} builder.
+ * </p>
+ * A network can optionally be compressed, so that the input weights are stored as int8 plus a single scale, rather
+ * than as int16. This halves the size of the input weights, and so halves the memory bandwidth of every accumulator
+ * update. A compressed network is saved in a separate file format, which starts with {@link #INT8_MAGIC}; the loader
+ * detects the format automatically.
+ * </p>
+ * The architecture of a network is fixed once it is built, but its weights can be replaced in place with those of
+ * another network file via {@link #load(Network)}, which also switches the input weights to the format of that file.
+ * The evaluation kernels therefore read the input weights from the network each time they are used, rather than
+ * holding on to the arrays of the format the network started with.
  */
-public record Network(int inputSize,
-                      int hiddenSize,
-                      Activation activation,
-                      boolean horizontalMirror,
-                      int[] inputBuckets,
-                      int[] quantisations,
-                      int scale,
-                      short[][] inputWeights,
-                      short[] inputBiases,
-                      short[] outputWeights,
-                      short outputBias) {
+public final class Network {
+
+    private final int inputSize;
+    private final int hiddenSize;
+    private final Activation activation;
+    private final boolean horizontalMirror;
+    private final int[] inputBuckets;
+    private final int[] quantisations;
+    private final int scale;
+    private short[][] inputWeights;
+    private byte[][] compressedInputWeights;
+    private int inputWeightScale;
+    private final short[] inputBiases;
+    private final short[] outputWeights;
+    private short outputBias;
+
+    public Network(int inputSize,
+                   int hiddenSize,
+                   Activation activation,
+                   boolean horizontalMirror,
+                   int[] inputBuckets,
+                   int[] quantisations,
+                   int scale,
+                   short[][] inputWeights,
+                   byte[][] compressedInputWeights,
+                   int inputWeightScale,
+                   short[] inputBiases,
+                   short[] outputWeights,
+                   short outputBias) {
+        this.inputSize = inputSize;
+        this.hiddenSize = hiddenSize;
+        this.activation = activation;
+        this.horizontalMirror = horizontalMirror;
+        this.inputBuckets = inputBuckets;
+        this.quantisations = quantisations;
+        this.scale = scale;
+        this.inputWeights = inputWeights;
+        this.compressedInputWeights = compressedInputWeights;
+        this.inputWeightScale = inputWeightScale;
+        this.inputBiases = inputBiases;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+    }
+
+    // The magic number at the start of a network file with int8 input weights ('CNN8' in little-endian).
+    public static final int INT8_MAGIC = 0x384E4E43;
 
     public static Builder builder() {
         return new Builder();
     }
 
+    public int inputSize() {
+        return inputSize;
+    }
+
+    public int hiddenSize() {
+        return hiddenSize;
+    }
+
+    public Activation activation() {
+        return activation;
+    }
+
+    public boolean horizontalMirror() {
+        return horizontalMirror;
+    }
+
+    public int[] inputBuckets() {
+        return inputBuckets;
+    }
+
+    public int[] quantisations() {
+        return quantisations;
+    }
+
+    public int scale() {
+        return scale;
+    }
+
+    public short[][] inputWeights() {
+        return inputWeights;
+    }
+
+    public byte[][] compressedInputWeights() {
+        return compressedInputWeights;
+    }
+
+    public int inputWeightScale() {
+        return inputWeightScale;
+    }
+
+    public short[] inputBiases() {
+        return inputBiases;
+    }
+
+    public short[] outputWeights() {
+        return outputWeights;
+    }
+
+    public short outputBias() {
+        return outputBias;
+    }
+
     public int inputBucketCount() {
         return inputBuckets != null ? (int) Arrays.stream(inputBuckets).distinct().count() : 1;
     }
 
+    public boolean compressed() {
+        return compressedInputWeights != null;
+    }
+
+    /**
+     * Compress the input weights of this network to int8. A single scale is chosen for all the input weights, so that
+     * the largest weight still fits in a byte; each weight is then stored as the nearest multiple of that scale.
+     * @return a copy of this network, with compressed input weights.
+     */
+    public Network compress() {
+        if (compressed()) {
+            return this;
+        }
+
+        int max = 0;
+        for (short[] weights : inputWeights) {
+            for (short weight : weights) {
+                max = Math.max(max, Math.abs(weight));
+            }
+        }
+        int weightScale = Math.max(1, (max + Byte.MAX_VALUE - 1) / Byte.MAX_VALUE);
+
+        byte[][] compressedWeights = new byte[inputWeights.length][];
+        for (int bucket = 0; bucket < inputWeights.length; bucket++) {
+            compressedWeights[bucket] = new byte[inputWeights[bucket].length];
+            for (int i = 0; i < inputWeights[bucket].length; i++) {
+                int weight = Math.round((float) inputWeights[bucket][i] / weightScale);
+                compressedWeights[bucket][i] = (byte) Math.max(-Byte.MAX_VALUE, Math.min(Byte.MAX_VALUE, weight));
+            }
+        }
+
+        return new Network(
+                inputSize, hiddenSize, activation, horizontalMirror, inputBuckets, quantisations, scale,
+                null, compressedWeights, weightScale, inputBiases, outputWeights, outputBias
+        );
+    }
+
+    /**
+     * Replace the weights of this network, in place, with those of another network of the same architecture. The input
+     * weights are stored in the format of the other network: loading a compressed network switches this network to
+     * int8 input weights, and loading an int16 network switches it back. The arrays of the previous format are
+     * released, and the arrays of the current format are re-used where possible.
+     * </p>
+     * The accumulators of any evaluation that was computed with the previous weights are stale once this returns, and
+     * must be refreshed from scratch.
+     */
+    public void load(Network other) {
+        if (other.inputSize != inputSize || other.hiddenSize != hiddenSize
+                || other.inputBucketCount() != inputBucketCount()) {
+            throw new IllegalArgumentException("Network architecture does not match");
+        }
+
+        int buckets = inputBucketCount();
+        if (other.compressed()) {
+            byte[][] weights = compressed() ? compressedInputWeights : new byte[buckets][];
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                weights[bucket] = copy(other.compressedInputWeights[bucket], weights[bucket]);
+            }
+            compressedInputWeights = weights;
+            inputWeightScale = other.inputWeightScale;
+            inputWeights = null;
+        } else {
+            short[][] weights = compressed() ? new short[buckets][] : inputWeights;
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                weights[bucket] = copy(other.inputWeights[bucket], weights[bucket]);
+            }
+            inputWeights = weights;
+            inputWeightScale = 1;
+            compressedInputWeights = null;
+        }
+        System.arraycopy(other.inputBiases, 0, inputBiases, 0, inputBiases.length);
+        System.arraycopy(other.outputWeights, 0, outputWeights, 0, outputWeights.length);
+        outputBias = other.outputBias;
+    }
+
+    private static byte[] copy(byte[] src, byte[] dest) {
+        if (dest == null) {
+            return src.clone();
+        }
+        System.arraycopy(src, 0, dest, 0, src.length);
+        return dest;
+    }
+
+    private static short[] copy(short[] src, short[] dest) {
+        if (dest == null) {
+            return src.clone();
+        }
+        System.arraycopy(src, 0, dest, 0, src.length);
+        return dest;
+    }
+
     public static class Builder {
 
         private String file;
@@ -94,51 +286,80 @@ public record Network(int inputSize,
             return loadNetwork();
         }
 
+        /**
+         * Load the network from the configured file in the bundled resources.
+         */
         public Network loadNetwork() {
-            try {
-                InputStream inputStream = Network.class.getClassLoader().getResourceAsStream(file);
+            try (InputStream inputStream = Network.class.getClassLoader().getResourceAsStream(file)) {
                 if (inputStream == null) {
                     throw new FileNotFoundException("NNUE file not found in resources");
                 }
+                return read(ByteBuffer.wrap(inputStream.readAllBytes()));
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to load NNUE network", e);
+            }
+        }
 
-                byte[] fileBytes = inputStream.readAllBytes();
-                inputStream.close();
-                ByteBuffer buffer = ByteBuffer.wrap(fileBytes).order(ByteOrder.LITTLE_ENDIAN);
+        /**
+         * Load the network from an external file. The file is memory-mapped, and the weights are bulk-copied straight
+         * out of the mapping, rather than first being read into an intermediate byte array.
+         */
+        public Network loadNetwork(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
 
-                int inputWeightsOffset = inputSize * hiddenSize;
-                int inputBiasesOffset = hiddenSize;
-                int outputWeightsOffset = hiddenSize * 2;
+        private Network read(ByteBuffer buffer) throws IOException {
 
-                int buckets = bucketCount();
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
 
-                short[][] inputWeights = new short[buckets][];
-                short[] inputBiases = new short[inputBiasesOffset];
-                short[] outputWeights = new short[outputWeightsOffset];
+            int inputWeightsOffset = inputSize * hiddenSize;
+            int inputBiasesOffset = hiddenSize;
+            int outputWeightsOffset = hiddenSize * 2;
 
-                for (int bucket = 0; bucket < buckets; bucket++) {
-                    inputWeights[bucket] = new short[inputWeightsOffset];
-                    for (int i = 0; i < inputWeightsOffset; i++) {
-                        inputWeights[bucket][i] = buffer.getShort();
-                    }
-                }
+            int buckets = bucketCount();
+
+            short[][] inputWeights = null;
+            byte[][] compressedInputWeights = null;
+            int inputWeightScale = 1;
+            short[] inputBiases = new short[inputBiasesOffset];
+            short[] outputWeights = new short[outputWeightsOffset];
+
+            boolean compressed = buffer.remaining() >= Integer.BYTES && buffer.getInt(0) == INT8_MAGIC;
+            int inputWeightsBytes = compressed
+                    ? Integer.BYTES + Short.BYTES + inputWeightsOffset * buckets
+                    : inputWeightsOffset * buckets * Short.BYTES;
+            int expectedBytes = inputWeightsBytes + (inputBiasesOffset + outputWeightsOffset + 1) * Short.BYTES;
+            if (buffer.remaining() != expectedBytes) {
+                throw new IOException(String.format(
+                        "NNUE file has %s bytes, expected %s for this architecture", buffer.remaining(), expectedBytes));
+            }
 
-                for (int i = 0; i < inputBiasesOffset; i++) {
-                    inputBiases[i] = buffer.getShort();
+            if (compressed) {
+                buffer.getInt();
+                inputWeightScale = buffer.getShort();
+                compressedInputWeights = new byte[buckets][inputWeightsOffset];
+                for (int bucket = 0; bucket < buckets; bucket++) {
+                    buffer.get(compressedInputWeights[bucket]);
                 }
+            }
 
-                for (int i = 0; i < outputWeightsOffset; i++) {
-                    outputWeights[i] = buffer.getShort();
+            ShortBuffer shorts = buffer.asShortBuffer();
+            if (!compressed) {
+                inputWeights = new short[buckets][inputWeightsOffset];
+                for (int bucket = 0; bucket < buckets; bucket++) {
+                    shorts.get(inputWeights[bucket]);
                 }
-
-                short outputBias = buffer.getShort();
-
-                return new Network(
-                        inputSize, hiddenSize, activation, horizontalMirror, inputBuckets, quantisations, scale,
-                        inputWeights, inputBiases, outputWeights, outputBias
-                );
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to load NNUE network", e);
             }
+            shorts.get(inputBiases);
+            shorts.get(outputWeights);
+            short outputBias = shorts.get();
+
+            return new Network(
+                    inputSize, hiddenSize, activation, horizontalMirror, inputBuckets, quantisations, scale,
+                    inputWeights, compressedInputWeights, inputWeightScale, inputBiases, outputWeights, outputBias
+            );
         }
 
     }
@@ -151,12 +372,23 @@ public record Network(int inputSize,
             int outputWeightsOffset = hiddenSize * 2;
             int buckets = inputBucketCount();
 
-            ByteBuffer buffer = ByteBuffer.allocate(((inputWeightsOffset * buckets) + inputBiasesOffset + outputWeightsOffset + 1) * 2)
+            int inputWeightsBytes = compressed()
+                    ? Integer.BYTES + Short.BYTES + inputWeightsOffset * buckets
+                    : inputWeightsOffset * buckets * 2;
+            ByteBuffer buffer = ByteBuffer.allocate(inputWeightsBytes + (inputBiasesOffset + outputWeightsOffset + 1) * 2)
                     .order(ByteOrder.LITTLE_ENDIAN);
 
-            for (int bucket = 0; bucket < buckets; bucket++) {
-                for (int i = 0; i < inputWeightsOffset; i++) {
-                    buffer.putShort(inputWeights[bucket][i]);
+            if (compressed()) {
+                buffer.putInt(INT8_MAGIC);
+                buffer.putShort((short) inputWeightScale);
+                for (int bucket = 0; bucket < buckets; bucket++) {
+                    buffer.put(compressedInputWeights[bucket]);
+                }
+            } else {
+                for (int bucket = 0; bucket < buckets; bucket++) {
+                    for (int i = 0; i < inputWeightsOffset; i++) {
+                        buffer.putShort(inputWeights[bucket][i]);
+                    }
                 }
             }
 
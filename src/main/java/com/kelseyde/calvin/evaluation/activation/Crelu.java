@@ -1,10 +1,7 @@
 package com.kelseyde.calvin.evaluation.activation;
 
-import jdk.incubator.vector.ShortVector;
-import jdk.incubator.vector.VectorOperators;
-import jdk.incubator.vector.VectorSpecies;
-
 import static com.kelseyde.calvin.evaluation.NNUE.NETWORK;
+import static com.kelseyde.calvin.evaluation.kernel.KernelSelector.KERNELS;
 
 /**
  * Implementation of NNUE inference using the CReLU (Clipped Rectified Linear Unit) activation function.
@@ -15,42 +12,16 @@ import static com.kelseyde.calvin.evaluation.NNUE.NETWORK;
  */
 public class Crelu {
 
-    static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
-    static final int UPPER_BOUND = SPECIES.loopBound(NETWORK.hiddenSize());
-    static final int LOOP_LENGTH = SPECIES.length();
-
-    static final ShortVector FLOOR = ShortVector.broadcast(SPECIES, 0);
-    static final ShortVector CEIL = ShortVector.broadcast(SPECIES, NETWORK.quantisations()[0]);
-
     public static int forward(short[] us, short[] them) {
 
         int qa = NETWORK.quantisations()[0];
         int qb = NETWORK.quantisations()[1];
         int qab = qa * qb;
         int scale = NETWORK.scale();
-        short[] weights = NETWORK.outputWeights();
-
-        int eval = NETWORK.outputBias();
 
         // Forward-pass through the network, using the clipped ReLU activation function.
-        // Implementation uses the Java Vector API to perform SIMD operations on multiple features at once.
-        for (int i = 0; i < UPPER_BOUND; i += LOOP_LENGTH) {
-
-            // Clip the 'us' inputs to the range [0, 255], multiply by the weights, and add to the running sum.
-            eval += ShortVector.fromArray(SPECIES, us, i)
-                    .min(CEIL)
-                    .max(FLOOR)
-                    .mul(ShortVector.fromArray(SPECIES, weights, i))
-                    .reduceLanes(VectorOperators.ADD);
-
-            // Clip the 'them' inputs to the range [0, 255], multiply by the weights, and add to the running sum.
-            eval += ShortVector.fromArray(SPECIES, them, i)
-                    .min(CEIL)
-                    .max(FLOOR)
-                    .mul(ShortVector.fromArray(SPECIES, weights, i + NETWORK.hiddenSize()))
-                    .reduceLanes(VectorOperators.ADD);
-
-        }
+        int eval = NETWORK.outputBias();
+        eval += KERNELS.crelu(us, them, NETWORK.outputWeights());
 
         // Scale the result to centipawn space, and divide by the quantisation factor.
         eval *= scale;
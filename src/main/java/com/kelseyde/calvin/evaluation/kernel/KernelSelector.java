@@ -0,0 +1,129 @@
+package com.kelseyde.calvin.evaluation.kernel;
+
+import com.kelseyde.calvin.evaluation.NNUE;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Chooses the evaluation kernels once on startup. If the jdk.incubator.vector module is present, the vector kernels are
+ * benchmarked against the scalar kernels on a short synthetic workload, and the fastest is chosen. Otherwise, the
+ * scalar kernels are used. This way a single build runs everywhere, and the choice that was made (along with the
+ * timings it was based on) is reported in the 'uci' output.
+ * </p>
+ * The vector kernels use the preferred vector width of the host, which can be capped with the JVM flag
+ * -XX:MaxVectorSize. Narrower widths are not benchmarked alongside it: once code using a second vector shape has run,
+ * the JIT can no longer fully optimise the Vector API in either shape, and every kernel in the JVM becomes far slower.
+ */
+public class KernelSelector {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private static final int WARMUP_ITERATIONS = 10000;
+    private static final int BENCHMARK_ITERATIONS = 2000;
+    private static final int MIN_BENCHMARK_ROUNDS = 3;
+    private static final int MAX_BENCHMARK_ROUNDS = 20;
+
+    public static final Kernels KERNELS;
+    public static final String SUMMARY;
+
+    // Consumes the results of the benchmark, so that the JIT cannot eliminate the forward passes.
+    private static int sink;
+
+    static {
+        List<Kernels> candidates = candidates();
+        long[] times = benchmark(candidates);
+        int best = 0;
+        for (int i = 1; i < candidates.size(); i++) {
+            if (times[i] < times[best]) best = i;
+        }
+        KERNELS = candidates.get(best);
+        SUMMARY = summary(candidates, times, best);
+    }
+
+    private static boolean isVectorModulePresent() {
+        return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+    }
+
+    private static List<Kernels> candidates() {
+        List<Kernels> candidates = new ArrayList<>();
+        candidates.add(new ScalarKernels());
+        // VectorKernels is only loaded if the module is present, otherwise it would fail to link.
+        if (isVectorModulePresent() && VectorKernels.isSupported()) {
+            candidates.add(new VectorKernels());
+        }
+        return candidates;
+    }
+
+    /**
+     * Time each candidate on a workload resembling a node of the search: an incremental update of both perspectives,
+     * followed by a forward pass. Every candidate is warmed up first so that the JIT has compiled it, and then the best
+     * of several rounds is taken, to reduce noise. Rounds continue for as long as any candidate is still getting
+     * faster, since on a slow or busy host the JIT may not have finished compiling the kernels after the warm-up.
+     * @return the best time, in nanoseconds, of each candidate over the benchmark iterations.
+     */
+    private static long[] benchmark(List<Kernels> candidates) {
+        long[] times = new long[candidates.size()];
+        if (candidates.size() == 1) {
+            return times;
+        }
+
+        int hiddenSize = NNUE.NETWORK.hiddenSize();
+        int rowCount = NNUE.NETWORK.inputSize();
+        Random random = new Random(0);
+        short[] us = NNUE.NETWORK.inputBiases().clone();
+        short[] them = NNUE.NETWORK.inputBiases().clone();
+        short[] outputWeights = NNUE.NETWORK.outputWeights();
+        int[] offsets = random.ints(64, 0, rowCount).map(row -> row * hiddenSize).toArray();
+
+        for (Kernels kernels : candidates) {
+            sink += run(kernels, us, them, outputWeights, offsets, WARMUP_ITERATIONS);
+        }
+        Arrays.fill(times, Long.MAX_VALUE);
+        boolean improving = true;
+        for (int round = 0; round < MAX_BENCHMARK_ROUNDS && (round < MIN_BENCHMARK_ROUNDS || improving); round++) {
+            improving = false;
+            for (int i = 0; i < candidates.size(); i++) {
+                long start = System.nanoTime();
+                sink += run(candidates.get(i), us, them, outputWeights, offsets, BENCHMARK_ITERATIONS);
+                long time = System.nanoTime() - start;
+                improving |= time < times[i] - times[i] / 10;
+                times[i] = Math.min(times[i], time);
+            }
+        }
+        return times;
+    }
+
+    private static int run(Kernels kernels, short[] us, short[] them, short[] outputWeights, int[] offsets, int iterations) {
+        int sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            // Each feature is added and later removed again, so the accumulators stay close to their initial values.
+            int add = offsets[i & 31];
+            int sub = offsets[(i & 31) + 32];
+            if ((i & 32) == 0) {
+                kernels.addSub(us, us, 0, add, sub);
+                kernels.addSub(them, them, 0, sub, add);
+            } else {
+                kernels.addSub(us, us, 0, sub, add);
+                kernels.addSub(them, them, 0, add, sub);
+            }
+            sink += kernels.screlu(us, them, outputWeights);
+        }
+        return sink;
+    }
+
+    private static String summary(List<Kernels> candidates, long[] times, int best) {
+        if (candidates.size() == 1) {
+            return String.format("%s (%s module not available)", candidates.get(best).name(), VECTOR_MODULE);
+        }
+        String timings = IntStream.range(0, candidates.size())
+                .mapToObj(i -> String.format("%s %dns", candidates.get(i).name(), times[i] / BENCHMARK_ITERATIONS))
+                .collect(Collectors.joining(", "));
+        return String.format("%s (benchmarked per node: %s)", candidates.get(best).name(), timings);
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.kelseyde.calvin.evaluation.kernel;
+
+/**
+ * The low-level kernels that do the heavy lifting of the evaluation: updating the accumulator with rows of input
+ * weights, and the forward pass through the output layer. Each update kernel reads the features from src, adds and
+ * subtracts the input weight rows at the given offsets in the given input bucket, and writes the result to dest; src
+ * and dest may be the same array.
+ * </p>
+ * There is an implementation using the Java Vector API, and a plain scalar implementation for hosts where the Vector
+ * API is unavailable or slow. The implementation used by the engine is chosen once on startup by {@link KernelSelector}.
+ */
+public interface Kernels {
+
+    String name();
+
+    void add(short[] src, short[] dest, int bucket, int offset);
+
+    void sub(short[] src, short[] dest, int bucket, int offset);
+
+    void addSub(short[] src, short[] dest, int bucket, int offset1, int offset2);
+
+    void addSubSub(short[] src, short[] dest, int bucket, int offset1, int offset2, int offset3);
+
+    void addAddSubSub(short[] src, short[] dest, int bucket, int offset1, int offset2, int offset3, int offset4);
+
+    void addAddAddAdd(short[] src, short[] dest, int bucket, int offset1, int offset2, int offset3, int offset4);
+
+    void subSubSubSub(short[] src, short[] dest, int bucket, int offset1, int offset2, int offset3, int offset4);
+
+    void copy(short[] src, short[] dest);
+
+    /**
+     * The output layer dot product using SCReLU activation, before the output bias and quantisation are applied.
+     * @see com.kelseyde.calvin.evaluation.activation.Screlu
+     */
+    int screlu(short[] us, short[] them, short[] weights);
+
+    /**
+     * The output layer dot product using CReLU activation, before the output bias and quantisation are applied.
+     * @see com.kelseyde.calvin.evaluation.activation.Crelu
+     */
+    int crelu(short[] us, short[] them, short[] weights);
+
+}
@@ -0,0 +1,133 @@
+package com.kelseyde.calvin.evaluation.kernel;
+
+import com.kelseyde.calvin.evaluation.NNUE;
+import com.kelseyde.calvin.evaluation.Network;
+
+/**
+ * Scalar implementation of the evaluation kernels, which does not depend on the Java Vector API. This is the fallback
+ * used when the jdk.incubator.vector module is not available, or when it is slower than plain scalar code on the host.
+ * </p>
+ * The loops are kept as simple counted loops over the hidden layer, so that the JIT is free to unroll and, where the
+ * hardware allows, auto-vectorise them. The results are identical to those of {@link VectorKernels}.
+ */
+public final class ScalarKernels implements Kernels {
+
+    private static final int HIDDEN_SIZE = NNUE.NETWORK.hiddenSize();
+    private static final int QA = NNUE.NETWORK.quantisations()[0];
+
+    // The input weights are read from the network on each use, since loading a network file can switch them between
+    // int16 and int8.
+    private static final Network NETWORK = NNUE.NETWORK;
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    @Override
+    public void add(short[] src, short[] dest, int bucket, int offset) {
+        for (int i = 0; i < HIDDEN_SIZE; i++) {
+            dest[i] = (short) (src[i] + weight(bucket, i + offset));
+        }
+    }
+
+    @Override
+    public void sub(short[] src, short[] dest, int bucket, int offset) {
+        for (int i = 0; i < HIDDEN_SIZE; i++) {
+            dest[i] = (short) (src[i] - weight(bucket, i + offset));
+        }
+    }
+
+    @Override
+    public void addSub(short[] src, short[] dest, int bucket, int offset1, int offset2) {
+        for (int i = 0; i < HIDDEN_SIZE; i++) {
+            dest[i] = (short) (src[i]
+                    + weight(bucket, i + offset1)
+                    - weight(bucket, i + offset2));
+        }
+    }
+
+    @Override
+    public void addSubSub(short[] src, short[] dest, int bucket, int offset1, int offset2, int offset3) {
+        for (int i = 0; i < HIDDEN_SIZE; i++) {
+            dest[i] = (short) (src[i]
+                    + weight(bucket, i + offset1)
+                    - weight(bucket, i + offset2)
+                    - weight(bucket, i + offset3));
+        }
+    }
+
+    @Override
+    public void addAddSubSub(short[] src, short[] dest, int bucket, int offset1, int offset2, int offset3, int offset4) {
+        for (int i = 0; i < HIDDEN_SIZE; i++) {
+            dest[i] = (short) (src[i]
+                    + weight(bucket, i + offset1)
+                    + weight(bucket, i + offset2)
+                    - weight(bucket, i + offset3)
+                    - weight(bucket, i + offset4));
+        }
+    }
+
+    @Override
+    public void addAddAddAdd(short[] src, short[] dest, int bucket, int offset1, int offset2, int offset3, int offset4) {
+        for (int i = 0; i < HIDDEN_SIZE; i++) {
+            dest[i] = (short) (src[i]
+                    + weight(bucket, i + offset1)
+                    + weight(bucket, i + offset2)
+                    + weight(bucket, i + offset3)
+                    + weight(bucket, i + offset4));
+        }
+    }
+
+    @Override
+    public void subSubSubSub(short[] src, short[] dest, int bucket, int offset1, int offset2, int offset3, int offset4) {
+        for (int i = 0; i < HIDDEN_SIZE; i++) {
+            dest[i] = (short) (src[i]
+                    - weight(bucket, i + offset1)
+                    - weight(bucket, i + offset2)
+                    - weight(bucket, i + offset3)
+                    - weight(bucket, i + offset4));
+        }
+    }
+
+    @Override
+    public void copy(short[] src, short[] dest) {
+        System.arraycopy(src, 0, dest, 0, HIDDEN_SIZE);
+    }
+
+    @Override
+    public int screlu(short[] us, short[] them, short[] weights) {
+        // The input is multiplied by the weight in 16 bits, and then by the input again in 32 bits, exactly as in the
+        // vectorised implementation, so that both implementations give the same result.
+        int sum = 0;
+        for (int i = 0; i < HIDDEN_SIZE; i++) {
+            int usInput = clip(us[i]);
+            int themInput = clip(them[i]);
+            sum += usInput * (short) (usInput * weights[i]);
+            sum += themInput * (short) (themInput * weights[i + HIDDEN_SIZE]);
+        }
+        return sum;
+    }
+
+    @Override
+    public int crelu(short[] us, short[] them, short[] weights) {
+        // The input is multiplied by the weight and summed in 32 bits, exactly as in the vectorised implementation.
+        int sum = 0;
+        for (int i = 0; i < HIDDEN_SIZE; i++) {
+            sum += clip(us[i]) * weights[i];
+            sum += clip(them[i]) * weights[i + HIDDEN_SIZE];
+        }
+        return sum;
+    }
+
+    private static int weight(int bucket, int index) {
+        return NETWORK.compressed()
+                ? NETWORK.compressedInputWeights()[bucket][index] * NETWORK.inputWeightScale()
+                : NETWORK.inputWeights()[bucket][index];
+    }
+
+    private static int clip(short input) {
+        return Math.max(0, Math.min(QA, input));
+    }
+
+}
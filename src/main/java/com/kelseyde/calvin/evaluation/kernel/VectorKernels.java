@@ -0,0 +1,200 @@
+package com.kelseyde.calvin.evaluation.kernel;
+
+import com.kelseyde.calvin.evaluation.NNUE;
+import com.kelseyde.calvin.evaluation.Network;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Implementation of the evaluation kernels using the Java Vector API, at the preferred vector width of the host. This
+ * class must only be loaded if the jdk.incubator.vector module is present, which is checked by {@link KernelSelector}.
+ */
+final class VectorKernels implements Kernels {
+
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private static final int HIDDEN_SIZE = NNUE.NETWORK.hiddenSize();
+    private static final int QA = NNUE.NETWORK.quantisations()[0];
+
+    // The input weights are read from the network on each use, since loading a network file can switch them between
+    // int16 and int8. If the network is compressed, the int8 weights are widened to int16 as they are loaded. The byte
+    // species has the same number of lanes as the short species, so that one row fetch fills one vector.
+    private static final Network NETWORK = NNUE.NETWORK;
+    private static final VectorSpecies<Byte> BYTE_SPECIES = isSupported()
+            ? VectorSpecies.of(byte.class, VectorShape.forBitSize(SPECIES.vectorBitSize() / 2)) : null;
+
+    /**
+     * Whether the preferred vector width can hold the weights of the network. The hidden layer must fill a whole number
+     * of vectors, and the vector must be at least 128 bits wide, since compressed weights are loaded at half width.
+     */
+    static boolean isSupported() {
+        return HIDDEN_SIZE % SPECIES.length() == 0 && SPECIES.vectorBitSize() >= 128;
+    }
+
+    @Override
+    public String name() {
+        return "vector-" + SPECIES.vectorBitSize();
+    }
+
+    @Override
+    public void add(short[] src, short[] dest, int bucket, int offset) {
+        for (int i = 0; i < HIDDEN_SIZE; i += SPECIES.length()) {
+            ShortVector.fromArray(SPECIES, src, i)
+                    .add(weights(bucket, i + offset))
+                    .intoArray(dest, i);
+        }
+    }
+
+    @Override
+    public void sub(short[] src, short[] dest, int bucket, int offset) {
+        for (int i = 0; i < HIDDEN_SIZE; i += SPECIES.length()) {
+            ShortVector.fromArray(SPECIES, src, i)
+                    .sub(weights(bucket, i + offset))
+                    .intoArray(dest, i);
+        }
+    }
+
+    @Override
+    public void addSub(short[] src, short[] dest, int bucket, int offset1, int offset2) {
+        for (int i = 0; i < HIDDEN_SIZE; i += SPECIES.length()) {
+            ShortVector.fromArray(SPECIES, src, i)
+                    .add(weights(bucket, i + offset1))
+                    .sub(weights(bucket, i + offset2))
+                    .intoArray(dest, i);
+        }
+    }
+
+    @Override
+    public void addSubSub(short[] src, short[] dest, int bucket, int offset1, int offset2, int offset3) {
+        for (int i = 0; i < HIDDEN_SIZE; i += SPECIES.length()) {
+            ShortVector.fromArray(SPECIES, src, i)
+                    .add(weights(bucket, i + offset1))
+                    .sub(weights(bucket, i + offset2))
+                    .sub(weights(bucket, i + offset3))
+                    .intoArray(dest, i);
+        }
+    }
+
+    @Override
+    public void addAddSubSub(short[] src, short[] dest, int bucket, int offset1, int offset2, int offset3, int offset4) {
+        for (int i = 0; i < HIDDEN_SIZE; i += SPECIES.length()) {
+            ShortVector.fromArray(SPECIES, src, i)
+                    .add(weights(bucket, i + offset1))
+                    .add(weights(bucket, i + offset2))
+                    .sub(weights(bucket, i + offset3))
+                    .sub(weights(bucket, i + offset4))
+                    .intoArray(dest, i);
+        }
+    }
+
+    @Override
+    public void addAddAddAdd(short[] src, short[] dest, int bucket, int offset1, int offset2, int offset3, int offset4) {
+        for (int i = 0; i < HIDDEN_SIZE; i += SPECIES.length()) {
+            ShortVector.fromArray(SPECIES, src, i)
+                    .add(weights(bucket, i + offset1))
+                    .add(weights(bucket, i + offset2))
+                    .add(weights(bucket, i + offset3))
+                    .add(weights(bucket, i + offset4))
+                    .intoArray(dest, i);
+        }
+    }
+
+    @Override
+    public void subSubSubSub(short[] src, short[] dest, int bucket, int offset1, int offset2, int offset3, int offset4) {
+        for (int i = 0; i < HIDDEN_SIZE; i += SPECIES.length()) {
+            ShortVector.fromArray(SPECIES, src, i)
+                    .sub(weights(bucket, i + offset1))
+                    .sub(weights(bucket, i + offset2))
+                    .sub(weights(bucket, i + offset3))
+                    .sub(weights(bucket, i + offset4))
+                    .intoArray(dest, i);
+        }
+    }
+
+    @Override
+    public void copy(short[] src, short[] dest) {
+        for (int i = 0; i < HIDDEN_SIZE; i += SPECIES.length()) {
+            ShortVector.fromArray(SPECIES, src, i).intoArray(dest, i);
+        }
+    }
+
+    @Override
+    public int screlu(short[] us, short[] them, short[] weights) {
+
+        ShortVector floor = ShortVector.zero(SPECIES);
+        ShortVector ceil = ShortVector.broadcast(SPECIES, QA);
+        IntVector sum = IntVector.zero(INT_SPECIES);
+
+        for (int i = 0; i < HIDDEN_SIZE; i += SPECIES.length()) {
+
+            // Clip the inputs to the range [0, QA].
+            ShortVector usInputs = ShortVector.fromArray(SPECIES, us, i).max(floor).min(ceil);
+            ShortVector themInputs = ShortVector.fromArray(SPECIES, them, i).max(floor).min(ceil);
+
+            // Multiply the inputs by the weights.
+            ShortVector usTerms = usInputs.mul(ShortVector.fromArray(SPECIES, weights, i));
+            ShortVector themTerms = themInputs.mul(ShortVector.fromArray(SPECIES, weights, i + HIDDEN_SIZE));
+
+            // Multiply the inputs by the weighted terms in 32 bits, and add the results to the running sum.
+            sum = sum.add(multiply(usInputs, usTerms)).add(multiply(themInputs, themTerms));
+
+        }
+
+        return sum.reduceLanes(VectorOperators.ADD);
+
+    }
+
+    @Override
+    public int crelu(short[] us, short[] them, short[] weights) {
+
+        ShortVector floor = ShortVector.zero(SPECIES);
+        ShortVector ceil = ShortVector.broadcast(SPECIES, QA);
+        IntVector sum = IntVector.zero(INT_SPECIES);
+
+        for (int i = 0; i < HIDDEN_SIZE; i += SPECIES.length()) {
+
+            // Clip the inputs to the range [0, QA].
+            ShortVector usInputs = ShortVector.fromArray(SPECIES, us, i).max(floor).min(ceil);
+            ShortVector themInputs = ShortVector.fromArray(SPECIES, them, i).max(floor).min(ceil);
+
+            // Multiply the inputs by the weights in 32 bits, and add the results to the running sum. Summing in 16 bits
+            // would wrap, and the result would then depend on the vector width.
+            sum = sum.add(multiply(usInputs, ShortVector.fromArray(SPECIES, weights, i)))
+                    .add(multiply(themInputs, ShortVector.fromArray(SPECIES, weights, i + HIDDEN_SIZE)));
+
+        }
+
+        return sum.reduceLanes(VectorOperators.ADD);
+
+    }
+
+    // Multiply pairs of 16-bit lanes in 32 bits. Rather than converting each half of the vectors to ints, which the JIT
+    // does not always compile to SIMD instructions, each pair of shorts is reinterpreted as an int, and the low and high
+    // halves are extracted with shifts. The inputs are never negative, so they can be masked rather than sign-extended.
+    private static IntVector multiply(ShortVector inputs, ShortVector terms) {
+        IntVector inputPairs = inputs.reinterpretAsInts();
+        IntVector termPairs = terms.reinterpretAsInts();
+        IntVector low = inputPairs.and(0xFFFF)
+                .mul(termPairs.lanewise(VectorOperators.LSHL, 16).lanewise(VectorOperators.ASHR, 16));
+        IntVector high = inputPairs.lanewise(VectorOperators.LSHR, 16)
+                .mul(termPairs.lanewise(VectorOperators.ASHR, 16));
+        return low.add(high);
+    }
+
+    // Load a vector of input weights for the given bucket, starting at the given index.
+    private static ShortVector weights(int bucket, int index) {
+        if (!NETWORK.compressed()) {
+            return ShortVector.fromArray(SPECIES, NETWORK.inputWeights()[bucket], index);
+        }
+        ShortVector weights = (ShortVector) ByteVector.fromArray(BYTE_SPECIES, NETWORK.compressedInputWeights()[bucket], index)
+                .convertShape(VectorOperators.B2S, SPECIES, 0);
+        short scale = (short) NETWORK.inputWeightScale();
+        return scale == 1 ? weights : weights.mul(scale);
+    }
+
+}
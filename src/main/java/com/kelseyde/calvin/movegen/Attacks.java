@@ -122,11 +122,8 @@ public class Attacks {
     public static final long[] ROOK_MASKS = initMagicMask(true);
     public static final long[] BISHOP_MASKS = initMagicMask(false);
 
-    public static final long[][] ROOK_ATTACKS = initMagicAttacks(true, ROOK_MAGICS, ROOK_SHIFTS);
-    public static final long[][] BISHOP_ATTACKS = initMagicAttacks(false, BISHOP_MAGICS, BISHOP_SHIFTS);
-
-    public static final MagicLookup[] ROOK_MAGIC_LOOKUP = initMagicLookups(ROOK_ATTACKS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS);
-    public static final MagicLookup[] BISHOP_MAGIC_LOOKUP = initMagicLookups(BISHOP_ATTACKS, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS);
+    // The layout of the sliding attack tables, chosen on startup. See {@link Magics}.
+    private static final int MAGIC_LAYOUT = Magics.LAYOUT;
 
     public static long attacks(int square, Piece piece, long blockers, boolean white) {
         return switch (piece) {
@@ -154,11 +151,15 @@ public class Attacks {
     }
 
     public static long rookAttacks(int square, long blockers) {
-        return sliderAttacks(square, blockers, ROOK_MAGIC_LOOKUP);
+        if (MAGIC_LAYOUT == Magics.FANCY)       return Magics.Fancy.rookAttacks(square, blockers);
+        else if (MAGIC_LAYOUT == Magics.BLACK)  return Magics.Black.rookAttacks(square, blockers);
+        else                                    return Magics.Jagged.rookAttacks(square, blockers);
     }
 
     public static long bishopAttacks(int square, long blockers) {
-        return sliderAttacks(square, blockers, BISHOP_MAGIC_LOOKUP);
+        if (MAGIC_LAYOUT == Magics.FANCY)       return Magics.Fancy.bishopAttacks(square, blockers);
+        else if (MAGIC_LAYOUT == Magics.BLACK)  return Magics.Black.bishopAttacks(square, blockers);
+        else                                    return Magics.Jagged.bishopAttacks(square, blockers);
     }
 
     public static long queenAttacks(int square, long blockers) {
@@ -0,0 +1,251 @@
+package com.kelseyde.calvin.movegen;
+
+import com.kelseyde.calvin.board.Bits.Square;
+
+import java.util.Locale;
+
+/**
+ * Lookup tables for the attacks of the sliding pieces, in one of three layouts:
+ * <ul>
+ *     <li>jagged: one attack table per square, reached through a {@link Attacks.MagicLookup} object per square. This
+ *     costs two dependent loads - the lookup object, and its table - before the attacks themselves are read.</li>
+ *     <li>fancy: the same magics, with the tables of every square of both pieces flattened into a single array, and the
+ *     mask, magic, shift and offset of each square stored side by side in a primitive array.</li>
+ *     <li>black: 'black' magics, which index with the complement of the mask set instead of cleared. The table of each
+ *     square may then overlap the tables of others wherever their entries agree, in a single flattened array.</li>
+ * </ul>
+ * The layout is chosen once on startup with the system property {@value #PROPERTY}, and the tables of the other layouts
+ * are never built. The choice is a static final constant, so the JIT folds away the dispatch in {@link Attacks}.
+ *
+ * @see <a href="https://www.chessprogramming.org/Magic_Bitboards">Chess Programming Wiki</a>
+ */
+public class Magics {
+
+    public static final String PROPERTY = "calvin.magics";
+
+    public static final int JAGGED = 0;
+    public static final int FANCY = 1;
+    public static final int BLACK = 2;
+
+    private static final String[] NAMES = { "jagged", "fancy", "black" };
+
+    public static final int DEFAULT = FANCY;
+
+    public static final int LAYOUT = select(System.getProperty(PROPERTY));
+
+    public static String name(int layout) {
+        return NAMES[layout];
+    }
+
+    // Choose the layout named by the system property, falling back to the default if it is missing or unknown.
+    static int select(String name) {
+        if (name != null) {
+            for (int layout = 0; layout < NAMES.length; layout++) {
+                if (NAMES[layout].equals(name.trim().toLowerCase(Locale.ROOT))) {
+                    return layout;
+                }
+            }
+        }
+        return DEFAULT;
+    }
+
+    /**
+     * The original layout, with a separate table for each square.
+     */
+    public static class Jagged {
+
+        private static final Attacks.MagicLookup[] ROOK_LOOKUPS = Attacks.initMagicLookups(
+                Attacks.initMagicAttacks(true, Attacks.ROOK_MAGICS, Attacks.ROOK_SHIFTS),
+                Attacks.ROOK_MASKS, Attacks.ROOK_MAGICS, Attacks.ROOK_SHIFTS);
+
+        private static final Attacks.MagicLookup[] BISHOP_LOOKUPS = Attacks.initMagicLookups(
+                Attacks.initMagicAttacks(false, Attacks.BISHOP_MAGICS, Attacks.BISHOP_SHIFTS),
+                Attacks.BISHOP_MASKS, Attacks.BISHOP_MAGICS, Attacks.BISHOP_SHIFTS);
+
+        public static long rookAttacks(int square, long occupied) {
+            return Attacks.sliderAttacks(square, occupied, ROOK_LOOKUPS);
+        }
+
+        public static long bishopAttacks(int square, long occupied) {
+            return Attacks.sliderAttacks(square, occupied, BISHOP_LOOKUPS);
+        }
+
+    }
+
+    /**
+     * The 'fancy' magic layout: the original magics, with a single flattened table.
+     */
+    public static class Fancy {
+
+        // The mask, magic, shift and table offset of each square, with the rook squares first and then the bishop squares.
+        private static final long[] ENTRIES = new long[4 * 2 * Square.COUNT];
+        private static final long[] ATTACKS = initTable();
+
+        public static long rookAttacks(int square, long occupied) {
+            int i = square << 2;
+            return ATTACKS[(int) (((occupied & ENTRIES[i]) * ENTRIES[i + 1]) >>> ENTRIES[i + 2]) + (int) ENTRIES[i + 3]];
+        }
+
+        public static long bishopAttacks(int square, long occupied) {
+            int i = (square + Square.COUNT) << 2;
+            return ATTACKS[(int) (((occupied & ENTRIES[i]) * ENTRIES[i + 1]) >>> ENTRIES[i + 2]) + (int) ENTRIES[i + 3]];
+        }
+
+        private static long[] initTable() {
+            long[][] rookTables = Attacks.initMagicAttacks(true, Attacks.ROOK_MAGICS, Attacks.ROOK_SHIFTS);
+            long[][] bishopTables = Attacks.initMagicAttacks(false, Attacks.BISHOP_MAGICS, Attacks.BISHOP_SHIFTS);
+            int size = 0;
+            for (int square = 0; square < Square.COUNT; square++) {
+                size += rookTables[square].length + bishopTables[square].length;
+            }
+            long[] table = new long[size];
+            int offset = 0;
+            for (int entry = 0; entry < 2 * Square.COUNT; entry++) {
+                boolean rook = entry < Square.COUNT;
+                int square = entry % Square.COUNT;
+                long[] squareTable = rook ? rookTables[square] : bishopTables[square];
+                ENTRIES[4 * entry]     = rook ? Attacks.ROOK_MASKS[square] : Attacks.BISHOP_MASKS[square];
+                ENTRIES[4 * entry + 1] = rook ? Attacks.ROOK_MAGICS[square] : Attacks.BISHOP_MAGICS[square];
+                ENTRIES[4 * entry + 2] = rook ? Attacks.ROOK_SHIFTS[square] : Attacks.BISHOP_SHIFTS[square];
+                ENTRIES[4 * entry + 3] = offset;
+                System.arraycopy(squareTable, 0, table, offset, squareTable.length);
+                offset += squareTable.length;
+            }
+            return table;
+        }
+
+    }
+
+    /**
+     * The 'black' magic layout: magics that index with the mask complement, into a single table in which the tables of
+     * the squares overlap. The magics and offsets were found with a random search and a greedy first-fit packing.
+     */
+    public static class Black {
+
+        private static final long[] ROOK_MAGICS = new long[] {
+                0x008001186082C001L, 0x0040004020011000L, 0x0100142000084100L, 0x9100098C21009000L,
+                0x0080020400080080L, 0x0100040006884100L, 0x0100010002C20004L, 0x810001C081000062L,
+                0x4080800180400820L, 0x0801004000210880L, 0x0301004035002000L, 0x0030801000080080L,
+                0x0815000800100500L, 0x2000805200804C00L, 0x0182004106004804L, 0xB000800341000080L,
+                0x1000808002400020L, 0x000B888020014002L, 0x0504110020014104L, 0x1418420008120020L,
+                0x4100808014000800L, 0x2480808004000201L, 0x01229400180210D0L, 0x108C420000410084L,
+                0x0000C00580078020L, 0x0440100020080020L, 0x0000910100200540L, 0x03804A0200204050L,
+                0x2000080180040081L, 0x00820006001108A4L, 0x1585009100120004L, 0x0081000100008052L,
+                0x4080004000402000L, 0x2010002005404000L, 0x8401845000802000L, 0x0DC1801001802800L,
+                0x1002800400801800L, 0x6022009002000408L, 0x2840080104000210L, 0x0104800040800100L,
+                0x0840450080010020L, 0x2080201002404001L, 0xC002004080120021L, 0x2000290010010020L,
+                0x0404840801010010L, 0x2002008014008006L, 0x000C100508440002L, 0x2408013403820001L,
+                0x0080000840089080L, 0x0020001C80C00080L, 0x0040110040200100L, 0x0000100081180180L,
+                0x0002902800050100L, 0x0002000410180600L, 0x8081008200040900L, 0xA00000120A024220L,
+                0x00020083001020C2L, 0x0080120080210042L, 0x300040B0A10A0082L, 0x034004C900E01001L,
+                0x010060004392005AL, 0x0092001001080402L, 0x080000308820C604L, 0x01000004209060AEL
+        };
+
+        private static final long[] BISHOP_MAGICS = new long[] {
+                0x40026002020A0060L, 0x6002140802084013L, 0x0821420292000D20L, 0x401A0A0200280000L,
+                0x8806121000000000L, 0x4020863040400101L, 0x0081041002180004L, 0x0020520110401001L,
+                0x01204028080100C1L, 0x8008041430640100L, 0x4408900080810214L, 0x0020040400800024L,
+                0x0000E41029028150L, 0xA0041D0320120108L, 0x0008210110132043L, 0x0088011082104200L,
+                0x00050C2004900210L, 0x2024010210040100L, 0x400801D01282204BL, 0x8A44000804101200L,
+                0x08020494020A0500L, 0x0482010900820724L, 0x0081404101303023L, 0x4802008060820800L,
+                0x0020444008181860L, 0x0012101402100200L, 0xB4D8080083004100L, 0x2100480000820040L,
+                0x0401020004008400L, 0x00010A0000C80400L, 0x0005040204440C08L, 0x82020080004400A8L,
+                0x00B720200C101440L, 0x0003900800040800L, 0x0000087000261400L, 0x2000018280080200L,
+                0x9908120400043100L, 0x0420009208150100L, 0x0210060201013521L, 0x4004640020408288L,
+                0xC0C1042004502000L, 0x0001841108602000L, 0x0000210440444800L, 0x0002412008140100L,
+                0x01A1202002802100L, 0x1008201024102080L, 0x20100409004CA400L, 0x0012020400208102L,
+                0x8410321010090240L, 0x0100288414202200L, 0xD400843208900050L, 0xC05400002A080020L,
+                0x100000B0202E0094L, 0x02020C1010024001L, 0x0021080308018020L, 0x0002080801014800L,
+                0x0000401089984001L, 0x002422098088088AL, 0x9804288300251080L, 0x0800408008840408L,
+                0x8004402010060A00L, 0x080001A0200400C4L, 0x025010105000A090L, 0x2C840102480A0080L
+        };
+
+        private static final int[] ROOK_SHIFTS = new int[] {
+                52, 53, 53, 53, 53, 53, 53, 52,
+                53, 54, 54, 54, 54, 54, 54, 53,
+                53, 54, 54, 54, 54, 54, 54, 53,
+                53, 54, 54, 54, 54, 54, 54, 53,
+                53, 54, 54, 54, 54, 54, 54, 53,
+                53, 54, 54, 54, 54, 54, 54, 53,
+                53, 54, 54, 54, 54, 54, 54, 53,
+                52, 53, 53, 53, 53, 53, 53, 52
+        };
+
+        private static final int[] BISHOP_SHIFTS = new int[] {
+                58, 59, 59, 59, 59, 59, 59, 58,
+                59, 59, 59, 59, 59, 59, 59, 59,
+                59, 59, 57, 57, 57, 57, 59, 59,
+                59, 59, 57, 55, 55, 57, 59, 59,
+                59, 59, 57, 55, 55, 57, 59, 59,
+                59, 59, 57, 57, 57, 57, 59, 59,
+                59, 59, 59, 59, 59, 59, 59, 59,
+                58, 59, 59, 59, 59, 59, 59, 58
+        };
+
+        private static final int[] ROOK_OFFSETS = new int[] {
+                0, 16383, 18431, 20479, 22527, 24575, 26623, 4096,
+                28671, 65522, 66546, 67570, 68594, 69618, 70642, 30719,
+                32767, 71666, 72690, 73714, 74738, 75762, 76786, 34815,
+                36863, 77810, 78834, 79858, 80882, 81906, 82930, 38911,
+                40959, 83954, 84978, 86002, 87026, 88050, 89074, 43007,
+                45055, 90098, 91122, 92146, 93170, 94194, 95218, 47103,
+                49150, 96242, 97266, 98290, 99314, 100338, 101362, 51188,
+                8192, 53234, 55282, 57330, 59378, 61426, 63474, 12287
+        };
+
+        private static final int[] BISHOP_OFFSETS = new int[] {
+                105969, 106222, 106254, 106286, 106318, 106350, 106382, 106031,
+                106414, 106446, 106478, 106510, 106542, 106574, 106606, 106638,
+                106670, 106702, 104434, 104562, 104690, 104818, 106734, 106766,
+                106798, 106830, 104946, 102386, 102898, 105074, 106862, 106894,
+                106926, 106958, 105201, 103410, 103922, 105329, 106990, 107022,
+                107054, 107086, 105457, 105585, 105713, 105841, 107118, 107150,
+                107182, 107214, 107246, 107278, 107310, 107342, 107374, 107406,
+                106094, 107438, 107470, 107502, 107534, 107566, 107598, 106158
+        };
+
+        private static final int SIZE = 107630;
+
+        // The complement of the mask, magic, shift and table offset of each square, with the rook squares first and then
+        // the bishop squares.
+        private static final long[] ENTRIES = new long[4 * 2 * Square.COUNT];
+        private static final long[] ATTACKS = initTable();
+
+        public static long rookAttacks(int square, long occupied) {
+            int i = square << 2;
+            return ATTACKS[(int) (((occupied | ENTRIES[i]) * ENTRIES[i + 1]) >>> ENTRIES[i + 2]) + (int) ENTRIES[i + 3]];
+        }
+
+        public static long bishopAttacks(int square, long occupied) {
+            int i = (square + Square.COUNT) << 2;
+            return ATTACKS[(int) (((occupied | ENTRIES[i]) * ENTRIES[i + 1]) >>> ENTRIES[i + 2]) + (int) ENTRIES[i + 3]];
+        }
+
+        private static long[] initTable() {
+            long[] table = new long[SIZE];
+            for (int entry = 0; entry < 2 * Square.COUNT; entry++) {
+                boolean rook = entry < Square.COUNT;
+                int square = entry % Square.COUNT;
+                long mask = rook ? Attacks.ROOK_MASKS[square] : Attacks.BISHOP_MASKS[square];
+                long magic = rook ? ROOK_MAGICS[square] : BISHOP_MAGICS[square];
+                int shift = rook ? ROOK_SHIFTS[square] : BISHOP_SHIFTS[square];
+                int offset = rook ? ROOK_OFFSETS[square] : BISHOP_OFFSETS[square];
+                ENTRIES[4 * entry]     = ~mask;
+                ENTRIES[4 * entry + 1] = magic;
+                ENTRIES[4 * entry + 2] = shift;
+                ENTRIES[4 * entry + 3] = offset;
+                for (long blockers : Attacks.initBlockerMasks(mask)) {
+                    int index = (int) (((blockers | ~mask) * magic) >>> shift) + offset;
+                    long attacks = Attacks.initAttackMask(square, blockers, rook);
+                    if (table[index] != 0 && table[index] != attacks) {
+                        throw new IllegalStateException("Destructive black magic collision on square " + square);
+                    }
+                    table[index] = attacks;
+                }
+            }
+            return table;
+        }
+
+    }
+
+}
@@ -12,20 +12,21 @@ import java.util.List;
 
 /**
  * Generates all the legal moves in a given position.
- * Using a hybrid of pseudo-legal and legal move generation: first we calculate the bitboards for checking pieces and
- * pinned pieces. If there is a check, we filter out all moves that do not resolve the check. Finally, we filter out all
- * moves that leave the king in (a new) check.
+ * Using a hybrid of pseudo-legal and legal move generation: first we take the bitboards for checking pieces and pinned
+ * pieces, which are cached by the {@link Board}. If there is a check, we filter out all moves that do not resolve the
+ * check. Finally, we filter out all moves that leave the king in (a new) check.
  */
 public class MoveGenerator {
 
     private int checkersCount;
     private long checkersMask;
     private long pinMask;
-    private final long[] pinRayMasks = new long[64];
+    private int kingSquare;
     private long captureMask;
     private long pushMask;
     private MoveFilter filter;
     private boolean white;
+    private boolean pseudoLegal;
 
     private long pawns;
     private long knights;
@@ -34,36 +35,98 @@ public class MoveGenerator {
     private long queens;
     private long king;
 
-    private List<Move> legalMoves;
+    /**
+     * The maximum number of legal moves in any chess position is 218, so a buffer of this size can hold the moves of
+     * any position.
+     */
+    public static final int MAX_MOVES = 256;
+
+    // The buffer the moves are currently being written to, and the index of the next move to write.
+    private short[] moves;
+    private int moveCount;
+
+    // The buffer used by the list-based API, which is not on the hot path of the search.
+    private final short[] listBuffer = new short[MAX_MOVES];
 
     public List<Move> generateMoves(Board board) {
         return generateMoves(board, MoveFilter.ALL);
     }
 
+    /**
+     * Generate the legal moves in the position as a list of {@link Move}. This is a convenience wrapper around
+     * {@link #generateMoves(Board, MoveFilter, short[])} for UCI, notation and tests; the search and perft use the
+     * primitive API directly, to avoid allocating a list and a {@link Move} for every move generated.
+     */
     public List<Move> generateMoves(Board board, MoveFilter filter) {
+        int count = generateMoves(board, filter, listBuffer);
+        List<Move> legalMoves = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            legalMoves.add(new Move(listBuffer[i]));
+        }
+        return legalMoves;
+    }
+
+    /**
+     * Generate the legal moves in the position, writing the encoded {@link Move#value()} of each move into the given
+     * buffer, which must hold at least {@link #MAX_MOVES} moves.
+     * @return the number of moves written to the buffer.
+     */
+    public int generateMoves(Board board, MoveFilter filter, short[] moves) {
+        return generateMoves(board, filter, moves, false);
+    }
+
+    /**
+     * Generate the pseudo-legal moves in the position, writing the encoded {@link Move#value()} of each move into the
+     * given buffer. Pins are ignored, and king moves and en passant captures are not checked for leaving the king in
+     * check, so each move must be verified with {@link #isLegal(Board, Move, long)} before it is made. Since most moves
+     * at a cut node are never tried, this defers the cost of the legality check to the moves that are.
+     * </p>
+     * If the side to move is in check, the evasions are generated fully legal, and need no further verification.
+     * @return the number of moves written to the buffer.
+     */
+    public int generatePseudoLegalMoves(Board board, MoveFilter filter, short[] moves) {
+        return generateMoves(board, filter, moves, true);
+    }
+
+    /**
+     * Generate the pseudo-legal moves in the position, as {@link #generatePseudoLegalMoves(Board, MoveFilter, short[])},
+     * but writing them into the buffer from the given offset, so that moves already in the buffer are kept.
+     * @return the number of moves written to the buffer.
+     */
+    public int generatePseudoLegalMoves(Board board, MoveFilter filter, short[] moves, int offset) {
+        return generateMoves(board, filter, moves, offset, true) - offset;
+    }
+
+    private int generateMoves(Board board, MoveFilter filter, short[] moves, boolean pseudoLegal) {
+        return generateMoves(board, filter, moves, 0, pseudoLegal);
+    }
+
+    // Returns the index after the last move written to the buffer.
+    private int generateMoves(Board board, MoveFilter filter, short[] moves, int offset, boolean pseudoLegal) {
+
+        this.moves = moves;
+        this.moveCount = offset;
 
         white = board.isWhite();
 
         // Initialise piece fields
         initPieces(board, white);
 
-        int kingSquare = Bits.next(king);
+        kingSquare = Bits.next(king);
         this.filter = filter;
 
         // Initialize capture and push masks
         captureMask = Square.ALL;
         pushMask = Square.ALL;
 
-        // Calculate pins and checks
-        calculatePins(board, white);
-        checkersMask = calculateCheckers(board, kingSquare);
+        // Checks and pins are cached by the board. Pins are left to the legality check if generating pseudo-legal moves.
+        checkersMask = board.checkers();
         checkersCount = Bits.count(checkersMask);
-
-        int estimatedLegalMoves = estimateLegalMoves();
-        legalMoves = new ArrayList<>(estimatedLegalMoves);
+        this.pseudoLegal = pseudoLegal && checkersCount == 0;
+        pinMask = this.pseudoLegal ? 0L : board.pinned();
 
         if (checkersCount > 0 && filter == MoveFilter.QUIET) {
-            return legalMoves;
+            return moveCount;
         }
 
         // Generate king moves first
@@ -71,7 +134,7 @@ public class MoveGenerator {
 
         if (checkersCount == 2) {
             // If we are in double-check, the only legal moves are king moves
-            return legalMoves;
+            return moveCount;
         }
 
         if (checkersCount == 1) {
@@ -95,7 +158,7 @@ public class MoveGenerator {
         generateAllSlidingMoves(board);
         generateCastlingMoves(board);
 
-        return legalMoves;
+        return moveCount;
 
     }
 
@@ -107,12 +170,15 @@ public class MoveGenerator {
      * @return True if the specified side is in check, otherwise false.
      */
     public boolean isCheck(Board board, boolean white) {
+        if (white == board.isWhite()) {
+            return board.inCheck();
+        }
         long king = board.getKing(white);
         return isAttacked(board, white, king);
     }
 
     public boolean isCheck(Board board) {
-        return isCheck(board, board.isWhite());
+        return board.inCheck();
     }
 
     private void generatePawnMoves(Board board) {
@@ -120,11 +186,9 @@ public class MoveGenerator {
 
         long opponents = board.getPieces(!white);
         long occupied = board.getOccupied();
-        int opponentKing = Bits.next(board.getKing(!white));
 
-        // Precompute attack and filter masks
-        long opponentAttackMask = Attacks.pawnAttacks(Bits.of(opponentKing), !white);
-        long filterMask = getFilterMask(opponents, opponentAttackMask);
+        // Precompute filter mask
+        long filterMask = getFilterMask(board, opponents, Piece.PAWN);
 
         if (filterMask == Square.NONE) return;
 
@@ -150,7 +214,7 @@ public class MoveGenerator {
             int to = Bits.next(singleMoves);
             int from = white ? to - 8 : to + 8;
             if (!isPinned(from) || isMovingAlongPinRay(from, to)) {
-                legalMoves.add(new Move(from, to));
+                addMove(from, to, Move.NO_FLAG);
             }
             singleMoves = Bits.pop(singleMoves);
         }
@@ -159,7 +223,7 @@ public class MoveGenerator {
             int to = Bits.next(doubleMoves);
             int from = white ? to - 16 : to + 16;
             if (!isPinned(from) || isMovingAlongPinRay(from, to)) {
-                legalMoves.add(new Move(from, to, Move.PAWN_DOUBLE_MOVE_FLAG));
+                addMove(from, to, Move.PAWN_DOUBLE_MOVE_FLAG);
             }
             doubleMoves = Bits.pop(doubleMoves);
         }
@@ -173,7 +237,7 @@ public class MoveGenerator {
             int to = Bits.next(leftCaptures);
             int from = white ? to - 7 : to + 9;
             if (!isPinned(from) || isMovingAlongPinRay(from, to)) {
-                legalMoves.add(new Move(from, to));
+                addMove(from, to, Move.NO_FLAG);
             }
             leftCaptures = Bits.pop(leftCaptures);
         }
@@ -182,7 +246,7 @@ public class MoveGenerator {
             int to = Bits.next(rightCaptures);
             int from = white ? to - 9 : to + 7;
             if (!isPinned(from) || isMovingAlongPinRay(from, to)) {
-                legalMoves.add(new Move(from, to));
+                addMove(from, to, Move.NO_FLAG);
             }
             rightCaptures = Bits.pop(rightCaptures);
         }
@@ -203,16 +267,19 @@ public class MoveGenerator {
             int to = Bits.next(promotionMask);
             int from = white ? to - offsetWhite : to + offsetBlack;
             if (!isPinned(from) || isMovingAlongPinRay(from, to)) {
-                legalMoves.addAll(getPromotionMoves(from, to));
+                addMove(from, to, Move.PROMOTE_TO_QUEEN_FLAG);
+                addMove(from, to, Move.PROMOTE_TO_ROOK_FLAG);
+                addMove(from, to, Move.PROMOTE_TO_BISHOP_FLAG);
+                addMove(from, to, Move.PROMOTE_TO_KNIGHT_FLAG);
             }
             promotionMask = Bits.pop(promotionMask);
         }
     }
 
     private void generateEnPassant(Board board) {
-        if (board.getState().getEnPassantFile() < 0) return;
+        if (board.enPassantFile() < 0) return;
 
-        long enPassantFile = File.toBitboard(board.getState().getEnPassantFile());
+        long enPassantFile = File.toBitboard(board.enPassantFile());
         long leftEnPassants = Attacks.pawnLeftEnPassants(pawns, enPassantFile, white);
         long rightEnPassants = Attacks.pawnRightEnPassants(pawns, enPassantFile, white);
 
@@ -225,34 +292,29 @@ public class MoveGenerator {
             int to = Bits.next(enPassantMask);
             int from = white ? to - offsetWhite : to + offsetBlack;
             Move move = new Move(from, to, Move.EN_PASSANT_FLAG);
-            if (!leavesKingInCheck(board, move, white)) {
-                legalMoves.add(move);
+            if (pseudoLegal || !leavesKingInCheck(board, move, white)) {
+                addMove(from, to, Move.EN_PASSANT_FLAG);
             }
             enPassantMask = Bits.pop(enPassantMask);
         }
     }
 
-    private long getFilterMask(long opponents, long opponentAttackMask) {
+    // Noisy moves are the captures and the quiet moves that give direct check, as told by the board's check squares.
+    private long getFilterMask(Board board, long opponents, Piece piece) {
         return checkersCount > 0 ? captureMask | pushMask : switch (filter) {
             case ALL -> Square.ALL;
             case CAPTURES_ONLY -> opponents;
-            case NOISY -> opponents | opponentAttackMask;
-            case QUIET -> ~opponents & ~opponentAttackMask;
+            case NOISY -> opponents | board.checkSquares(piece);
+            case QUIET -> ~opponents & ~board.checkSquares(piece);
         };
     }
 
     private void generateKnightMoves(Board board) {
         if (knights == 0) return;
         long opponents = board.getPieces(!white);
-        int opponentKing = Bits.next(board.getKing(!white));
 
         // Initialize filter mask based on move filter type
-        long filterMask = checkersCount > 0 ? captureMask | pushMask : switch (filter) {
-            case ALL -> Square.ALL;
-            case CAPTURES_ONLY -> opponents;
-            case NOISY -> opponents | Attacks.knightAttacks(opponentKing);
-            case QUIET -> ~opponents & ~Attacks.knightAttacks(opponentKing);
-        };
+        long filterMask = getFilterMask(board, opponents, Piece.KNIGHT);
         if (filterMask == Square.NONE) {
             return;
         }
@@ -266,7 +328,7 @@ public class MoveGenerator {
             long possibleMoves = getKnightAttacks(board, from, white) & (pushMask | captureMask) & filterMask;
             while (possibleMoves != 0) {
                 int to = Bits.next(possibleMoves);
-                legalMoves.add(new Move(from, to));
+                addMove(from, to, Move.NO_FLAG);
                 possibleMoves = Bits.pop(possibleMoves);
             }
             unpinnedKnights = Bits.pop(unpinnedKnights);
@@ -289,21 +351,16 @@ public class MoveGenerator {
 
         long kingMoves = Attacks.kingAttacks(from) & ~friendlies & filterMask;
 
-        // Temporarily remove the king from the board
-        board.removeKing(white);
+        // The king can move to any square not attacked by the opponent. Squares attacked are left to the legality check
+        // if generating pseudo-legal moves.
+        if (!pseudoLegal) {
+            kingMoves &= ~board.threats();
+        }
 
-        // Generate legal king moves
         while (kingMoves != 0) {
-            int to = Bits.next(kingMoves);
-            // Check if the end square is not attacked by the opponent
-            if (!isAttacked(board, white, Bits.of(to))) {
-                legalMoves.add(new Move(from, to));
-            }
+            addMove(from, Bits.next(kingMoves), Move.NO_FLAG);
             kingMoves = Bits.pop(kingMoves);
         }
-
-        // Restore the king to its original position on the board
-        board.addKing(from, white);
     }
 
     private void generateCastlingMoves(Board board) {
@@ -314,12 +371,12 @@ public class MoveGenerator {
         int from = Bits.next(king);
         long occupied = board.getOccupied();
 
-        boolean isKingsideAllowed = Castling.kingsideAllowed(board.getState().rights, white);
+        boolean isKingsideAllowed = Castling.kingsideAllowed(board.rights(), white);
         if (isKingsideAllowed) {
             generateCastlingMove(board, white, true, from, occupied);
         }
 
-        boolean isQueensideAllowed = Castling.queensideAllowed(board.getState().rights, white);
+        boolean isQueensideAllowed = Castling.queensideAllowed(board.rights(), white);
         if (isQueensideAllowed) {
             generateCastlingMove(board, white, false, from, occupied);
         }
@@ -338,14 +395,14 @@ public class MoveGenerator {
         long travelSquares = Castling.Standard.travelSquares(white, kingside);
         long blockedSquares = travelSquares & occupied;
         long safeSquares = Castling.Standard.safeSquares(white, kingside);
-        if (blockedSquares == 0 && !isAttacked(board, white, safeSquares)) {
+        if (blockedSquares == 0 && (safeSquares & board.threats()) == 0) {
             int to = getCastleEndSquare(board, white, kingside);
-            legalMoves.add(new Move(kingSquare, to, Move.CASTLE_FLAG));
+            addMove(kingSquare, to, Move.CASTLE_FLAG);
         }
     }
 
     private void generateChess960CastlingMove(Board board, boolean white, boolean kingside, int kingSquare, long occupied) {
-        int rookSquare = Castling.getRook(board.getState().rights, kingside, white);
+        int rookSquare = Castling.getRook(board.rights(), kingside, white);
         long rookSquareBit = Bits.of(rookSquare);
         if ((pinMask & rookSquareBit) != 0) {
             // can't castle if rook is pinned 
@@ -361,9 +418,9 @@ public class MoveGenerator {
 
         long blockedSquares = travelSquares & occupied;
         long safeSquares = Bits.of(kingSquare) | Ray.between(kingSquare, kingDst) | Bits.of(kingDst);
-        if (blockedSquares == 0 && !isAttacked(board, white, safeSquares)) {
+        if (blockedSquares == 0 && (safeSquares & board.threats()) == 0) {
             int to = getCastleEndSquare(board, white, kingside);
-            legalMoves.add(new Move(kingSquare, to, Move.CASTLE_FLAG));
+            addMove(kingSquare, to, Move.CASTLE_FLAG);
         }
     }
 
@@ -389,8 +446,8 @@ public class MoveGenerator {
         long filterMask = checkersCount > 0 ? captureMask | pushMask : switch (filter) {
             case ALL -> Square.ALL;
             case CAPTURES_ONLY -> opponents;
-            case NOISY -> getCaptureAndCheckMask(board, white, opponents, occupied, isDiagonal, isOrthogonal);
-            case QUIET -> ~getCaptureAndCheckMask(board, white, opponents, occupied, isDiagonal, isOrthogonal);
+            case NOISY -> getCaptureAndCheckMask(board, opponents, isDiagonal, isOrthogonal);
+            case QUIET -> ~getCaptureAndCheckMask(board, opponents, isDiagonal, isOrthogonal);
         };
         if (filterMask == Square.NONE) {
             return;
@@ -405,26 +462,25 @@ public class MoveGenerator {
 
             // Handle pinned pieces
             if (isPinned(from)) {
-                attackMask &= pinRayMasks[from];
+                attackMask &= Ray.line(kingSquare, from);
             }
 
             sliders = Bits.pop(sliders);
             while (attackMask != 0) {
                 int to = Bits.next(attackMask);
-                legalMoves.add(new Move(from, to));
+                addMove(from, to, Move.NO_FLAG);
                 attackMask = Bits.pop(attackMask);
             }
         }
     }
 
-    private long getCaptureAndCheckMask(Board board, boolean white, long opponents, long occupied, boolean isDiagonal, boolean isOrthogonal) {
-        int opponentKing = Bits.next(board.getKing(!white));
+    private long getCaptureAndCheckMask(Board board, long opponents, boolean isDiagonal, boolean isOrthogonal) {
         long filterMask = opponents;
         if (isDiagonal) {
-            filterMask |= Attacks.bishopAttacks(opponentKing, occupied);
+            filterMask |= board.checkSquares(Piece.BISHOP);
         }
         if (isOrthogonal) {
-            filterMask |= Attacks.rookAttacks(opponentKing, occupied);
+            filterMask |= board.checkSquares(Piece.ROOK);
         }
         return filterMask;
     }
@@ -486,39 +542,6 @@ public class MoveGenerator {
         return attackMask &~ friendlies;
     }
 
-    private long calculateCheckers(Board board, int square) {
-        long occupied = board.getOccupied();
-        long friendlies = board.getPieces(white);
-        long attackerMask = 0L;
-
-        long opponentPawns = board.getPawns(!white);
-        if (opponentPawns != 0) {
-            long pawnAttackMask = getPawnAttacks(board, square, white);
-            attackerMask |= pawnAttackMask & opponentPawns;
-        }
-
-        long opponentKnights = board.getKnights(!white);
-        if (opponentKnights != 0) {
-            long knightAttackMask = getKnightAttacks(board, square, white);
-            attackerMask |= knightAttackMask & opponentKnights;
-        }
-
-        long opponentBishops = board.getBishops(!white);
-        long opponentQueens = board.getQueens(!white);
-        long diagonalSliders = opponentBishops | opponentQueens;
-        if (diagonalSliders != 0) {
-            attackerMask |= getSlidingAttacks(square, friendlies, occupied, true, false) & diagonalSliders;
-        }
-long opponentRooks = board.getRooks(!white);long orthogonalSliders = opponentRooks | opponentQueens;
-        if (orthogonalSliders != 0) {
-            attackerMask |= getSlidingAttacks(square, friendlies, occupied, false, true) & orthogonalSliders;
-        }
-
-        // King can never give check
-
-        return attackerMask;
-    }
-
     private boolean isAttacked(Board board, boolean white, long squareMask) {
 long opponentPawns = board.getPawns(!white);
         if (opponentPawns != 0) {
@@ -598,9 +621,7 @@ long opponentKnights = board.getKnights(!white);
             long friendliesBetween = ray & friendlies;
             // If there is exactly one friendly piece between the king and the pinner, it's pinned
             if (Bits.count(friendliesBetween) == 1) {
-                int friendlySquare = Bits.next(friendliesBetween);
                 this.pinMask |= friendliesBetween;
-                this.pinRayMasks[friendlySquare] = ray | (Bits.of(possiblePinner));
             }
 
             possiblePinners = Bits.pop(possiblePinners);
@@ -686,8 +707,8 @@ boolean white = board.isWhite();int from = move.from();int to = move.to();Piece
             int kingsideCastleSquare;
             int queensideCastleSquare;
             if (UCI.Options.chess960) {
-            	kingsideCastleSquare = Castling.getRook(board.getState().rights, true, white);
-            	queensideCastleSquare = Castling.getRook(board.getState().rights, false, white);
+            	kingsideCastleSquare = Castling.getRook(board.rights(), true, white);
+            	queensideCastleSquare = Castling.getRook(board.rights(), false, white);
             } else {
 	            kingsideCastleSquare = white ? 6 : 62;
 	            queensideCastleSquare = white ? 2 : 58;
@@ -698,11 +719,11 @@ boolean white = board.isWhite();int from = move.from();int to = move.to();Piece
                 return false;
 
             // Must have kingside rights
-            if (to == kingsideCastleSquare && !Castling.kingsideAllowed(board.getState().rights, white))
+            if (to == kingsideCastleSquare && !Castling.kingsideAllowed(board.rights(), white))
                 return false;
 
             // Must have queenside rights
-            if (to == queensideCastleSquare && !Castling.queensideAllowed(board.getState().rights, white))
+            if (to == queensideCastleSquare && !Castling.queensideAllowed(board.rights(), white))
                 return false;
 
             boolean kingside = to == kingsideCastleSquare;
@@ -718,14 +739,14 @@ boolean white = board.isWhite();int from = move.from();int to = move.to();Piece
 	            travelSquares = (kingTravelSquares | rookTravelSquares) & ~ (Bits.of(to) | Bits.of(from));
 	            safeSquares = Bits.of(from) | Ray.between(from, kingDst) | Bits.of(kingDst);
            } else {
-	            int rookSquare = Castling.getRook(board.getState().rights, kingside, white);
+	            int rookSquare = Castling.getRook(board.rights(), kingside, white);
 	            travelSquares = Ray.between(from, rookSquare);
 	            safeSquares = Castling.Standard.safeSquares(white, kingside);
             }
 
             long blockedSquares = travelSquares & occupied;
             // Can't castle through check or occupied cell
-            return blockedSquares == 0 && !isAttacked(board, white, safeSquares);
+            return blockedSquares == 0 && (safeSquares & board.threats()) == 0;
 
         }
 
@@ -734,7 +755,7 @@ boolean white = board.isWhite();int from = move.from();int to = move.to();Piece
             if (move.isEnPassant()) {
 
                 // Can't en passant if there's no en passant square
-                if (board.getState().getEnPassantFile() < 0)
+                if (board.enPassantFile() < 0)
                     return false;
 
                 int epSquare = white ? to - 8 : to + 8;
@@ -821,6 +842,37 @@ boolean white = board.isWhite();int from = move.from();int to = move.to();Piece
 
     }
 
+    /**
+     * Check whether a pseudo-legal move, generated by {@link #generatePseudoLegalMoves}, is legal. The side to move must
+     * not be in check, since the evasions are already generated legal.
+     * @param pinned the pieces pinned to the king, as returned by {@link Board#pinned()}.
+     */
+    public boolean isLegal(Board board, Move move, long pinned) {
+        boolean white = board.isWhite();
+        int from = move.from();
+        int to = move.to();
+
+        // En passant can uncover a check along the rank of the captured pawn, and in Chess960 a castling rook may be
+        // pinned. Both are rare enough that we can simply make the move and test it.
+        if (move.isEnPassant() || (move.isCastling() && UCI.Options.chess960))
+            return !leavesKingInCheck(board, move, white);
+
+        // Standard castling is generated legal.
+        if (move.isCastling())
+            return true;
+
+        long king = board.getKing(white);
+        if (Bits.contains(king, from)) {
+            // The king must not move to an attacked square, including squares that it was shielding from a slider.
+            return !Bits.contains(board.threats(), to);
+        }
+
+        // A pinned piece may only move along the line between the king and its pinner.
+        if (!Bits.contains(pinned, from))
+            return true;
+        return Bits.contains(Ray.line(Bits.next(king), from), to);
+    }
+
     public boolean isLegal(Board board, Move move) {
         if (!isPseudoLegal(board, move))
             return false;
@@ -834,56 +886,14 @@ boolean white = board.isWhite();int from = move.from();int to = move.to();Piece
 
     /**
      * Checks if a move gives check, *before* the move is made on the board.
+     * @see Board#givesCheck(Move)
      */
     public boolean givesCheck(Board board, Move move) {
-
-        Piece piece = board.pieceAt(move.from());
-        long occ = board.getOccupied();
-        long king = board.getKing(!board.isWhite());
-        int kingSquare = Bits.next(king);
-
-        long destinationAttacks = Attacks.attacks(move.to(), piece, occ, board.isWhite());
-
-        if (Bits.contains(destinationAttacks, kingSquare))
-            return true;
-
-        long newOcc = occ ^ Bits.of(move.from()) | Bits.of(move.to());
-        if (move.isEnPassant())
-            newOcc ^= Bits.of(move.to() + (board.isWhite() ? -8 : 8));
-
-        long newBishopAttacks = Attacks.bishopAttacks(kingSquare, newOcc);
-        long newRookAttacks = Attacks.rookAttacks(kingSquare, newOcc);
-
-        long bishops = board.getBishops(board.isWhite());
-        long rooks = board.getRooks(board.isWhite());
-        long queens = board.getQueens(board.isWhite());
-        long diagonals = bishops | queens;
-        long orthogonals = rooks | queens;
-
-        if (!Bits.empty(orthogonals & newRookAttacks)
-                || !Bits.empty(diagonals & newBishopAttacks))
-            return true;
-
-        if (move.isPromotion()) {
-            long promoAttacks = Attacks.attacks(move.to(), move.promoPiece(), newOcc, board.isWhite());
-            return Bits.contains(promoAttacks, kingSquare);
-        }
-
-        if (move.isCastling()) {
-            boolean kingside = Castling.isKingside(move.from(), move.to());
-            int rookTo = Castling.rookTo(kingside, board.isWhite());
-            return Bits.contains(newRookAttacks, rookTo);
-        }
-
-        return false;
-
+        return board.givesCheck(move);
     }
 
-    private List<Move> getPromotionMoves(int from, int to) {
-        return List.of(new Move(from, to, Move.PROMOTE_TO_QUEEN_FLAG),
-                        new Move(from, to, Move.PROMOTE_TO_ROOK_FLAG),
-                        new Move(from, to, Move.PROMOTE_TO_BISHOP_FLAG),
-                        new Move(from, to, Move.PROMOTE_TO_KNIGHT_FLAG));
+    private void addMove(int from, int to, int flag) {
+        moves[moveCount++] = (short) (from | (to << 6) | (flag << 12));
     }
 
 
@@ -900,15 +910,14 @@ boolean white = board.isWhite();int from = move.from();int to = move.to();Piece
     }
 
     private boolean isMovingAlongPinRay(int from, int to) {
-        long pinRay = pinRayMasks[from];
-        return (Bits.of(to) & pinRay) != 0;
+        return Bits.contains(Ray.line(kingSquare, from), to);
     }
 
     private int getCastleEndSquare(Board board, boolean white, boolean kingside) {
         // In standard chess, the king 'to' square is the actual destination square
         // In Chess960 UCI notation, castle moves are encoded as king-captures-rook
         if (UCI.Options.chess960) {
-            return Castling.getRook(board.getState().getRights(), kingside, white);
+            return Castling.getRook(board.rights(), kingside, white);
         } else {
             if (kingside) {
                 return white ? 6 : 62;
@@ -922,21 +931,6 @@ boolean white = board.isWhite();int from = move.from();int to = move.to();Piece
         return pinMask;
     }
 
-    /**
-     * Estimate the number of legal moves in the current position, based on the piece count and
-     * the average number of legal moves per piece. Used to initialise the legal moves ArrayList
-     * with a 'best guess', to reduce the number of times the ArrayList has to grow during move
-     * generation, yielding a small increase in performance.
-     */
-    private int estimateLegalMoves() {
-        return (Bits.count(pawns) * 2) +
-                (Bits.count(knights) * 3) +
-                (Bits.count(bishops) * 3) +
-                (Bits.count(rooks) * 6) +
-                (Bits.count(queens) * 9) +
-                (Bits.count(king) * 3);
-    }
-
     private void initPieces(Board board, boolean white) {
         this.pawns = board.getPawns(white);
         this.knights = board.getKnights(white);
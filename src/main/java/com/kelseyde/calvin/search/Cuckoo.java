@@ -0,0 +1,104 @@
+package com.kelseyde.calvin.search;
+
+import com.kelseyde.calvin.board.Bits;
+import com.kelseyde.calvin.board.Bits.Square;
+import com.kelseyde.calvin.board.Key;
+import com.kelseyde.calvin.board.Piece;
+import com.kelseyde.calvin.movegen.Attacks;
+
+/**
+ * Cuckoo hash table of the Zobrist key differences made by every reversible move - that is, every move of a non-pawn
+ * piece between two squares, in either direction, along with the change of side to move. Given the key of the current
+ * position and the key of an earlier position, a lookup tells us in constant time whether a single move could transform
+ * one into the other. This is used to detect that the side to move can force a repetition, before it has happened.
+ * </p>
+ * There are exactly 3668 such moves, which fit in a table of 8192 entries with two hash functions.
+ *
+ * @see <a href="https://marcelk.net/2013-04-06/paper/upcoming-rep-v2.pdf">Marcel van Kervinck - Upcoming repetition detection</a>
+ */
+public class Cuckoo {
+
+    private static final int SIZE = 8192;
+    private static final int MASK = SIZE - 1;
+
+    private static final long[] KEYS = new long[SIZE];
+    private static final short[] MOVES = new short[SIZE];
+
+    static {
+        int count = 0;
+        Piece[] pieces = { Piece.KNIGHT, Piece.BISHOP, Piece.ROOK, Piece.QUEEN, Piece.KING };
+        for (boolean white : new boolean[] { true, false }) {
+            for (Piece piece : pieces) {
+                for (int from = 0; from < Square.COUNT; from++) {
+                    long targets = attacks(piece, from);
+                    while (targets != 0) {
+                        int to = Bits.next(targets);
+                        targets = Bits.pop(targets);
+                        if (to <= from) continue;
+                        insert(Key.piece(from, to, piece, white) ^ Key.sideToMove(), (short) (from | (to << 6)));
+                        count++;
+                    }
+                }
+            }
+        }
+        if (count != 3668) {
+            throw new IllegalStateException("Expected 3668 reversible moves, found " + count);
+        }
+    }
+
+    /**
+     * Find the reversible move whose key difference is the given key.
+     * @return the index of the move, or -1 if there is no such move.
+     */
+    public static int index(long key) {
+        int index = h1(key);
+        if (KEYS[index] == key) return index;
+        index = h2(key);
+        if (KEYS[index] == key) return index;
+        return -1;
+    }
+
+    public static int from(int index) {
+        return MOVES[index] & 0x3F;
+    }
+
+    public static int to(int index) {
+        return (MOVES[index] >>> 6) & 0x3F;
+    }
+
+    // Insert the key into its first slot, evicting any previous occupant to its alternative slot, until a free slot is
+    // found. The table is sparse enough that this always terminates.
+    private static void insert(long key, short move) {
+        int index = h1(key);
+        while (true) {
+            long evictedKey = KEYS[index];
+            short evictedMove = MOVES[index];
+            KEYS[index] = key;
+            MOVES[index] = move;
+            if (evictedKey == 0) return;
+            key = evictedKey;
+            move = evictedMove;
+            index = index == h1(key) ? h2(key) : h1(key);
+        }
+    }
+
+    private static long attacks(Piece piece, int square) {
+        return switch (piece) {
+            case KNIGHT -> Attacks.knightAttacks(square);
+            case BISHOP -> Attacks.bishopAttacks(square, 0L);
+            case ROOK -> Attacks.rookAttacks(square, 0L);
+            case QUEEN -> Attacks.bishopAttacks(square, 0L) | Attacks.rookAttacks(square, 0L);
+            case KING -> Attacks.kingAttacks(square);
+            default -> 0L;
+        };
+    }
+
+    private static int h1(long key) {
+        return (int) key & MASK;
+    }
+
+    private static int h2(long key) {
+        return (int) (key >>> 16) & MASK;
+    }
+
+}
@@ -5,10 +5,16 @@ import com.kelseyde.calvin.board.Move;
 import com.kelseyde.calvin.engine.EngineConfig;
 import com.kelseyde.calvin.movegen.MoveGenerator;
 import com.kelseyde.calvin.tables.tt.TranspositionTable;
+import com.kelseyde.calvin.uci.UCI;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import java.util.stream.IntStream;
 
@@ -23,16 +29,23 @@ import java.util.stream.IntStream;
  * core. The instances share a transposition table, which allows them to benefit from each other's work. The "lazy" part
  * of the name comes from the fact that there is no explicit work division or synchronization between the threads - they
  * each do their own thing, but can use the results of the others' work when they come across the same positions.
+ * </p>
+ * The searchers run on a dedicated pool of long-lived worker threads, one per searcher, which park between searches.
+ * This avoids the common {@link java.util.concurrent.ForkJoinPool}, whose parallelism is capped at cores - 1, and avoids
+ * re-creating threads on every 'go' command.
  *
  * @see <a href="https://www.chessprogramming.org/Lazy_SMP">Chess Programming Wiki</a>
  */
 public class ParallelSearcher implements Search {
 
+    private static final long POOL_SHUTDOWN_TIMEOUT_MS = 10000;
+
     private final EngineConfig config;
     private final TranspositionTable tt;
     private final MoveGenerator movegen;
 
     private List<Searcher> searchers;
+    private ExecutorService pool;
     private int threadCount;
     private int hashSize;
     private Board board;
@@ -51,6 +64,7 @@ public class ParallelSearcher implements Search {
         this.hashSize = config.hashConfig.defaultSizeMb;
         this.threadCount = config.threadConfig.defaultThreads;
         this.searchers = initSearchers();
+        this.pool = initPool();
     }
 
     /**
@@ -64,13 +78,12 @@ public class ParallelSearcher implements Search {
     public SearchResult search(SearchLimits limits) {
         try {
             setPosition(board);
+            tt.birthday();
             List<CompletableFuture<SearchResult>> threads = searchers.stream()
                     .map(searcher -> initThread(searcher, limits))
                     .toList();
 
-            SearchResult result = selectResult(threads).get();
-            tt.birthday();
-            return result;
+            return selectResult(threads).get();
         } catch (Exception e) {
             System.out.println("info error " + e);
             // In case of an error, return a random legal move to avoid crashing the engine
@@ -93,16 +106,19 @@ public class ParallelSearcher implements Search {
     }
 
     /**
-     * Sets the size of the {@link TranspositionTable}. This is done by creating a new transposition table with the
-     * given size and setting it for all searchers.
+     * Sets the size of the {@link TranspositionTable}. The table is re-allocated by the search worker threads in
+     * parallel, which also pre-touches the memory so that the first search does not stall on page faults.
      *
      * @param hashSizeMb the size in megabytes
+     * @throws OutOfMemoryError if the new table could not be allocated, in which case the old table is kept.
      */
     @Override
     public void setHashSize(int hashSizeMb) {
+        long start = System.currentTimeMillis();
+        this.tt.resize(hashSizeMb, pool, threadCount);
         this.hashSize = hashSizeMb;
-        this.tt.resize(this.hashSize);
         this.searchers = initSearchers();
+        UCI.write(String.format("info string resized hash to %s MB in %s ms", hashSizeMb, System.currentTimeMillis() - start));
     }
 
     /**
@@ -112,12 +128,34 @@ public class ParallelSearcher implements Search {
      */
     @Override
     public void setThreadCount(int threadCount) {
+        // Stop any search still in flight, and wait for the old workers to finish it before the new pool is started.
+        searchers.forEach(Searcher::abort);
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(POOL_SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                UCI.write("info error search threads did not stop within " + POOL_SHUTDOWN_TIMEOUT_MS + " ms");
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
         this.threadCount = threadCount;
         this.searchers = initSearchers();
+        this.pool = initPool();
+    }
+
+    /**
+     * Returns the total time in milliseconds that each search thread has spent searching, indexed by thread.
+     */
+    public long[] searchTimes() {
+        return searchers.stream()
+                .mapToLong(searcher -> searcher.td.searchTime)
+                .toArray();
     }
 
     private CompletableFuture<SearchResult> initThread(Searcher searcher, SearchLimits tc) {
         return CompletableFuture.supplyAsync(() -> {
+            long start = System.currentTimeMillis();
             try {
                 SearchResult result = searcher.search(tc);
                 if (searcher.isMainThread())
@@ -128,8 +166,10 @@ public class ParallelSearcher implements Search {
                 // In case of an error, return a random legal move to avoid crashing the engine
                 Move move = movegen.generateMoves(board).stream().findAny().orElse(null);
                 return SearchResult.of(move);
+            } finally {
+                searcher.td.searchTime += System.currentTimeMillis() - start;
             }
-        });
+        }, pool);
     }
 
     /**
@@ -162,6 +202,22 @@ public class ParallelSearcher implements Search {
                 .toList();
     }
 
+    /**
+     * Initializes the pool of search worker threads. The pool has exactly one worker per searcher, so that every
+     * searcher gets its own thread. The workers are daemon threads, so that an idle pool does not block shutdown.
+     *
+     * @return the initialized thread pool
+     */
+    private ExecutorService initPool() {
+        AtomicInteger index = new AtomicInteger(0);
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "search-thread-" + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(threadCount, factory);
+    }
+
     /**
      * Initializes a single searcher with the necessary components.
      *
@@ -183,12 +239,16 @@ public class ParallelSearcher implements Search {
     }
 
     /**
-     * Clears the history in the transposition table and all searchers.
+     * Clears the history in the transposition table and all searchers. The transposition table is cleared in place
+     * by the search worker threads in parallel.
      */
     @Override
     public void clearHistory() {
-        tt.clear();
-        searchers.forEach(Searcher::clearHistory);
+        long start = System.currentTimeMillis();
+        tt.clear(pool, threadCount);
+        UCI.write(String.format("info string cleared hash in %s ms", System.currentTimeMillis() - start));
+        searchers.forEach(Searcher::clearThreadHistory);
+        searchers.forEach(searcher -> searcher.td.searchTime = 0);
     }
 
 }
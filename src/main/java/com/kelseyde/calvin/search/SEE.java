@@ -25,30 +25,35 @@ public class SEE {
     }
 
     public static boolean see(EngineConfig config, Board board, Move move, int threshold) {
+        return see(config, board, move.value(), threshold);
+    }
+
+    public static boolean see(EngineConfig config, Board board, short move, int threshold) {
 
         boolean white = board.isWhite();
-        int from = move.from();
-        int to = move.to();
+        int from = Move.from(move);
+        int to = Move.to(move);
+        Piece promoPiece = Move.promoPiece(move);
 
         int score = -threshold;
-        Piece captured = move.isEnPassant() ? Piece.PAWN : board.pieceAt(to);
+        Piece captured = Move.isEnPassant(move) ? Piece.PAWN : board.pieceAt(to);
         score += captured != null ? value(config, captured) : 0;
 
-        if (move.promoPiece() != null) {
-            score += value(config, move.promoPiece()) - value(config, Piece.PAWN);
+        if (promoPiece != null) {
+            score += value(config, promoPiece) - value(config, Piece.PAWN);
         }
 
         if (score < 0) return false;
 
-        Piece nextVictim = move.promoPiece() != null ? move.promoPiece() : board.pieceAt(from);
+        Piece nextVictim = promoPiece != null ? promoPiece : board.pieceAt(from);
         score -= value(config, nextVictim);
 
         if (score >= 0) return true;
 
         long occ = board.getOccupied() ^ Bits.of(from) ^ Bits.of(to);
 
-        if (move.isEnPassant()) {
-            int epFile = board.getState().getEnPassantFile();
+        if (Move.isEnPassant(move)) {
+            int epFile = board.enPassantFile();
             int epSquare = toEnPassantSquare(epFile, white);
             occ &= ~(1L << epSquare);
         }
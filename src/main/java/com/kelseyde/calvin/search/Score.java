@@ -1,9 +1,9 @@
 package com.kelseyde.calvin.search;
 
 import com.kelseyde.calvin.board.Bits;
+import com.kelseyde.calvin.board.Bits.Ray;
 import com.kelseyde.calvin.board.Board;
-import com.kelseyde.calvin.board.BoardState;
-import com.kelseyde.calvin.board.Piece;
+import com.kelseyde.calvin.board.Key;
 
 public class Score {
 
@@ -26,42 +26,107 @@ public class Score {
      * gamble is that the boost in search speed is worth the potential cost.
      */
     public static boolean isDraw(Board board) {
-        return isDoubleRepetition(board) || isFiftyMoveRule(board) || isInsufficientMaterial(board);
+        return isDraw(board, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Check for an 'effective' draw during the search, given the distance from the root. A single repetition only counts
+     * if the earlier position was reached within the search; a position from the game before the root has to have
+     * occurred twice, since otherwise the game itself has only seen it twice.
+     */
+    public static boolean isDraw(Board board, int ply) {
+        return isDoubleRepetition(board, ply) || isFiftyMoveRule(board) || isInsufficientMaterial(board);
     }
 
     public static boolean isThreefoldRepetition(Board board) {
 
         int repetitionCount = 0;
-        long zobrist = board.getState().getKey();
-        BoardState[] states = board.getStates();
-        for (int i = board.getPly() - 2; i >= 0; i-= 2) {
-            BoardState state = states[i];
+        long zobrist = board.key();
+        int end = repetitionWindow(board);
+        for (int i = board.getPly() - 4; i >= end; i-= 2) {
 
-            if (state.getKey() == zobrist)
+            if (board.keyAt(i) == zobrist)
                 repetitionCount += 1;
 
             if (repetitionCount >= 2)
                 return true;
 
-            if (state.captured != null || Piece.PAWN == state.moved)
-                break;
         }
         return false;
 
     }
 
     public static boolean isDoubleRepetition(Board board) {
+        return isDoubleRepetition(board, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param ply the distance from the root. A position at or before the root must be repeated twice.
+     */
+    public static boolean isDoubleRepetition(Board board, int ply) {
+
+        long zobrist = board.key();
+        int current = board.getPly();
+        int end = repetitionWindow(board);
+        int preRootCount = 0;
+        for (int i = current - 4; i >= end; i-= 2) {
+
+            if (board.keyAt(i) == zobrist) {
+                if (current - i < ply)
+                    return true;
+                if (++preRootCount >= 2)
+                    return true;
+            }
+
+        }
+        return false;
+
+    }
+
+    /**
+     * The earliest ply of the game history whose position could be repeated. No position before the last irreversible
+     * move - a capture, pawn move or null move, all of which reset the half-move clock - can ever be repeated. The
+     * position two plies ago can't be a repetition either, since both sides would have to have passed, so the search for
+     * a repetition starts four plies back.
+     */
+    private static int repetitionWindow(Board board) {
+        return Math.max(board.getPly() - board.halfMoveClock(), -board.historyLength());
+    }
+
+    /**
+     * Check whether the side to move has a reversible move that repeats a position from earlier in the search - in
+     * which case it can at least force a draw. Rather than generating moves, the key difference between the current
+     * position and each earlier position is looked up in the {@link Cuckoo} table of reversible moves.
+     * </p>
+     * The key difference of the intervening moves is tracked as well, since unless it cancels out, the two positions
+     * differ by more than a single move.
+     * @param ply the distance from the root. Repetitions of positions before the root are not counted.
+     */
+    public static boolean hasUpcomingRepetition(Board board, int ply) {
+
+        int current = board.getPly();
+        int end = current - repetitionWindow(board);
+        if (end < 3)
+            return false;
+
+        long key = board.key();
+        long other = key ^ board.keyAt(current - 1) ^ Key.sideToMove();
+
+        for (int i = 3; i <= end; i += 2) {
+
+            other ^= board.keyAt(current - i + 1) ^ board.keyAt(current - i) ^ Key.sideToMove();
+            if (other != 0)
+                continue;
 
-        long zobrist = board.getState().getKey();
-        BoardState[] states = board.getStates();
-        for (int i = board.getPly() - 2; i >= 0; i-= 2) {
-            BoardState state = states[i];
+            int index = Cuckoo.index(key ^ board.keyAt(current - i));
+            if (index < 0)
+                continue;
 
-            if (state.key == zobrist)
+            // The move must not be blocked by any piece between its two squares.
+            long between = Ray.between(Cuckoo.from(index), Cuckoo.to(index));
+            if ((between & board.getOccupied()) == 0 && ply > i)
                 return true;
 
-            if (state.captured != null || Piece.PAWN == state.moved)
-                break;
         }
         return false;
 
@@ -79,6 +144,6 @@ public class Score {
     }
 
     public static boolean isFiftyMoveRule(Board board) {
-        return board.getState().getHalfMoveClock() >= 100;
+        return board.halfMoveClock() >= 100;
     }
 }
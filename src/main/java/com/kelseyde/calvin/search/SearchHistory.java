@@ -94,8 +94,8 @@ public class SearchHistory {
     public int evalCorrection(Board board, int ply) {
 
         int pawn    = pawnCorrHistTable.get(board.pawnKey(), board.isWhite());
-        int white   = nonPawnCorrHistTables[Colour.WHITE].get(board.nonPawnKeys()[Colour.WHITE], board.isWhite());
-        int black   = nonPawnCorrHistTables[Colour.BLACK].get(board.nonPawnKeys()[Colour.BLACK], board.isWhite());
+        int white   = nonPawnCorrHistTables[Colour.WHITE].get(board.nonPawnKey(true), board.isWhite());
+        int black   = nonPawnCorrHistTables[Colour.BLACK].get(board.nonPawnKey(false), board.isWhite());
         int counter = getContCorrHistEntry(ply, board.isWhite());
 
         pawn        = pawn * config.corrPawnWeight() / 100;
@@ -113,8 +113,8 @@ public class SearchHistory {
     public int squaredCorrectionTerms(Board board, int ply) {
 
         int pawn    = pawnCorrHistTable.get(board.pawnKey(), board.isWhite());
-        int white   = nonPawnCorrHistTables[Colour.WHITE].get(board.nonPawnKeys()[Colour.WHITE], board.isWhite());
-        int black   = nonPawnCorrHistTables[Colour.BLACK].get(board.nonPawnKeys()[Colour.BLACK], board.isWhite());
+        int white   = nonPawnCorrHistTables[Colour.WHITE].get(board.nonPawnKey(true), board.isWhite());
+        int black   = nonPawnCorrHistTables[Colour.BLACK].get(board.nonPawnKey(false), board.isWhite());
         int counter = getContCorrHistEntry(ply, board.isWhite());
 
         pawn        = pawn * config.corrPawnWeight() / 100;
@@ -131,8 +131,8 @@ public class SearchHistory {
     public void updateCorrectionHistory(Board board, int ply, int depth, int score, int staticEval) {
 
         pawnCorrHistTable.update(board.pawnKey(), board.isWhite(), depth, score, staticEval);
-        nonPawnCorrHistTables[Colour.WHITE].update(board.nonPawnKeys()[Colour.WHITE], board.isWhite(), depth, score, staticEval);
-        nonPawnCorrHistTables[Colour.BLACK].update(board.nonPawnKeys()[Colour.BLACK], board.isWhite(), depth, score, staticEval);
+        nonPawnCorrHistTables[Colour.WHITE].update(board.nonPawnKey(true), board.isWhite(), depth, score, staticEval);
+        nonPawnCorrHistTables[Colour.BLACK].update(board.nonPawnKey(false), board.isWhite(), depth, score, staticEval);
         updateContCorrHistEntry(ss, ply, board.isWhite(), depth, score, staticEval);
 
     }
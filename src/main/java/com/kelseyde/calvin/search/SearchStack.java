@@ -2,6 +2,7 @@ package com.kelseyde.calvin.search;
 
 import com.kelseyde.calvin.board.Move;
 import com.kelseyde.calvin.board.Piece;
+import com.kelseyde.calvin.movegen.MoveGenerator;
 
 public class SearchStack {
 
@@ -9,6 +10,17 @@ public class SearchStack {
 
     private final SearchStackEntry[] stack = new SearchStackEntry[STACK_SIZE];
 
+    // The move picker keeps the noisy and quiet moves of a node in the same buffer, and needs room for as many moves
+    // again while it splits a stage into its good and bad moves.
+    private static final int MOVE_BUFFER_SIZE = 2 * MoveGenerator.MAX_MOVES;
+
+    // Buffers for the moves generated at each ply, and for their move-ordering and history scores. These are kept apart
+    // from the entries, so that they survive clear(). A singular search re-visits its node at the same ply while the
+    // moves of that node are still being picked, so it is given its own set of buffers.
+    private final short[][][] moveBuffers = new short[2][STACK_SIZE][MOVE_BUFFER_SIZE];
+    private final int[][][] scoreBuffers = new int[2][STACK_SIZE][MOVE_BUFFER_SIZE];
+    private final int[][][] historyScoreBuffers = new int[2][STACK_SIZE][MOVE_BUFFER_SIZE];
+
     public SearchStack() {
         for (int i = 0; i < STACK_SIZE; i++) {
             stack[i] = new SearchStackEntry();
@@ -19,6 +31,18 @@ public class SearchStack {
         return ply >= 0 && ply < STACK_SIZE ? stack[ply] : null;
     }
 
+    public short[] moveBuffer(int ply, boolean singular) {
+        return moveBuffers[singular ? 1 : 0][ply];
+    }
+
+    public int[] scoreBuffer(int ply, boolean singular) {
+        return scoreBuffers[singular ? 1 : 0][ply];
+    }
+
+    public int[] historyScoreBuffer(int ply, boolean singular) {
+        return historyScoreBuffers[singular ? 1 : 0][ply];
+    }
+
     public void clear() {
         for (int i = 0; i < STACK_SIZE; i++) {
             stack[i] = new SearchStackEntry();
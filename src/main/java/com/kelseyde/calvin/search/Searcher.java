@@ -4,6 +4,7 @@ import com.kelseyde.calvin.board.Board;
 import com.kelseyde.calvin.board.Move;
 import com.kelseyde.calvin.board.Piece;
 import com.kelseyde.calvin.engine.EngineConfig;
+import com.kelseyde.calvin.evaluation.EvalCache;
 import com.kelseyde.calvin.evaluation.NNUE;
 import com.kelseyde.calvin.movegen.MoveGenerator;
 import com.kelseyde.calvin.search.SearchStack.SearchStackEntry;
@@ -11,13 +12,14 @@ import com.kelseyde.calvin.search.ordering.MovePicker;
 import com.kelseyde.calvin.search.ordering.QuiescentMovePicker;
 import com.kelseyde.calvin.search.ordering.ScoredMove;
 import com.kelseyde.calvin.search.ordering.StandardMovePicker;
-import com.kelseyde.calvin.tables.tt.HashEntry;
+import com.kelseyde.calvin.tables.tt.HashEntry.Value;
 import com.kelseyde.calvin.tables.tt.HashFlag;
 import com.kelseyde.calvin.tables.tt.TranspositionTable;
 import com.kelseyde.calvin.uci.UCI;
 
 import java.util.List;
 
+import static com.kelseyde.calvin.search.Score.hasUpcomingRepetition;
 import static com.kelseyde.calvin.search.Score.isDraw;
 import static com.kelseyde.calvin.search.Score.isMate;
 import static com.kelseyde.calvin.search.Searcher.SearchLimit.HARD;
@@ -40,6 +42,7 @@ public class Searcher implements Search {
     final SearchStack ss;
     final ThreadData td;
     final NNUE eval;
+    final EvalCache evalCache;
 
     SearchLimits limits;
     Board board;
@@ -52,6 +55,7 @@ public class Searcher implements Search {
         this.history = new SearchHistory(config, ss);
         this.movegen = new MoveGenerator();
         this.eval = new NNUE();
+        this.evalCache = new EvalCache(EvalCache.sizeFor(tt.size()));
     }
 
     /**
@@ -175,7 +179,7 @@ public class Searcher implements Search {
         boolean rootNode = ply == 0;
 
         // Determine if we are currently in check.
-        boolean inCheck = movegen.isCheck(board);
+        boolean inCheck = board.inCheck();
 
         // If depth is reached, drop into quiescence search
         if (depth <= 0 && !inCheck)
@@ -186,9 +190,17 @@ public class Searcher implements Search {
             depth = 0;
 
         // If the game is drawn by repetition, insufficient material or fifty move rule, return zero
-        if (ply > 0 && isDraw(board))
+        if (ply > 0 && isDraw(board, ply))
             return Score.DRAW;
 
+        // Upcoming Repetition Detection
+        // If we can force a repetition with a single reversible move, then we can at least draw, so raise alpha to zero.
+        if (!rootNode && alpha < Score.DRAW && hasUpcomingRepetition(board, ply)) {
+            alpha = Score.DRAW;
+            if (alpha >= beta)
+                return alpha;
+        }
+
         // Update the selective search depth
         if (ply + 1 > td.seldepth)
             td.seldepth = ply + 1;
@@ -215,7 +227,7 @@ public class Searcher implements Search {
         history.killerTable().clear(ply + 1);
         ss.get(ply + 2).failHighCount = 0;
 
-        HashEntry ttEntry = null;
+        long ttEntry = TranspositionTable.MISS;
         boolean ttHit = false;
         boolean ttPrune = false;
         Move ttMove = null;
@@ -227,21 +239,21 @@ public class Searcher implements Search {
         // do not match, we can still use information from the TT - such as the best move, score, and static eval -
         // to improve the current search.
         if (!singularSearch) {
-            ttEntry = tt.get(board.key(), ply);
-            ttHit = ttEntry != null;
-            ttMove = ttHit ? ttEntry.move() : null;
-            ttPv = ttPv || (ttHit && ttEntry.pv());
+            ttEntry = tt.probe(board.key(), ply);
+            ttHit = ttEntry != TranspositionTable.MISS;
+            ttMove = ttHit ? Value.getMove(ttEntry) : null;
+            ttPv = ttPv || (ttHit && Value.isPv(ttEntry));
 
             if (!rootNode
                     && ttHit
-                    && ttEntry.depth() >= depth + (pvNode ? 2 : 0)
-                    && (ttEntry.score() <= alpha || cutNode)) {
+                    && Value.getDepth(ttEntry) >= depth + (pvNode ? 2 : 0)
+                    && (Value.getScore(ttEntry) <= alpha || cutNode)) {
                 if (isWithinBounds(ttEntry, alpha, beta)) {
                     ttPrune = true;
                     if (!pvNode) {
                         // In non-PV nodes with an TT hit matching the depth and alpha/beta bounds of
                         // the current search, we can cut off the search here and return the TT score.
-                        return ttEntry.score();
+                        return Value.getScore(ttEntry);
                     } else {
                         // In PV nodes, rather than cutting off we reduce search depth.
                         depth--;
@@ -257,7 +269,7 @@ public class Searcher implements Search {
         // reduced depth expecting to record a move that we can use later for a full-depth search.
         if (!rootNode
                 && (pvNode || cutNode)
-                && (!ttHit || ttMove == null || ttEntry.depth() < depth - config.iirDepth())
+                && (!ttHit || ttMove == null || Value.getDepth(ttEntry) < depth - config.iirDepth())
                 && depth >= config.iirDepth()) {
             depth--;
         }
@@ -285,19 +297,15 @@ public class Searcher implements Search {
         }
         else if (!inCheck) {
             // Re-use cached static eval if available. Don't compute static eval while in check.
-            rawStaticEval = ttHit ? ttEntry.staticEval() : eval.evaluate();
+            rawStaticEval = ttHit ? Value.getStaticEval(ttEntry) : staticEval();
             uncorrectedEval = rawStaticEval;
             correction = ttMove != null ? 0 : history.evalCorrection(board, ply);
             complexity = history.squaredCorrectionTerms(board, ply);
             staticEval = rawStaticEval + correction;
 
-            // If there is no entry in the TT yet, store the static eval for future re-use.
-            if (!ttHit)
-                tt.put(board.key(), HashFlag.NONE, 0, 0, null, rawStaticEval, 0, ttPv);
-
             // If the TT score is within the bounds of the current window, we can use it as a more accurate static eval.
             if (canUseTTScore(ttEntry, rawStaticEval)) {
-                staticEval = ttEntry.score();
+                staticEval = Value.getScore(ttEntry);
                 uncorrectedEval = staticEval;
             }
         }
@@ -366,7 +374,7 @@ public class Searcher implements Search {
                 && ply >= td.nmpPly
                 && prev.move != null
                 && staticEval >= beta
-                && (!ttHit || cutNode || ttEntry.score() >= beta)
+                && (!ttHit || cutNode || Value.getScore(ttEntry) >= beta)
                 && board.hasNonPawnMaterial()) {
 
                 int r = config.nmpBase()
@@ -528,10 +536,11 @@ public class Searcher implements Search {
                     && !singularSearch
                     && move.equals(ttMove)
                     && depth >= config.seDepth()
-                    && ttEntry.flag() != HashFlag.UPPER
-                    && ttEntry.depth() >= depth - config.seTtDepthMargin()) {
+                    && Value.getFlag(ttEntry) != HashFlag.UPPER
+                    && Value.getDepth(ttEntry) >= depth - config.seTtDepthMargin()) {
 
-                int sBeta = Math.max(-Score.MATE + 1, ttEntry.score() - depth * config.seBetaMargin() / 16);
+                int ttScore = Value.getScore(ttEntry);
+                int sBeta = Math.max(-Score.MATE + 1, ttScore - depth * config.seBetaMargin() / 16);
                 int sDepth = (depth - config.seReductionOffset()) / config.seReductionDivisor();
 
                 curr.excludedMove = move;
@@ -544,11 +553,11 @@ public class Searcher implements Search {
                     else
                         extension = 1;
                 }
-                else if (ttEntry.score() >= beta)
+                else if (ttScore >= beta)
                     extension = -3;
                 else if (cutNode)
                     extension = -2;
-                else if (ttEntry.score() <= alpha)
+                else if (ttScore <= alpha)
                     extension = -1;
 
             }
@@ -722,12 +731,19 @@ public class Searcher implements Search {
             return alpha;
 
         // If the game is drawn by repetition, insufficient material or fifty move rule, return zero.
-        if (ply > 0 && isDraw(board))
+        if (ply > 0 && isDraw(board, ply))
             return Score.DRAW;
 
+        // If we can force a repetition with a single reversible move, then we can at least draw, so raise alpha to zero.
+        if (ply > 0 && alpha < Score.DRAW && hasUpcomingRepetition(board, ply)) {
+            alpha = Score.DRAW;
+            if (alpha >= beta)
+                return alpha;
+        }
+
         // If the maximum depth is reached, return the static evaluation of the position.
         if (ply >= MAX_DEPTH)
-            return movegen.isCheck(board) ? 0 : eval.evaluate();
+            return board.inCheck() ? 0 : eval.evaluate();
 
         // Update the selective search depth
         if (ply + 1 > td.seldepth)
@@ -736,15 +752,15 @@ public class Searcher implements Search {
         boolean pvNode = beta - alpha > 1;
 
         // Exit the quiescence search early if we already have an accurate score stored in the hash table.
-        HashEntry ttEntry = tt.get(board.key(), ply);
-        boolean ttHit = ttEntry != null;
-        Move ttMove = ttHit ? ttEntry.move() : null;
-        boolean ttPv = pvNode || (ttHit && ttEntry.pv());
+        long ttEntry = tt.probe(board.key(), ply);
+        boolean ttHit = ttEntry != TranspositionTable.MISS;
+        Move ttMove = ttHit ? Value.getMove(ttEntry) : null;
+        boolean ttPv = pvNode || (ttHit && Value.isPv(ttEntry));
 
         if (!pvNode && ttHit && isWithinBounds(ttEntry, alpha, beta))
-            return ttEntry.score();
+            return Value.getScore(ttEntry);
 
-        boolean inCheck = movegen.isCheck(board);
+        boolean inCheck = board.inCheck();
 
         SearchStackEntry curr = ss.get(ply);
         SearchStackEntry prev = ss.get(ply - 1);
@@ -759,18 +775,15 @@ public class Searcher implements Search {
         if (!inCheck) {
             // If we are not in check, then we have the option to 'stand pat', i.e. decline to continue the capture chain,
             // if the static evaluation of the position is good enough.
-            rawStaticEval = ttHit ? ttEntry.staticEval() : eval.evaluate();
+            rawStaticEval = ttHit ? Value.getStaticEval(ttEntry) : staticEval();
             correction = ttMove != null ? 0 : history.evalCorrection(board, ply);
             staticEval = rawStaticEval + correction;
 
-            if (!ttHit)
-                tt.put(board.key(), HashFlag.NONE, 0, 0, null, rawStaticEval, 0, ttPv);
-
             if (canUseTTScore(ttEntry, rawStaticEval))
-                staticEval = ttEntry.score();
+                staticEval = Value.getScore(ttEntry);
 
             if (staticEval >= beta) {
-                if (!ttHit || ttEntry.flag() == HashFlag.NONE)
+                if (!ttHit)
                     tt.put(board.key(), HashFlag.LOWER, 0, ply, null, rawStaticEval, staticEval, ttPv);
                 return staticEval;
             }
@@ -977,13 +990,15 @@ public class Searcher implements Search {
     }
 
     // Check whether the transposition table entry is within the bounds of the current alpha and beta values.
-    private boolean isWithinBounds(HashEntry entry, int alpha, int beta) {
+    private boolean isWithinBounds(long entry, int alpha, int beta) {
 
-        if (!Score.isDefined(entry.score()))
+        int score = Value.getScore(entry);
+        int flag = Value.getFlag(entry);
+        if (!Score.isDefined(score))
             return false;
-        return entry.flag() == HashFlag.EXACT
-                || (entry.flag() == HashFlag.UPPER && entry.score() <= alpha)
-                || (entry.flag() == HashFlag.LOWER && entry.score() >= beta);
+        return flag == HashFlag.EXACT
+                || (flag == HashFlag.UPPER && score <= alpha)
+                || (flag == HashFlag.LOWER && score >= beta);
 
     }
 
@@ -995,7 +1010,15 @@ public class Searcher implements Search {
     @Override
     public void clearHistory() {
         tt.clear();
+        clearThreadHistory();
+    }
+
+    /**
+     * Clear the history local to this search thread, leaving the shared transposition table untouched.
+     */
+    void clearThreadHistory() {
         eval.clearHistory();
+        evalCache.clear();
         history.clear();
     }
 
@@ -1034,11 +1057,25 @@ public class Searcher implements Search {
         return threshold;
     }
 
-    private boolean canUseTTScore(HashEntry ttEntry, int rawStaticEval) {
-        return ttEntry != null &&
-                (ttEntry.flag() == HashFlag.EXACT ||
-                (ttEntry.flag() == HashFlag.LOWER && ttEntry.score() >= rawStaticEval) ||
-                (ttEntry.flag() == HashFlag.UPPER && ttEntry.score() <= rawStaticEval));
+    // Probe the eval cache before falling back to a full evaluation of the position.
+    private int staticEval() {
+        long key = board.key();
+        int staticEval = evalCache.get(key);
+        if (staticEval == EvalCache.MISS) {
+            staticEval = eval.evaluate();
+            evalCache.put(key, staticEval);
+        }
+        return staticEval;
+    }
+
+    private boolean canUseTTScore(long ttEntry, int rawStaticEval) {
+        if (ttEntry == TranspositionTable.MISS)
+            return false;
+        int score = Value.getScore(ttEntry);
+        int flag = Value.getFlag(ttEntry);
+        return flag == HashFlag.EXACT ||
+                (flag == HashFlag.LOWER && score >= rawStaticEval) ||
+                (flag == HashFlag.UPPER && score <= rawStaticEval);
     }
 
     private int clamp(int value, int min, int max) {
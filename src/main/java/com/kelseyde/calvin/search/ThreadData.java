@@ -14,6 +14,10 @@ public class ThreadData {
     public int nmpPly;
     public boolean abort;
 
+    // The total time in milliseconds this thread has spent searching. It is only updated by the search thread while no
+    // other thread writes it, but it is read from the UCI thread, so it is volatile for the reader to see the latest value.
+    public volatile long searchTime;
+
     // The best overall move and score found so far
     public Move bestMove;
     public int bestScore;
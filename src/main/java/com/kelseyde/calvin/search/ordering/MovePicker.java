@@ -9,8 +9,6 @@ import com.kelseyde.calvin.movegen.MoveGenerator.MoveFilter;
 import com.kelseyde.calvin.search.SearchHistory;
 import com.kelseyde.calvin.search.SearchStack;
 
-import java.util.List;
-
 /**
  * Selects the next move to try in a given position.
  * </p>
@@ -42,6 +40,13 @@ public abstract class MovePicker {
     final MoveScorer scorer;
     final SearchHistory history;
 
+    // The moves of this node, with their scores, kept in the buffers for this ply. The moves of each stage occupy a
+    // contiguous range of the buffers, and are sorted in place as they are picked.
+    final short[] moves;
+    final int[] scores;
+    final int[] historyScores;
+    int size;
+
     final Move ttMove;
     final Board board;
     final boolean inCheck;
@@ -66,6 +71,10 @@ public abstract class MovePicker {
         this.ply = ply;
         this.ttMove = ttMove;
         this.inCheck = inCheck;
+        boolean singular = ss.get(ply).excludedMove != null;
+        this.moves = ss.moveBuffer(ply, singular);
+        this.scores = ss.scoreBuffer(ply, singular);
+        this.historyScores = ss.historyScoreBuffer(ply, singular);
         this.scorer = initMoveScorer(config, history, ss);
     }
 
@@ -76,21 +85,32 @@ public abstract class MovePicker {
     public abstract ScoredMove next();
 
     /**
-     * Handle newly-generated moves, potentially distributing them to different lists to be tried in different
-     * stages during search. The implementation is left up to the move picker subclass.
+     * Handle newly-generated moves, scoring them and potentially splitting them into different ranges of the buffers
+     * to be tried in different stages during search. The implementation is left up to the move picker subclass.
+     * @param start the index of the first newly-generated move in the buffers.
+     * @param count the number of newly-generated moves.
+     * @return the number of moves to keep, which the implementation must leave at the start of the range.
      */
-    protected abstract void handleStagedMoves(List<Move> moves);
+    protected abstract int handleStagedMoves(int start, int count);
 
     /**
      * Check if a move is 'special', in that it is tried in a dedicated stage and should therefore be skipped during
      * normal move generation. This is used to avoid trying the same move multiple times in different stages.
      */
-    protected abstract boolean isSpecial(Move move);
+    protected abstract boolean isSpecial(short move);
+
+    /**
+     * Retrieve the start (inclusive) and end (exclusive) of the range of the buffers holding the moves that should be
+     * tried in the current stage.
+     */
+    protected abstract int stageStart(Stage stage);
+
+    protected abstract int stageEnd(Stage stage);
 
     /**
-     * Retrieve the moves that should be tried in the current stage.
+     * Retrieve the type of the move at the given index of the buffers.
      */
-    protected abstract ScoredMove[] loadStagedMoves(Stage stage);
+    protected abstract MoveType moveType(int index);
 
     /**
      * Initialize the move scorer for this move picker. This is used to score moves during generation.
@@ -103,17 +123,11 @@ public abstract class MovePicker {
      */
     protected ScoredMove pickMove(MovePicker.Stage nextStage) {
 
-        final ScoredMove[] moves = loadStagedMoves(stage);
-
         // If we're in check then all evasions have been tried in the noisy stage
         if ((stage == Stage.GOOD_QUIET || stage == Stage.BAD_QUIET) && (skipQuiets || inCheck))
             return nextStage(nextStage);
 
-        // If we have no moves to try, move on to the next stage.
-        if (moveIndex >= moves.length)
-            return nextStage(nextStage);
-
-        ScoredMove move = selectionSort(moves);
+        ScoredMove move = selectionSort(stageStart(stage), stageEnd(stage));
 
         if (move == null)
             return nextStage(nextStage);
@@ -124,52 +138,68 @@ public abstract class MovePicker {
     }
 
     protected ScoredMove generate(MoveFilter filter, Stage nextStage) {
-        // Generate moves based on the current stage and filter.
-        List<Move> stagedMoves = movegen.generateMoves(board, filter);
+        // Generate moves based on the current stage and filter into the buffers for this ply, after the moves of any
+        // earlier stage. The moves are pseudo-legal, and are only checked for legality once they are picked.
+        int count = movegen.generatePseudoLegalMoves(board, filter, moves, size);
 
         // How the generated moves are handled depends on the move picker implementation.
-        handleStagedMoves(stagedMoves);
+        size += handleStagedMoves(size, count);
 
         // Reset the move index and move to the next stage.
         return nextStage(nextStage);
     }
 
     /**
-     * Select the next move to try from a given list of moves. We use an incremental selection sort algorithm to only
-     * move the best move to the front of the list each time. This is faster than doing a full sort, since we typically
-     * only try a few moves in each node.
+     * Select the next move to try from a given range of the buffers. We use an incremental selection sort algorithm to
+     * only move the best move to the front of the range each time. This is faster than doing a full sort, since we
+     * typically only try a few moves in each node. A {@link Move} is only created for the move that is returned.
      */
-    protected ScoredMove selectionSort(ScoredMove[] moves) {
-        if (moveIndex >= moves.length)
-            return null;
-        ScoredMove best = moves[moveIndex];
-        if (best == null)
-            return null;
-        int bestScore = best.score();
-        int bestIndex = moveIndex;
-        for (int j = moveIndex + 1; j < moves.length; j++) {
-            ScoredMove current = moves[j];
-            if (current == null)
-                break;
-            if (current.score() > bestScore) {
-                bestScore = current.score();
-                bestIndex = j;
+    protected ScoredMove selectionSort(int start, int end) {
+        while (start + moveIndex < end) {
+            int index = start + moveIndex;
+            int bestScore = scores[index];
+            int bestIndex = index;
+            for (int j = index + 1; j < end; j++) {
+                if (scores[j] > bestScore) {
+                    bestScore = scores[j];
+                    bestIndex = j;
+                }
+            }
+            if (bestIndex != index)
+                swap(index, bestIndex);
+            if (!isSpecial(moves[index])) {
+                Move move = new Move(moves[index]);
+                if (isLegal(move)) {
+                    Piece piece = board.pieceAt(move.from());
+                    Piece captured = board.captured(move);
+                    return new ScoredMove(move, piece, captured, scores[index], historyScores[index], moveType(index));
+                }
             }
-        }
-        if (bestIndex != moveIndex)
-            swap(moves, moveIndex, bestIndex);
-        ScoredMove scoredMove = moves[moveIndex];
-        if (scoredMove == null || isSpecial(scoredMove.move())) {
             moveIndex++;
-            return selectionSort(moves);
         }
-        return scoredMove;
+        return null;
+    }
+
+    /**
+     * Check whether a pseudo-legal move is legal. Generated moves are only checked once they are picked, since at a cut
+     * node most of them are never tried. If we are in check, the generated evasions are already legal.
+     */
+    protected boolean isLegal(Move move) {
+        if (inCheck)
+            return true;
+        return movegen.isLegal(board, move, board.pinned());
     }
 
-    protected void swap(ScoredMove[] moves, int i, int j) {
-        ScoredMove temp = moves[i];
+    protected void swap(int i, int j) {
+        short move = moves[i];
         moves[i] = moves[j];
-        moves[j] = temp;
+        moves[j] = move;
+        int score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+        int historyScore = historyScores[i];
+        historyScores[i] = historyScores[j];
+        historyScores[j] = historyScore;
     }
 
     protected ScoredMove pickTTMove(Stage nextStage) {
@@ -23,7 +23,6 @@ public class MoveScorer {
     private final SearchStack ss;
     private final int seeNoisyDivisor;
     private final int seeNoisyOffset;
-    private Stage stage;
 
     public MoveScorer(EngineConfig config,
                       SearchHistory history,
@@ -37,62 +36,103 @@ public class MoveScorer {
         this.seeNoisyOffset = seeNoisyOffset;
     }
 
+    // The history score and type of the last move scored.
+    private int historyScore;
+    private MoveType type;
+
     // Assign a move a score and type. The scoring heuristics used depend on the type of move, with different
     // heuristics for quiets, captures and promotions.
     public ScoredMove score(Board board, Move move, int ply, Stage stage) {
 
-        this.stage = stage;
+        int score = score(board, move.value(), ply, stage);
         Piece piece = board.pieceAt(move.from());
         Piece captured = board.captured(move);
+        return new ScoredMove(move, piece, captured, score, historyScore, type);
+
+    }
+
+    // Assign an encoded move a score and type, without creating a Move. Returns the score, while the history score and
+    // type are available from historyScore() and type() until the next move is scored.
+    public int score(Board board, short move, int ply, Stage stage) {
+
+        Piece piece = board.pieceAt(Move.from(move));
+        Piece captured = captured(board, move);
         boolean capture = captured != null;
-        boolean promotion = move.isPromotion();
+        boolean promotion = Move.isPromotion(move);
 
+        int score;
         if (promotion)
-            return scorePromotion(move, piece, captured);
+            score = scorePromotion(move);
         else if (capture)
-            return scoreCapture(board, move, piece, captured);
+            score = scoreCapture(board, move, piece, captured);
         else
-            return scoreQuiet(board, move, piece, ply);
+            score = scoreQuiet(board, move, piece, ply);
+
+        type = type(board, move, score, stage);
+        return score;
 
     }
 
-    // Promotions are considered noisy moves. They are scored based on the value of the promotion piece. Queen
-    // promotions are considered 'good noisies', while under-promotions are considered 'bad noisies'.
-    private ScoredMove scorePromotion(Move move, Piece piece, Piece captured) {
+    public int historyScore() {
+        return historyScore;
+    }
+
+    public MoveType type() {
+        return type;
+    }
 
-        int score = SEE.value(config, move.promoPiece()) - SEE.value(config, Piece.PAWN);
-        MoveType type = move.promoPiece() == Piece.QUEEN ? MoveType.GOOD_NOISY : MoveType.BAD_NOISY;
-        return new ScoredMove(move, piece, captured, score, 0, type);
+    // Classify a move that has been given the score, as a good or bad noisy or quiet. Queen promotions are 'good
+    // noisies', while under-promotions are 'bad noisies'. Captures are separated into 'good' and 'bad' noisies based on
+    // whether they pass a SEE threshold that is determined by their MVV + capthist score. Quiets are separated into
+    // 'good' and 'bad' quiets based on whether their history score exceeds a configurable threshold - except for quiet
+    // checks that are generated during the noisy stage, which are considered 'bad noisies' regardless of score.
+    public MoveType type(Board board, short move, int score, Stage stage) {
+
+        if (Move.isPromotion(move))
+            return Move.promoPiece(move) == Piece.QUEEN ? MoveType.GOOD_NOISY : MoveType.BAD_NOISY;
+
+        if (captured(board, move) != null) {
+            int threshold = -score / seeNoisyDivisor + seeNoisyOffset;
+            return SEE.see(config, board, move, threshold) ? MoveType.GOOD_NOISY : MoveType.BAD_NOISY;
+        }
+
+        return stage == Stage.GEN_NOISY
+                ? MoveType.BAD_NOISY
+                : (score >= config.goodQuietThreshold() ? MoveType.GOOD_QUIET : MoveType.BAD_QUIET);
+
+    }
+
+    // Promotions are considered noisy moves. They are scored based on the value of the promotion piece.
+    private int scorePromotion(short move) {
+
+        historyScore = 0;
+        return SEE.value(config, Move.promoPiece(move)) - SEE.value(config, Piece.PAWN);
 
     }
 
     // Captures are scored based on the value of the captured piece (MVV, Most Valuable Victim), and their score in the
-    // capture history table. They are separated into 'good' and 'bad' noisies based on whether they pass a SEE threshold
-    // that is determined by their MVV + capthist score.
-    private ScoredMove scoreCapture(Board board, Move move, Piece piece, Piece captured) {
-
-        int historyScore = history.captureHistory().get(piece, move.to(), captured, board.isWhite());
-        int score = SEE.value(config, captured) + historyScore / 4;
-        int threshold = -score / seeNoisyDivisor + seeNoisyOffset;
-        MoveType type = SEE.see(config, board, move, threshold) ? MoveType.GOOD_NOISY : MoveType.BAD_NOISY;
-        return new ScoredMove(move, piece, captured, score, historyScore, type);
+    // capture history table.
+    private int scoreCapture(Board board, short move, Piece piece, Piece captured) {
+
+        historyScore = history.captureHistory().get(piece, Move.to(move), captured, board.isWhite());
+        return SEE.value(config, captured) + historyScore / 4;
 
     }
 
-    // Quiets are scored based on their score in the quiet and continuation history tables. They are separated into 'good'
-    // and 'bad' quiets based on whether their history score exceeds a configurable threshold - except for quiet checks
-    // that are generated during the noisy stage, which are considered 'bad noisies' regardless of score.
-    private ScoredMove scoreQuiet(Board board, Move move, Piece piece, int ply) {
+    // Quiets are scored based on their score in the quiet and continuation history tables.
+    private int scoreQuiet(Board board, short move, Piece piece, int ply) {
 
         boolean white = board.isWhite();
-        int historyScore = history.quietHistory().get(move, piece, white);
-        int contHistScore = history.continuationHistory().get(move, piece, white, ply, config.contHistPlies(), ss);
-        int score = historyScore + contHistScore;
-        MoveType type = stage == Stage.GEN_NOISY
-                ? MoveType.BAD_NOISY
-                : (score >= config.goodQuietThreshold() ? MoveType.GOOD_QUIET : MoveType.BAD_QUIET);
-        return new ScoredMove(move, piece, null, score, score, type);
+        int to = Move.to(move);
+        int quietHistScore = history.quietHistory().get(to, piece, white);
+        int contHistScore = history.continuationHistory().get(to, piece, white, ply, config.contHistPlies(), ss);
+        historyScore = quietHistScore + contHistScore;
+        return historyScore;
+
+    }
 
+    private Piece captured(Board board, short move) {
+        return Move.isEnPassant(move) ? Piece.PAWN : board.pieceAt(Move.to(move));
     }
 
 }
@@ -8,14 +8,13 @@ import com.kelseyde.calvin.movegen.MoveGenerator.MoveFilter;
 import com.kelseyde.calvin.search.SearchHistory;
 import com.kelseyde.calvin.search.SearchStack;
 
-import java.util.List;
-
 /**
  * Implementation of {@link MovePicker} for quiescence search. Discards all bad noisies which don't pass a SEE threshold.
  */
 public class QuiescentMovePicker extends MovePicker {
 
-    private ScoredMove[] goodNoisies;
+    // The end of the range of the buffers holding the moves to try.
+    private int end;
 
     public QuiescentMovePicker(EngineConfig config,
                                MoveGenerator movegen,
@@ -55,27 +54,46 @@ public class QuiescentMovePicker extends MovePicker {
     }
 
     @Override
-    protected void handleStagedMoves(List<Move> moves) {
+    protected int handleStagedMoves(int start, int count) {
         // In quiescent movegen all moves are treated as 'good noisies'
-        goodNoisies = new ScoredMove[moves.size()];
-        int goodIndex = 0;
-        for (Move move : moves) {
-            ScoredMove scoredMove = scorer.score(board, move, ply, stage);
+        int kept = start;
+        for (int i = start; i < start + count; i++) {
+            short move = moves[i];
+            int score = scorer.score(board, move, ply, stage);
             // In q-search, only consider good noisies
             // unless we are in check, in which case consider all moves.
-            if (scoredMove.isGoodNoisy() || inCheck)
-                goodNoisies[goodIndex++] = scoredMove;
+            if (scorer.type() == MoveType.GOOD_NOISY || inCheck) {
+                moves[kept] = move;
+                scores[kept] = score;
+                historyScores[kept] = scorer.historyScore();
+                kept++;
+            }
         }
+        end = kept;
+        return kept - start;
+    }
+
+    @Override
+    protected boolean isSpecial(short move) {
+        return ttMove != null && ttMove.value() == move;
+    }
+
+    @Override
+    protected int stageStart(Stage stage) {
+        return 0;
     }
 
     @Override
-    protected boolean isSpecial(Move move) {
-        return move.equals(ttMove);
+    protected int stageEnd(Stage stage) {
+        return end;
     }
 
     @Override
-    protected ScoredMove[] loadStagedMoves(Stage stage) {
-        return goodNoisies;
+    protected MoveType moveType(int index) {
+        // Out of check only good noisies are kept. In check, the type is recovered from the score the move was given.
+        return inCheck
+                ? scorer.type(board, moves[index], scores[index], Stage.QSEARCH_GEN_NOISY)
+                : MoveType.GOOD_NOISY;
     }
 
 }
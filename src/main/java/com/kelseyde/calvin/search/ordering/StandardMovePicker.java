@@ -8,8 +8,6 @@ import com.kelseyde.calvin.movegen.MoveGenerator.MoveFilter;
 import com.kelseyde.calvin.search.SearchHistory;
 import com.kelseyde.calvin.search.SearchStack;
 
-import java.util.List;
-
 /**
  * Implementation of {@link MovePicker} for standard PVS search. Splits noisy moves into separate 'good' and 'bad' stages,
  * based on whether they pass a SEE threshold, with the bad noisies pushed to the end after quiets. Also handles killer
@@ -19,10 +17,11 @@ public class StandardMovePicker extends MovePicker {
 
     int killerIndex;
 
-    ScoredMove[] goodNoisies;
-    ScoredMove[] badNoisies;
-    ScoredMove[] goodQuiets;
-    ScoredMove[] badQuiets;
+    // The ends of the ranges of the buffers holding the good noisies, bad noisies, good quiets and bad quiets, in order.
+    int goodNoisyEnd;
+    int noisyEnd;
+    int goodQuietEnd;
+    int quietEnd;
 
     public StandardMovePicker(EngineConfig config,
                               MoveGenerator movegen,
@@ -66,53 +65,83 @@ public class StandardMovePicker extends MovePicker {
     }
 
     @Override
-    protected void handleStagedMoves(List<Move> moves) {
+    protected int handleStagedMoves(int start, int count) {
         if (stage == Stage.GEN_NOISY) {
-            int goodIndex = 0;
-            int badIndex = 0;
-            goodNoisies = new ScoredMove[moves.size()];
-            badNoisies = new ScoredMove[moves.size()];
-            for (Move move : moves) {
-                ScoredMove scoredMove = scorer.score(board, move, ply, stage);
-                if (scoredMove.isGoodNoisy())
-                    goodNoisies[goodIndex++] = scoredMove;
-                else
-                    badNoisies[badIndex++] = scoredMove;
-            }
+            goodNoisyEnd = start + split(start, count, MoveType.GOOD_NOISY);
+            noisyEnd = start + count;
         }
         else if (stage == Stage.GEN_QUIET) {
-            int goodIndex = 0;
-            int badIndex = 0;
-            goodQuiets = new ScoredMove[moves.size()];
-            badQuiets = new ScoredMove[moves.size()];
-            for (Move move : moves) {
-                ScoredMove scoredMove = scorer.score(board, move, ply, stage);
-                if (scoredMove.isGoodQuiet())
-                    goodQuiets[goodIndex++] = scoredMove;
-                else
-                    badQuiets[badIndex++] = scoredMove;
-            }
+            goodQuietEnd = start + split(start, count, MoveType.GOOD_QUIET);
+            quietEnd = start + count;
+        }
+        return count;
+    }
+
+    /**
+     * Score the moves in the given range of the buffers, and split them so that the moves of the given type come before
+     * the rest, each part keeping the order in which the moves were generated. The rest are moved through the free
+     * space after the range.
+     * @return the number of moves of the given type.
+     */
+    private int split(int start, int count, MoveType type) {
+        int end = start + count;
+        int first = start;
+        int rest = end;
+        for (int i = start; i < end; i++) {
+            short move = moves[i];
+            int score = scorer.score(board, move, ply, stage);
+            int target = scorer.type() == type ? first++ : rest++;
+            moves[target] = move;
+            scores[target] = score;
+            historyScores[target] = scorer.historyScore();
         }
+        int restCount = rest - end;
+        System.arraycopy(moves, end, moves, first, restCount);
+        System.arraycopy(scores, end, scores, first, restCount);
+        System.arraycopy(historyScores, end, historyScores, first, restCount);
+        return first - start;
     }
 
     @Override
-    protected boolean isSpecial(Move move) {
-        if (move.equals(ttMove))
+    protected boolean isSpecial(short move) {
+        if (ttMove != null && ttMove.value() == move)
             return true;
         for (Move killer : history.killerTable().getKillers(ply)) {
-            if (move.equals(killer) && !board.isNoisy(killer))
+            if (killer != null && killer.value() == move && !board.isNoisy(killer))
                 return true;
         }
         return false;
     }
 
     @Override
-    protected ScoredMove[] loadStagedMoves(Stage stage) {
+    protected int stageStart(Stage stage) {
+        return switch (stage) {
+            case GOOD_NOISY -> 0;
+            case BAD_NOISY -> goodNoisyEnd;
+            case GOOD_QUIET -> noisyEnd;
+            case BAD_QUIET -> goodQuietEnd;
+            default -> throw new IllegalArgumentException("Invalid stage: " + stage);
+        };
+    }
+
+    @Override
+    protected int stageEnd(Stage stage) {
+        return switch (stage) {
+            case GOOD_NOISY -> goodNoisyEnd;
+            case BAD_NOISY -> noisyEnd;
+            case GOOD_QUIET -> goodQuietEnd;
+            case BAD_QUIET -> quietEnd;
+            default -> throw new IllegalArgumentException("Invalid stage: " + stage);
+        };
+    }
+
+    @Override
+    protected MoveType moveType(int index) {
         return switch (stage) {
-            case GOOD_NOISY -> goodNoisies;
-            case BAD_NOISY -> badNoisies;
-            case GOOD_QUIET -> goodQuiets;
-            case BAD_QUIET -> badQuiets;
+            case GOOD_NOISY -> MoveType.GOOD_NOISY;
+            case BAD_NOISY -> MoveType.BAD_NOISY;
+            case GOOD_QUIET -> MoveType.GOOD_QUIET;
+            case BAD_QUIET -> MoveType.BAD_QUIET;
             default -> throw new IllegalArgumentException("Invalid stage: " + stage);
         };
     }
@@ -129,7 +158,8 @@ public class StandardMovePicker extends MovePicker {
         if (killer == null
                 || killer.equals(ttMove)
                 || board.isNoisy(killer)
-                || !movegen.isLegal(board, killer))
+                || !movegen.isPseudoLegal(board, killer)
+                || (inCheck ? !movegen.isLegal(board, killer) : !isLegal(killer)))
             return pickKiller(nextStage);
 
         return scorer.score(board, killer, ply, stage);
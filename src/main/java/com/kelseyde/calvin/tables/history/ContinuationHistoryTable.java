@@ -22,22 +22,29 @@ public class ContinuationHistoryTable extends AbstractHistoryTable {
         set(prevMove, prevPiece, currMove, currPiece, update, white);
     }
 
-    public int get(Move move, Piece piece, boolean white, int ply, int[] conthistPlies, SearchStack ss) {
+    public int get(int to, Piece piece, boolean white, int ply, int[] conthistPlies, SearchStack ss) {
         int score = 0;
         for (int contHistPly : conthistPlies) {
             SearchStackEntry entry = ss.get(ply - contHistPly);
             if (entry != null)
-                score += get(entry.move, entry.piece, move, piece, white);
+                score += get(entry.move, entry.piece, to, piece, white);
         }
         return score;
     }
 
     public short get(Move prevMove, Piece prevPiece, Move currMove, Piece currPiece, boolean white) {
-        if (prevMove == null || prevPiece == null || currMove == null || currPiece == null) {
+        if (currMove == null) {
+            return 0;
+        }
+        return get(prevMove, prevPiece, currMove.to(), currPiece, white);
+    }
+
+    private short get(Move prevMove, Piece prevPiece, int currTo, Piece currPiece, boolean white) {
+        if (prevMove == null || prevPiece == null || currPiece == null) {
             return 0;
         }
         int colourIndex = Colour.index(white);
-        return table[colourIndex][prevPiece.index()][prevMove.to()][currPiece.index()][currMove.to()];
+        return table[colourIndex][prevPiece.index()][prevMove.to()][currPiece.index()][currTo];
     }
 
     public void set(Move prevMove, Piece prevPiece, Move currMove, Piece currPiece, short update, boolean white) {
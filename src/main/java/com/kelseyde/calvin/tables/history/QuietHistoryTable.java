@@ -21,9 +21,9 @@ public class QuietHistoryTable extends AbstractHistoryTable {
         table[colourIndex][piece.index()][move.to()] = update;
     }
 
-    public short get(Move move, Piece piece, boolean white) {
+    public short get(int to, Piece piece, boolean white) {
         int colourIndex = Colour.index(white);
-        return table[colourIndex][piece.index()][move.to()];
+        return table[colourIndex][piece.index()][to];
     }
 
     public void clear() {
@@ -7,26 +7,29 @@ import com.kelseyde.calvin.board.Move;
  * </p>
  * Records the move, score, static evaluation, flag, and depth of a position that has been searched. When stored in the
  * table, this information is packed into two 64-bit longs: a key and a value. The encoding scheme is as follows:
- * - Key: 0-31 (zobrist key), 32-47 (age), 48-63 (static eval)
- * - Value: 0-11 (depth), 12-15 (flag), 16-31 (move), 32-63 (score)
+ * - Key: 0-47 (zobrist key), 48-63 (age)
+ * - Value: 0-7 (depth), 8-11 (pv), 12-15 (flag), 16-31 (move), 32-47 (score), 48-63 (static eval)
+ * </p>
+ * Each entry therefore occupies exactly 16 bytes, so that a bucket of 4 entries fills one 64-byte cache line. Since
+ * everything the search needs is packed into the value, the search can probe the table and read the fields of the
+ * entry directly from the value, without allocating a HashEntry.
  */
 public record HashEntry(Move move, int score, int staticEval, int flag, int depth, boolean pv) {
 
-    public static HashEntry of(long key, long value) {
+    public static HashEntry of(long value) {
         Move move       = Value.getMove(value);
         int flag        = Value.getFlag(value);
         int depth       = Value.getDepth(value);
         int score       = Value.getScore(value);
-        int staticEval  = Key.getStaticEval(key);
+        int staticEval  = Value.getStaticEval(value);
         boolean pv      = Value.isPv(value);
         return new HashEntry(move, score, staticEval, flag, depth, pv);
     }
 
     public static class Key {
 
-        private static final long STATIC_EVAL_MASK    = 0xffff000000000000L;
-        private static final long AGE_MASK            = 0x0000ffff00000000L;
-        private static final long ZOBRIST_PART_MASK   = 0x00000000ffffffffL;
+        private static final long AGE_MASK            = 0xffff000000000000L;
+        private static final long ZOBRIST_PART_MASK   = 0x0000ffffffffffffL;
 
         public static boolean matches(long key1, long key2) {
             return getZobristPart(key1) == getZobristPart(key2);
@@ -37,42 +40,48 @@ public record HashEntry(Move move, int score, int staticEval, int flag, int dept
         }
 
         public static int getAge(long key) {
-            return (int) ((key & AGE_MASK) >>> 32);
-        }
-
-        public static long setAge(long key, int age) {
-            return (key & ~AGE_MASK) | ((long) age << 32);
-        }
-
-        public static int getStaticEval(long key) {
-            return (short) ((key & STATIC_EVAL_MASK) >>> 48);
+            return (int) ((key & AGE_MASK) >>> 48);
         }
 
-        public static long of(long zobristKey, int staticEval, int age) {
-            return (zobristKey & ZOBRIST_PART_MASK) | ((long) age << 32) | ((long) (staticEval & 0xFFFF) << 48);
+        public static long of(long zobristKey, int age) {
+            return (zobristKey & ZOBRIST_PART_MASK) | ((long) (age & 0xFFFF) << 48);
         }
 
     }
 
     public static class Value {
 
-        private static final long SCORE_MASK    = 0xffffffff00000000L;
-        private static final long MOVE_MASK     = 0x00000000ffff0000L;
-        private static final long FLAG_MASK     = 0x000000000000f000L;
-        private static final long PV_MASK       = 0x0000000000000f00L;
-        private static final long DEPTH_MASK    = 0x00000000000000ffL;
+        private static final long STATIC_EVAL_MASK  = 0xffff000000000000L;
+        private static final long SCORE_MASK        = 0x0000ffff00000000L;
+        private static final long MOVE_MASK         = 0x00000000ffff0000L;
+        private static final long FLAG_MASK         = 0x000000000000f000L;
+        private static final long PV_MASK           = 0x0000000000000f00L;
+        private static final long DEPTH_MASK        = 0x00000000000000ffL;
+
+        // Moves are immutable, so each encoded move is only ever allocated once and then re-used on every probe.
+        private static final Move[] MOVES = new Move[1 << 16];
 
         public static int getScore(long value) {
-            return (int) ((value & SCORE_MASK) >>> 32);
+            return (short) ((value & SCORE_MASK) >>> 32);
         }
 
         public static long setScore(long value, int score) {
-            return (value & ~SCORE_MASK) | (long) score << 32;
+            return (value & ~SCORE_MASK) | ((long) (score & 0xFFFF) << 32);
+        }
+
+        public static int getStaticEval(long value) {
+            return (short) ((value & STATIC_EVAL_MASK) >>> 48);
         }
 
         public static Move getMove(long value) {
-            long move = (value & MOVE_MASK) >>> 16;
-            return move > 0 ? new Move((short) move) : null;
+            int encoded = (int) ((value & MOVE_MASK) >>> 16);
+            if (encoded == 0) return null;
+            Move move = MOVES[encoded];
+            if (move == null) {
+                move = new Move((short) encoded);
+                MOVES[encoded] = move;
+            }
+            return move;
         }
 
         public static int getFlag(long value) {
@@ -91,13 +100,18 @@ public record HashEntry(Move move, int score, int staticEval, int flag, int dept
             return (value & ~DEPTH_MASK) | (long) depth;
         }
 
-        public static long of(int score, Move move, int flag, int depth, boolean pv) {
+        public static long of(int score, int staticEval, Move move, int flag, int depth, boolean pv) {
             depth = Math.min(depth, 255);
             long pvFlag = pv ? 1 : 0;
-            long moveValue = move != null ? move.value() : 0;
-            return (long) score << 32 | moveValue << 16 | (long) flag << 12 | pvFlag << 8 | depth;
+            long moveValue = move != null ? move.value() & 0xFFFF : 0;
+            return (long) (staticEval & 0xFFFF) << 48
+                    | (long) (score & 0xFFFF) << 32
+                    | moveValue << 16
+                    | (long) flag << 12
+                    | pvFlag << 8
+                    | depth;
         }
 
     }
 
-}
\ No newline at end of file
+}
@@ -23,7 +23,4 @@ public class HashFlag {
      */
     public static final int UPPER = 2;
 
-    public static final int NONE = 3;
-
-
 }
@@ -0,0 +1,46 @@
+package com.kelseyde.calvin.tables.tt;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters describing how well the {@link TranspositionTable} is being used: how often it is probed, how often those
+ * probes hit, and which rule in the replacement scheme was used for each store. Since the table is shared between
+ * search threads, the counters are {@link LongAdder}s, which stay cheap to increment under contention. Collecting the
+ * statistics is optional, and is disabled by default.
+ */
+public class HashStats {
+
+    // Probes
+    public final LongAdder probes = new LongAdder();
+    public final LongAdder hits = new LongAdder();
+    // Probes that missed while every entry in the bucket was occupied by a different position. This measures pressure
+    // on the buckets, not key collisions: a full bucket only means the position will displace another when stored.
+    public final LongAdder fullBucketMisses = new LongAdder();
+
+    // Stores, broken down by the replacement rule that selected the entry.
+    public final LongAdder replacedEmpty = new LongAdder();
+    public final LongAdder replacedExact = new LongAdder();
+    public final LongAdder replacedSameKey = new LongAdder();
+    public final LongAdder replacedAge = new LongAdder();
+    public final LongAdder replacedDepth = new LongAdder();
+    // Stores of the same position that were rejected, since the stored entry was searched to a greater depth.
+    public final LongAdder rejected = new LongAdder();
+
+    public double hitRate() {
+        long probes = this.probes.sum();
+        return probes > 0 ? (double) hits.sum() / probes : 0;
+    }
+
+    public void reset() {
+        probes.reset();
+        hits.reset();
+        fullBucketMisses.reset();
+        replacedEmpty.reset();
+        replacedExact.reset();
+        replacedSameKey.reset();
+        replacedAge.reset();
+        replacedDepth.reset();
+        rejected.reset();
+    }
+
+}
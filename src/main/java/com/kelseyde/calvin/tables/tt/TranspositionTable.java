@@ -5,7 +5,17 @@ import com.kelseyde.calvin.search.Score;
 import com.kelseyde.calvin.tables.tt.HashEntry.Key;
 import com.kelseyde.calvin.tables.tt.HashEntry.Value;
 
-import java.util.stream.IntStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * The transposition table is a database that stores the results of previously searched positions, as well as relevant
@@ -16,48 +26,119 @@ import java.util.stream.IntStream;
  * encounters the same positions again and again (via 'transposition'). A transposition table, therefore, greatly reduces
  * the size of the search tree, since subsequent arrivals at the position can re-use the results of previous searches.
  * </p>
+ * The table is stored off-heap, in a series of direct {@link ByteBuffer} segments, and is indexed using 64-bit longs.
+ * This allows the table to grow far beyond the 2GB limit of a Java array without adding pressure to the garbage
+ * collector. Note that direct memory is limited by -XX:MaxDirectMemorySize, which defaults to the maximum heap size.
+ * </p>
+ * Each entry occupies 16 bytes: the 8-byte key followed by the 8-byte value. The 4 entries of a bucket are stored
+ * contiguously, and each segment is aligned to a 64-byte boundary, so that a whole bucket fits within a single cache line
+ * and a probe touches exactly one line of memory.
+ * </p>
+ * Since the table is shared between search threads without locking, the key of each entry is stored XORed with its
+ * value. If a thread reads an entry while another thread is half-way through writing it, the key will no longer match
+ * and the torn entry is simply treated as a miss.
+ * </p>
+ * Clearing and resizing a large table can take several seconds, so both can be split across multiple threads. Since a
+ * newly allocated segment is zeroed on allocation, allocating the segments in parallel also pre-touches every page of
+ * the table, so that the first search does not pay the cost of the page faults.
+ * </p>
+ * The table can be saved to disk and reloaded in a later session, see {@link #save(Path)} and {@link #load(Path)}.
+ * </p>
  * @see <a href="https://www.chessprogramming.org/Transposition_Table">Chess Programming Wiki</a>
+ * @see <a href="https://www.chessprogramming.org/Shared_Hash_Table#Lockless">Lockless Hashing</a>
  */
 public class TranspositionTable {
 
     private static final int BUCKET_SIZE = 4;
     private static final int ENTRY_SIZE_BYTES = 16;
+    private static final int BUCKET_SIZE_BYTES = BUCKET_SIZE * ENTRY_SIZE_BYTES;
+    private static final int BUCKET_SHIFT = 6;
+
+    // Each segment is 256MB, which fits within the capacity of a single ByteBuffer, and is small enough that large tables
+    // are split into enough segments to be allocated in parallel.
+    private static final int SEGMENT_SHIFT = 28;
+    private static final long SEGMENT_SIZE_BYTES = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE_BYTES - 1;
 
-    private long[] keys;
-    private long[] values;
-    private int size;
+    // A block of zeroes, used to clear the table in bulk.
+    private static final byte[] ZEROES = new byte[1 << 16];
+
+    // The header of a saved table: magic, version, byte order, entry size, table size in entries, and age.
+    private static final long FILE_MAGIC = 0x5454_4E49_564C_4143L; // "CALVINTT"
+    private static final int FILE_VERSION = 1;
+    private static final int FILE_HEADER_BYTES = 64;
+
+    // The number of buckets, spread evenly across the table, that are sampled to calculate the hashfull.
+    private static final int FILL_SAMPLE_BUCKETS = 1000;
+
+    private final HashStats stats = new HashStats();
+    private boolean statsEnabled;
+
+    private ByteBuffer[] segments;
+    private long size;
+    private long buckets;
     private int age;
 
     /**
      * Constructs a transposition table of the given size in megabytes.
      */
     public TranspositionTable(int tableSizeMb) {
-        this.size = (tableSizeMb * 1024 * 1024) / ENTRY_SIZE_BYTES;
-        this.keys = new long[size];
-        this.values = new long[size];
+        this.size = ((long) tableSizeMb * 1024 * 1024) / ENTRY_SIZE_BYTES;
+        this.buckets = size / BUCKET_SIZE;
+        this.segments = allocate(size, Runnable::run, 1);
         this.age = 0;
     }
 
+    /**
+     * Returned by {@link #probe(long, int)} if no entry is found. Since the pv bits of a stored value are only ever 0 or
+     * 1, this can never be confused with a real entry.
+     */
+    public static final long MISS = -1L;
+
     /**
      * Retrieves an entry from the transposition table using the given zobrist key.
      */
     public HashEntry get(long key, int ply) {
-        int index = index(key);
+        long value = probe(key, ply);
+        return value != MISS ? HashEntry.of(value) : null;
+    }
+
+    /**
+     * Retrieves the packed value of an entry from the transposition table using the given zobrist key, or {@link #MISS}
+     * if there is no matching entry. The fields of the entry can be read using {@link Value}. Unlike {@link #get}, this
+     * does not allocate, and so is used in the hot path of the search.
+     */
+    public long probe(long key, int ply) {
+        long bucket = bucket(key);
+        ByteBuffer segment = segment(bucket);
+        int offset = offset(bucket);
+        int occupied = 0;
         for (int i = 0; i < BUCKET_SIZE; i++) {
-            long storedKey = keys[index + i];
-            if (storedKey != 0 && Key.matches(storedKey, key)) {
-                storedKey = Key.setAge(storedKey, age);
-                keys[index + i] = storedKey;
-                long storedValue = values[index + i];
+            int entry = offset + i * ENTRY_SIZE_BYTES;
+            long storedValue = segment.getLong(entry + Long.BYTES);
+            long storedKey = segment.getLong(entry) ^ storedValue;
+            if (storedKey == 0)
+                continue;
+            if (Key.matches(storedKey, key)) {
                 int score = Value.getScore(storedValue);
                 if (Score.isMate(score)) {
                     score = retrieveMateScore(score, ply);
                     storedValue = Value.setScore(storedValue, score);
                 }
-                return HashEntry.of(storedKey, storedValue);
+                if (statsEnabled) {
+                    stats.probes.increment();
+                    stats.hits.increment();
+                }
+                return storedValue;
             }
+            occupied++;
+        }
+        if (statsEnabled) {
+            stats.probes.increment();
+            if (occupied == BUCKET_SIZE)
+                stats.fullBucketMisses.increment();
         }
-        return null;
+        return MISS;
     }
 
     /**
@@ -75,41 +156,41 @@ public class TranspositionTable {
      */
     public void put(long key, int flag, int depth, int ply, Move move, int staticEval, int score, boolean pv) {
 
-        // Get the start index of the 4-item bucket.
-        int startIndex = index(key);
+        // Get the 4-item bucket, which occupies a single cache line.
+        long bucket = bucket(key);
+        ByteBuffer segment = segment(bucket);
+        int offset = offset(bucket);
 
         // If the eval is checkmate, adjust the score to reflect the number of ply from the root position
         if (Score.isMate(score)) score = calculateMateScore(score, ply);
 
-        int replacedIndex = -1;
+        int replacedEntry = -1;
         int minDepth = Integer.MAX_VALUE;
         boolean replacedByAge = false;
+        LongAdder replacedBy = null;
 
         // Iterate over the four items in the bucket
-        for (int i = startIndex; i < startIndex + 4; i++) {
-            long storedKey = keys[i];
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            int entry = offset + i * ENTRY_SIZE_BYTES;
+            long storedValue = segment.getLong(entry + Long.BYTES);
+            long storedKey = segment.getLong(entry) ^ storedValue;
 
             // First, always prefer an empty slot if it is available.
             if (storedKey == 0) {
-                replacedIndex = i;
+                replacedEntry = entry;
+                replacedBy = stats.replacedEmpty;
                 break;
             }
 
             // Second, always prefer an exact score
             if (flag == HashFlag.EXACT) {
-                replacedIndex = i;
+                replacedEntry = entry;
+                replacedBy = stats.replacedExact;
                 break;
             }
 
-            long storedValue = values[i];
-
             int storedFlag = Value.getFlag(storedValue);
-            if (storedFlag == HashFlag.NONE) {
-                replacedIndex = i;
-                break;
-            }
-
-            int storedDepth = Value.getDepth(values[i]);
+            int storedDepth = Value.getDepth(storedValue);
             // Then, if the stored entry matches the zobrist key and the depth is >= the stored depth, replace it.
             // If the depth is < the store depth, don't replace it and exit (although this should never happen).
             if (Key.matches(storedKey, key)) {
@@ -119,11 +200,14 @@ public class TranspositionTable {
                     if (move == null && storedMove != null) {
                         move = storedMove;
                     }
-                    replacedIndex = i;
+                    replacedEntry = entry;
+                    replacedBy = stats.replacedSameKey;
                     break;
                 } else {
                     if (storedDepth >= 5 && storedFlag != HashFlag.EXACT)
-                        values[i] = Value.setDepth(storedValue, storedDepth - 1);
+                        store(segment, entry, storedKey, Value.setDepth(storedValue, storedDepth - 1));
+                    if (statsEnabled)
+                        stats.rejected.increment();
                     return;
                 }
             }
@@ -131,45 +215,92 @@ public class TranspositionTable {
             // Next, prefer to replace entries from earlier on in the game, since they are now less likely to be relevant.
             if (age > Key.getAge(storedKey)) {
                 replacedByAge = true;
-                replacedIndex = i;
+                replacedEntry = entry;
             }
 
             // Finally, just replace the entry with the shallowest search depth.
             if (!replacedByAge && storedDepth < minDepth) {
                 minDepth = storedDepth;
-                replacedIndex = i;
+                replacedEntry = entry;
             }
 
         }
 
         // Store the new entry in the table at the chosen index.
-        if (replacedIndex != -1) {
-            keys[replacedIndex] = Key.of(key, staticEval, age);
-            values[replacedIndex] = Value.of(score, move, flag, depth, pv);
+        if (replacedEntry != -1) {
+            store(segment, replacedEntry, Key.of(key, age), Value.of(score, staticEval, move, flag, depth, pv));
+            if (statsEnabled) {
+                if (replacedBy == null)
+                    replacedBy = replacedByAge ? stats.replacedAge : stats.replacedDepth;
+                replacedBy.increment();
+            }
         }
     }
 
     /**
-     * Calculate how full the transposition table currently is.
-     * @return the number of entries out of 1000 that are currently not-null.
+     * Calculate how full the transposition table currently is. A sample of buckets spread evenly across the table is
+     * checked, and only entries written during the current search are counted, so that stale entries from earlier
+     * searches do not inflate the result.
+     * @return the number of entries out of 1000 that are occupied by the current search.
      */
     public int fill() {
-        return (int) IntStream.range(0, 1000)
-                .filter(i -> keys[i] != 0)
-                .count();
+        long sampleBuckets = Math.min(FILL_SAMPLE_BUCKETS, buckets);
+        long stride = buckets / sampleBuckets;
+        int count = 0;
+        for (long i = 0; i < sampleBuckets; i++) {
+            long bucket = i * stride;
+            ByteBuffer segment = segment(bucket);
+            int offset = offset(bucket);
+            for (int j = 0; j < BUCKET_SIZE; j++) {
+                int entry = offset + j * ENTRY_SIZE_BYTES;
+                long storedValue = segment.getLong(entry + Long.BYTES);
+                long storedKey = segment.getLong(entry) ^ storedValue;
+                if (storedKey != 0 && Key.getAge(storedKey) == (age & 0xFFFF))
+                    count++;
+            }
+        }
+        return (int) (count * 1000 / (sampleBuckets * BUCKET_SIZE));
     }
 
     /**
-     * Increments the age counter for the transposition table.
+     * Enable or disable the collection of {@link HashStats}. Collection is disabled by default, to avoid any overhead.
+     */
+    public void setStatsEnabled(boolean statsEnabled) {
+        this.statsEnabled = statsEnabled;
+    }
+
+    public boolean isStatsEnabled() {
+        return statsEnabled;
+    }
+
+    public HashStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Increments the age counter for the transposition table. Called at the start of each search, so that entries
+     * written by the new search can be distinguished from those written by earlier searches.
      */
     public void birthday() {
         this.age++;
     }
 
     public void resize(int tableSizeMb) {
-        this.size = (tableSizeMb * 1024 * 1024) / ENTRY_SIZE_BYTES;
-        this.keys = new long[size];
-        this.values = new long[size];
+        resize(tableSizeMb, Runnable::run, 1);
+    }
+
+    /**
+     * Resizes the transposition table, allocating the new segments in parallel using the given executor and number
+     * of threads. The new segments are allocated before the old ones are released, so that if there is not enough
+     * direct memory for the new table, the old table is left untouched.
+     *
+     * @throws OutOfMemoryError if the new table could not be allocated.
+     */
+    public void resize(int tableSizeMb, Executor executor, int threads) {
+        long newSize = ((long) tableSizeMb * 1024 * 1024) / ENTRY_SIZE_BYTES;
+        this.segments = allocate(newSize, executor, threads);
+        this.size = newSize;
+        this.buckets = size / BUCKET_SIZE;
         this.age = 0;
     }
 
@@ -177,21 +308,177 @@ public class TranspositionTable {
      * Clears the transposition table, resetting all entries and statistics.
      */
     public void clear() {
+        clear(Runnable::run, 1);
+    }
+
+    /**
+     * Clears the transposition table in place, splitting the table into one contiguous range of memory per thread and
+     * zeroing each range in parallel using the given executor.
+     */
+    public void clear(Executor executor, int threads) {
         this.age = 0;
-        this.keys = new long[size];
-        this.values = new long[size];
+        long bytes = size * ENTRY_SIZE_BYTES;
+        long chunk = ((bytes / threads) + BUCKET_SIZE_BYTES - 1) & -BUCKET_SIZE_BYTES;
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[threads];
+        for (int t = 0; t < threads; t++) {
+            long from = Math.min(bytes, t * chunk);
+            long to = t == threads - 1 ? bytes : Math.min(bytes, from + chunk);
+            tasks[t] = CompletableFuture.runAsync(() -> zero(from, to), executor);
+        }
+        CompletableFuture.allOf(tasks).join();
+    }
+
+    /**
+     * Saves the contents of the transposition table to the given file, in a versioned format that records the size
+     * and age of the table. The segments are written directly from off-heap memory, so saving is limited mostly by
+     * disk bandwidth.
+     */
+    public void save(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(FILE_MAGIC)
+                    .putInt(FILE_VERSION)
+                    .putInt(ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? 0 : 1)
+                    .putInt(ENTRY_SIZE_BYTES)
+                    .putLong(size)
+                    .putInt(age)
+                    .clear();
+            writeFully(channel, header);
+            for (ByteBuffer segment : segments) {
+                writeFully(channel, segment.duplicate().clear());
+            }
+        }
+    }
+
+    /**
+     * Loads the contents of the transposition table from a file previously written by {@link #save(Path)}. If the
+     * saved table is a different size to the current table, the current table is resized to match. The file is
+     * memory-mapped and copied into the table one segment at a time.
+     */
+    public void load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) throw new IOException("truncated hash file header");
+            }
+            header.flip();
+            if (header.getLong() != FILE_MAGIC)
+                throw new IOException("not a hash file");
+            int version = header.getInt();
+            if (version != FILE_VERSION)
+                throw new IOException("unsupported hash file version " + version);
+            ByteOrder order = header.getInt() == 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+            if (header.getInt() != ENTRY_SIZE_BYTES)
+                throw new IOException("unsupported hash entry size");
+            long entries = header.getLong();
+            int savedAge = header.getInt();
+            if (channel.size() != FILE_HEADER_BYTES + entries * ENTRY_SIZE_BYTES)
+                throw new IOException("hash file size does not match header");
+
+            if (entries != size) {
+                resize((int) ((entries * ENTRY_SIZE_BYTES) / (1024 * 1024)));
+            }
+
+            long position = FILE_HEADER_BYTES;
+            for (ByteBuffer segment : segments) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, segment.capacity());
+                if (order == ByteOrder.nativeOrder()) {
+                    segment.put(0, mapped, 0, segment.capacity());
+                } else {
+                    // The file was saved on a machine with a different byte order, so swap each long individually.
+                    mapped.order(order);
+                    for (int i = 0; i < segment.capacity(); i += Long.BYTES) {
+                        segment.putLong(i, mapped.getLong(i));
+                    }
+                }
+                position += segment.capacity();
+            }
+            this.age = savedAge;
+        }
     }
 
     /**
-     * Compresses the 64-bit zobrist key into a 32-bit key, to be used as an index in the hash table.
+     * Returns the number of entries in the transposition table.
      */
-    private int index(long key) {
-        // XOR the upper and lower halves of the zobrist key together, producing a pseudo-random 32-bit result.
-        // Then apply a mask ensuring the number is always positive, since it is to be used as an array index.
-        long index = (key ^ (key >>> 32)) & 0x7FFFFFFF;
-        // Modulo the result with the number of entries in the table, and align it with a multiple of 4,
-        // ensuring the entries are always divided into 4-sized buckets.
-        return (int) (index % (size - (BUCKET_SIZE - 1))) & -BUCKET_SIZE;
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Compresses the 64-bit zobrist key into the index of a bucket in the hash table.
+     */
+    private long bucket(long key) {
+        // XOR the upper half of the zobrist key into the lower half, so that the index is not derived from the same
+        // bits that are stored in the entry to verify the key.
+        long hash = key ^ (key >>> 32);
+        // Modulo the result with the number of buckets in the table.
+        return Long.remainderUnsigned(hash, buckets);
+    }
+
+    // Get the segment containing the given bucket.
+    private ByteBuffer segment(long bucket) {
+        return segments[(int) (bucket >>> (SEGMENT_SHIFT - BUCKET_SHIFT))];
+    }
+
+    // Get the byte offset of the given bucket within its segment.
+    private int offset(long bucket) {
+        return (int) ((bucket << BUCKET_SHIFT) & SEGMENT_MASK);
+    }
+
+    // Store an entry, with the key XORed with the value so that torn reads can be detected.
+    private void store(ByteBuffer segment, int entry, long key, long value) {
+        segment.putLong(entry + Long.BYTES, value);
+        segment.putLong(entry, key ^ value);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // Zero the given range of bytes, which may span several segments.
+    private void zero(long from, long to) {
+        while (from < to) {
+            ByteBuffer segment = segments[(int) (from >>> SEGMENT_SHIFT)];
+            int offset = (int) (from & SEGMENT_MASK);
+            int length = (int) Math.min(Math.min(to - from, segment.capacity() - offset), ZEROES.length);
+            segment.put(offset, ZEROES, 0, length);
+            from += length;
+        }
+    }
+
+    // Allocate enough off-heap segments to hold the given number of entries. Since the segment size is a multiple of
+    // the bucket size in bytes, a bucket never straddles two segments. Each segment is sliced to start on a 64-byte
+    // boundary, so that every bucket is aligned to a cache line. The segments are allocated, and therefore zeroed,
+    // by the given number of threads in parallel.
+    private static ByteBuffer[] allocate(long entries, Executor executor, int threads) {
+        long bytes = entries * ENTRY_SIZE_BYTES;
+        int count = (int) ((bytes + SEGMENT_SIZE_BYTES - 1) >>> SEGMENT_SHIFT);
+        ByteBuffer[] segments = new ByteBuffer[count];
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[threads];
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            tasks[t] = CompletableFuture.runAsync(() -> {
+                for (int i = thread; i < count; i += threads) {
+                    long capacity = Math.min(SEGMENT_SIZE_BYTES, bytes - (long) i * SEGMENT_SIZE_BYTES);
+                    segments[i] = ByteBuffer.allocateDirect((int) capacity + BUCKET_SIZE_BYTES)
+                            .alignedSlice(BUCKET_SIZE_BYTES)
+                            .limit((int) capacity)
+                            .slice()
+                            .order(ByteOrder.nativeOrder());
+                }
+            }, executor);
+        }
+        try {
+            CompletableFuture.allOf(tasks).join();
+        } catch (CompletionException e) {
+            // Unwrap the failure of a worker thread, which is most likely an OutOfMemoryError from allocateDirect.
+            if (e.getCause() instanceof OutOfMemoryError error) throw error;
+            throw e;
+        }
+        return segments;
     }
 
     // On insertion, adjust the mate score to reflect the number of ply from the root position
@@ -5,17 +5,28 @@ import com.kelseyde.calvin.board.Move;
 import com.kelseyde.calvin.engine.Engine;
 import com.kelseyde.calvin.engine.EngineConfig;
 import com.kelseyde.calvin.engine.Tunable;
+import com.kelseyde.calvin.evaluation.BatchEvaluator;
 import com.kelseyde.calvin.evaluation.NNUE;
+import com.kelseyde.calvin.evaluation.kernel.KernelSelector;
+import com.kelseyde.calvin.movegen.Magics;
 import com.kelseyde.calvin.movegen.MoveGenerator;
 import com.kelseyde.calvin.search.Score;
 import com.kelseyde.calvin.search.SearchResult;
+import com.kelseyde.calvin.tables.tt.HashStats;
 import com.kelseyde.calvin.uci.UCICommand.GoCommand;
 import com.kelseyde.calvin.uci.UCICommand.PositionCommand;
 import com.kelseyde.calvin.uci.UCICommand.ScoreDataCommand;
 import com.kelseyde.calvin.utils.Bench;
+import com.kelseyde.calvin.utils.HashBench;
+import com.kelseyde.calvin.utils.MagicBench;
 import com.kelseyde.calvin.utils.notation.FEN;
 import com.kelseyde.calvin.utils.train.TrainingDataScorer;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -30,6 +41,7 @@ import java.util.stream.Collectors;
 public class UCI {
 
     private static final Engine ENGINE = Engine.getInstance();
+    private static final int EVAL_BATCH_SIZE = 4096;
 
     public static class Options {
         public static boolean output = true;
@@ -74,6 +86,8 @@ public class UCI {
     public static void handleUCI(UCICommand command) {
         write("id name Calvin");
         write("id author Dan Kelsey");
+        write("info string NNUE kernels " + KernelSelector.SUMMARY);
+        write("info string magic layout " + Magics.name(Magics.LAYOUT));
         EngineConfig config = ENGINE.getConfig();
         write(String.format("option name Hash type spin default %s min %s max %s",
                 config.hashConfig.defaultSizeMb, config.hashConfig.minSizeMb, config.hashConfig.maxSizeMb));
@@ -82,6 +96,7 @@ public class UCI {
         write(String.format("option name Ponder type check default %s", config.ponderEnabled));
         write("option name UCI_Chess960 type check default false");
         write("option name Pretty type check default false");
+        write("option name EvalFile type string default " + NNUE.DEFAULT_FILE);
 
         ENGINE.getConfig().getTunables().stream()
                 .sorted(Comparator.comparing(tunable -> tunable.name))
@@ -98,10 +113,17 @@ public class UCI {
         Bench.run(ENGINE, false, true);
     }
 
+    public static void handleHashBench(UCICommand command) {
+        HashBench.run();
+    }
+
+    public static void handleMagicBench(UCICommand command) {
+        MagicBench.run();
+    }
+
     public static void handleNewGame(UCICommand command) {
         ENGINE.gameOver();
         ENGINE.newGame();
-        System.gc();
     }
 
     public static void handleIsReady(UCICommand command) {
@@ -131,6 +153,7 @@ public class UCI {
             case "Ponder":        setPonder(command); break;
             case "Pretty":        setPretty(command); break;
             case "UCI_Chess960":  handleChess960(command); break;
+            case "EvalFile":      setEvalFile(command); break;
             default:              ENGINE.getConfig().setTunable(command); break;
         }
     }
@@ -147,6 +170,8 @@ public class UCI {
         write("uci            -- print engine info");
         write("isready        -- check if engine is ready");
         write("setoption      -- set engine options (type 'uci' to see the available options'");
+        write("                   note: the Hash is stored in direct memory, which the JVM limits to the max heap size");
+        write("                   by default; launch with -XX:MaxDirectMemorySize to use a larger Hash");
         write("                   args:");
         write("                       -- name: the name of the option to change");
         write("                       -- value: the new value for the option");
@@ -173,7 +198,23 @@ public class UCI {
         write("display / d    -- display the current board state");
         write("fen            -- print the FEN string for the current position");
         write("eval           -- evaluate the current position");
+        write("evalbatch      -- evaluate every position in a file, printing one 'fen | score' line per position");
+        write("                   args:");
+        write("                       -- a file with one FEN per line; anything after a '|' on the line is ignored");
         write("pretty         -- toggle pretty console output");
+        write("savehash       -- save the transposition table to a file");
+        write("                   args:");
+        write("                       -- the file to save to");
+        write("loadhash       -- load the transposition table from a file saved with 'savehash'");
+        write("                   args:");
+        write("                       -- the file to load from");
+        write("hashbench      -- benchmark transposition table probe latency at 16MB, 256MB and 4GB");
+        write("magicbench     -- benchmark slider attack lookup latency in the jagged, fancy and black magic layouts");
+        write("ttstats        -- print transposition table statistics: hit rate, full bucket misses and replacements");
+        write("                   args:");
+        write("                       -- on / off: enable or disable collecting statistics (default off)");
+        write("                       -- reset: reset the statistics");
+        write("threadtimes    -- print the time in milliseconds each search thread has spent searching");
         write("scoredata      -- score a data file with the engine, to train a neural network");
         write("                   args:");
         write("                       -- input: the input file to score");
@@ -214,6 +255,48 @@ public class UCI {
         write(String.valueOf(nnue.evaluate()));
     }
 
+    public static void handleEvalBatch(UCICommand command) {
+        if (command.args().length < 2) {
+            write("info error missing file name");
+            return;
+        }
+        Path path = Paths.get(command.args()[1]);
+        long start = System.currentTimeMillis();
+        BatchEvaluator evaluator = ENGINE.getBatchEvaluator();
+        int count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            // Positions are read and scored a batch at a time, so that the scores are streamed out as the file is read.
+            List<String> fens = new ArrayList<>(EVAL_BATCH_SIZE);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String fen = line.split("\\|")[0].trim();
+                if (fen.isEmpty()) continue;
+                fens.add(fen);
+                if (fens.size() == EVAL_BATCH_SIZE) {
+                    count += writeEvalBatch(evaluator, fens);
+                }
+            }
+            count += writeEvalBatch(evaluator, fens);
+            write(String.format("info string evaluated %d positions in %s ms", count, System.currentTimeMillis() - start));
+        } catch (IOException | FEN.InvalidFenException e) {
+            writeError("error evaluating batch", e);
+        }
+    }
+
+    private static int writeEvalBatch(BatchEvaluator evaluator, List<String> fens) {
+        String[] batch = fens.toArray(new String[0]);
+        int[] scores = evaluator.evaluate(batch);
+        StringJoiner output = new StringJoiner("\n");
+        for (int i = 0; i < batch.length; i++) {
+            output.add(batch[i] + " | " + scores[i]);
+        }
+        if (batch.length > 0) {
+            write(output.toString());
+        }
+        fens.clear();
+        return batch.length;
+    }
+
     public static void handleStop(UCICommand command) {
         ENGINE.setPondering(false);
         ENGINE.setSearchCancelled(true);
@@ -237,8 +320,15 @@ public class UCI {
         int minHashSizeMb = ENGINE.getConfig().hashConfig.minSizeMb;
         int maxHashSizeMb = ENGINE.getConfig().hashConfig.maxSizeMb;
         if (hashSizeMb >= minHashSizeMb && hashSizeMb <= maxHashSizeMb) {
-            ENGINE.setHashSize(hashSizeMb);
-            write("info string Hash " + hashSizeMb);
+            try {
+                ENGINE.setHashSize(hashSizeMb);
+                write("info string Hash " + hashSizeMb);
+            } catch (OutOfMemoryError e) {
+                // The table is stored in direct memory, which is limited to the max heap size unless raised with
+                // -XX:MaxDirectMemorySize. The previous table is kept if the new one cannot be allocated.
+                write(String.format("info error could not allocate %s MB hash (%s), keeping the previous hash; " +
+                        "increase -XX:MaxDirectMemorySize to use a larger hash", hashSizeMb, e.getMessage()));
+            }
         } else {
             write(String.format("hash size %s not in valid range %s - %s", hashSizeMb, minHashSizeMb, maxHashSizeMb));
         }
@@ -268,6 +358,20 @@ public class UCI {
         write("info string Pretty " + prettyEnabled);
     }
 
+    private static void setEvalFile(UCICommand command) {
+        // The bundled network is restored if the value is empty or names the bundled network file.
+        String file = String.join(" ", command.getStrings("value", false));
+        Path path = file.isEmpty() || file.equals("<empty>") || file.equals(NNUE.DEFAULT_FILE) ? null : Paths.get(file);
+        long start = System.currentTimeMillis();
+        try {
+            ENGINE.loadEvalFile(path);
+            String name = path != null ? path.toString() : NNUE.DEFAULT_FILE;
+            write(String.format("info string loaded EvalFile %s in %s ms", name, System.currentTimeMillis() - start));
+        } catch (IOException | IllegalArgumentException e) {
+            writeError("error loading EvalFile", e);
+        }
+    }
+
     public static void handleChess960(UCICommand command) {
         boolean chess960Enabled = command.getBool("value", false, true);
         Options.chess960 = chess960Enabled;
@@ -283,6 +387,64 @@ public class UCI {
         write(String.format(Locale.ROOT, "%.1f", (float) ENGINE.hashfull() / 1000 * 100));
     }
 
+    public static void handleSaveHash(UCICommand command) {
+        if (command.args().length < 2) {
+            write("info error missing file name");
+            return;
+        }
+        Path path = Paths.get(command.args()[1]);
+        long start = System.currentTimeMillis();
+        try {
+            ENGINE.saveHash(path);
+            write(String.format("info string saved hash to %s in %s ms", path, System.currentTimeMillis() - start));
+        } catch (IOException e) {
+            writeError("error saving hash", e);
+        }
+    }
+
+    public static void handleLoadHash(UCICommand command) {
+        if (command.args().length < 2) {
+            write("info error missing file name");
+            return;
+        }
+        Path path = Paths.get(command.args()[1]);
+        long start = System.currentTimeMillis();
+        try {
+            ENGINE.loadHash(path);
+            write(String.format("info string loaded hash from %s in %s ms", path, System.currentTimeMillis() - start));
+        } catch (IOException e) {
+            writeError("error loading hash", e);
+        } catch (OutOfMemoryError e) {
+            write(String.format("info error could not allocate hash to load %s (%s), keeping the previous hash; " +
+                    "increase -XX:MaxDirectMemorySize to use a larger hash", path, e.getMessage()));
+        }
+    }
+
+    public static void handleTTStats(UCICommand command) {
+        if (command.args().length > 1) {
+            switch (command.args()[1]) {
+                case "on" -> ENGINE.setHashStatsEnabled(true);
+                case "off" -> ENGINE.setHashStatsEnabled(false);
+                case "reset" -> ENGINE.hashStats().reset();
+                default -> write("info error unknown ttstats argument " + command.args()[1]);
+            }
+            return;
+        }
+        HashStats stats = ENGINE.hashStats();
+        write(String.format(Locale.ROOT, "info string probes %s hits %s hitrate %.3f fullbucketmisses %s hashfull %s",
+                stats.probes.sum(), stats.hits.sum(), stats.hitRate(), stats.fullBucketMisses.sum(), ENGINE.hashfull()));
+        write(String.format("info string replaced empty %s exact %s samekey %s age %s depth %s rejected %s",
+                stats.replacedEmpty.sum(), stats.replacedExact.sum(), stats.replacedSameKey.sum(),
+                stats.replacedAge.sum(), stats.replacedDepth.sum(), stats.rejected.sum()));
+    }
+
+    public static void handleThreadTimes(UCICommand command) {
+        long[] searchTimes = ENGINE.searchTimes();
+        for (int i = 0; i < searchTimes.length; i++) {
+            write(String.format("info string thread %s time %s", i, searchTimes[i]));
+        }
+    }
+
     public static void writeEngineInfo() {
 
         if (Options.pretty) {
@@ -15,13 +15,20 @@ enum UCICommandType {
     PONDERHIT    ("ponderhit",   UCI::handlePonderHit),
     FEN          ("fen",         UCI::handleFen),
     EVAL         ("eval",        UCI::handleEval),
+    EVALBATCH    ("evalbatch",   UCI::handleEvalBatch),
     DISPLAY      ("display",     UCI::handleDisplay),
     D            ("d",           UCI::handleDisplay),
     PRETTY       ("pretty",      UCI::handlePretty),
     HASHFULL     ("hashfull",    UCI::handleHashfull),
+    SAVEHASH     ("savehash",    UCI::handleSaveHash),
+    LOADHASH     ("loadhash",    UCI::handleLoadHash),
+    TTSTATS      ("ttstats",     UCI::handleTTStats),
+    THREADTIMES  ("threadtimes", UCI::handleThreadTimes),
     THREATS      ("threats",     UCI::handleThreats),
     PARAMS       ("params",      UCI::handleParams),
     BENCH        ("bench",       UCI::handleBench),
+    HASHBENCH    ("hashbench",   UCI::handleHashBench),
+    MAGICBENCH   ("magicbench",  UCI::handleMagicBench),
     SCORE_DATA   ("scoredata",   UCI::handleScoreData),
     STOP         ("stop",        UCI::handleStop),
     QUIT         ("quit",        UCI::handleQuit),
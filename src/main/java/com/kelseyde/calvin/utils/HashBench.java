@@ -0,0 +1,174 @@
+package com.kelseyde.calvin.utils;
+
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.tables.tt.HashEntry.Key;
+import com.kelseyde.calvin.tables.tt.HashEntry.Value;
+import com.kelseyde.calvin.tables.tt.HashFlag;
+import com.kelseyde.calvin.tables.tt.TranspositionTable;
+import com.kelseyde.calvin.uci.UCI;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Measures the latency of a {@link TranspositionTable} probe at several table sizes. The cache-line-aligned buckets of
+ * the transposition table, where the keys and values of a bucket share one 64-byte line, are compared against a split
+ * layout, where keys and values are stored in separate regions of memory, so that a hit touches two cache lines.
+ * Both layouts are probed without allocating, so that the timings measure memory access rather than garbage collection.
+ * </p>
+ * The larger tables require a sufficiently large -XX:MaxDirectMemorySize; any size that cannot be allocated is skipped.
+ */
+public class HashBench {
+
+    private static final int[] TABLE_SIZES_MB = {16, 256, 4096};
+    private static final int MAX_STORED_KEYS = 1 << 22;
+    private static final int WARMUP_PROBES = 1_000_000;
+    private static final int PROBES = 10_000_000;
+
+    public static void run() {
+
+        for (int tableSizeMb : TABLE_SIZES_MB) {
+            try {
+                double bucketLatency = benchBuckets(tableSizeMb);
+                System.gc();
+                double splitLatency = benchSplit(tableSizeMb);
+                System.gc();
+                UCI.write(String.format(Locale.ROOT, "%s MB: aligned buckets %.1f ns/probe, split layout %.1f ns/probe",
+                        tableSizeMb, bucketLatency, splitLatency));
+            } catch (OutOfMemoryError e) {
+                System.gc();
+                UCI.write(String.format("%s MB: skipped, not enough direct memory", tableSizeMb));
+            }
+        }
+
+    }
+
+    private static double benchBuckets(int tableSizeMb) {
+        TranspositionTable tt = new TranspositionTable(tableSizeMb);
+        long[] keys = keys(tt.size());
+        Move move = Move.fromUCI("e2e4");
+        for (long key : keys) {
+            tt.put(key, HashFlag.EXACT, 8, 0, move, 0, (int) key & 0xFF, false);
+        }
+        Random random = new Random(1);
+        long checksum = 0;
+        for (int i = 0; i < WARMUP_PROBES; i++) {
+            long value = tt.probe(keys[random.nextInt(keys.length)], 0);
+            if (value != TranspositionTable.MISS) checksum += Value.getScore(value);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < PROBES; i++) {
+            long value = tt.probe(keys[random.nextInt(keys.length)], 0);
+            if (value != TranspositionTable.MISS) checksum += Value.getScore(value);
+        }
+        long elapsed = System.nanoTime() - start;
+        return consume(checksum, elapsed);
+    }
+
+    private static double benchSplit(int tableSizeMb) {
+        SplitTable table = new SplitTable(tableSizeMb);
+        long[] keys = keys(table.size);
+        Move move = Move.fromUCI("e2e4");
+        for (long key : keys) {
+            table.put(key, Value.of((int) key & 0xFF, 0, move, HashFlag.EXACT, 8, false));
+        }
+        Random random = new Random(1);
+        long checksum = 0;
+        for (int i = 0; i < WARMUP_PROBES; i++) {
+            long value = table.probe(keys[random.nextInt(keys.length)]);
+            if (value != TranspositionTable.MISS) checksum += Value.getScore(value);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < PROBES; i++) {
+            long value = table.probe(keys[random.nextInt(keys.length)]);
+            if (value != TranspositionTable.MISS) checksum += Value.getScore(value);
+        }
+        long elapsed = System.nanoTime() - start;
+        return consume(checksum, elapsed);
+    }
+
+    // Fill half of the table, up to a maximum, so that most probes hit.
+    private static long[] keys(long tableSize) {
+        int count = (int) Math.min(tableSize / 2, MAX_STORED_KEYS);
+        return new Random(0).longs(count).toArray();
+    }
+
+    // Use the checksum so that the JIT cannot eliminate the probes.
+    private static double consume(long checksum, long elapsedNanos) {
+        if (checksum == 42) UCI.write("");
+        return (double) elapsedNanos / PROBES;
+    }
+
+    /**
+     * A stripped-down transposition table that stores keys and values in separate regions of memory.
+     */
+    private static class SplitTable {
+
+        private static final int BUCKET_SIZE = 4;
+        private static final int SEGMENT_SHIFT = 30;
+        private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+        private final ByteBuffer[] keys;
+        private final ByteBuffer[] values;
+        private final long size;
+
+        private SplitTable(int tableSizeMb) {
+            this.size = ((long) tableSizeMb * 1024 * 1024) / (2 * Long.BYTES);
+            this.keys = allocate(size * Long.BYTES);
+            this.values = allocate(size * Long.BYTES);
+        }
+
+        // Like TranspositionTable.probe, returns the packed value without allocating, or MISS.
+        private long probe(long key) {
+            long index = index(key);
+            for (int i = 0; i < BUCKET_SIZE; i++) {
+                long storedKey = read(keys, index + i);
+                if (storedKey != 0 && Key.matches(storedKey, key)) {
+                    return read(values, index + i);
+                }
+            }
+            return TranspositionTable.MISS;
+        }
+
+        private void put(long key, long value) {
+            long index = index(key);
+            for (int i = 0; i < BUCKET_SIZE; i++) {
+                long storedKey = read(keys, index + i);
+                if (storedKey == 0 || Key.matches(storedKey, key) || i == BUCKET_SIZE - 1) {
+                    write(keys, index + i, Key.of(key, 0));
+                    write(values, index + i, value);
+                    return;
+                }
+            }
+        }
+
+        private long index(long key) {
+            long hash = key ^ (key >>> 32);
+            return Long.remainderUnsigned(hash, size / BUCKET_SIZE) * BUCKET_SIZE;
+        }
+
+        private static long read(ByteBuffer[] region, long index) {
+            long offset = index * Long.BYTES;
+            return region[(int) (offset >>> SEGMENT_SHIFT)].getLong((int) (offset & SEGMENT_MASK));
+        }
+
+        private static void write(ByteBuffer[] region, long index, long value) {
+            long offset = index * Long.BYTES;
+            region[(int) (offset >>> SEGMENT_SHIFT)].putLong((int) (offset & SEGMENT_MASK), value);
+        }
+
+        private static ByteBuffer[] allocate(long bytes) {
+            int count = (int) ((bytes + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+            ByteBuffer[] region = new ByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long capacity = Math.min(1L << SEGMENT_SHIFT, bytes - ((long) i << SEGMENT_SHIFT));
+                region[i] = ByteBuffer.allocateDirect((int) capacity).order(ByteOrder.nativeOrder());
+            }
+            return region;
+        }
+
+    }
+
+}
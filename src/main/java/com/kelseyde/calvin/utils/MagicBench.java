@@ -0,0 +1,200 @@
+package com.kelseyde.calvin.utils;
+
+import com.kelseyde.calvin.board.Bits;
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.movegen.Attacks;
+import com.kelseyde.calvin.movegen.Magics;
+import com.kelseyde.calvin.movegen.MoveGenerator;
+import com.kelseyde.calvin.uci.UCI;
+import com.kelseyde.calvin.utils.notation.FEN;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures the latency of a sliding attack lookup in each of the {@link Magics} layouts. Since the layout used by the
+ * engine is fixed on startup, the lookups are not timed inside the move generator itself. Instead, the lookups made by
+ * two workloads are recorded up front, and replayed against each layout in turn:
+ * <ul>
+ *     <li>movegen: the lookups of a perft walk - the attacks of every slider, and the rays from both kings used to find
+ *     checkers and pins, in every position of the tree.</li>
+ *     <li>see: the lookups of the static exchange evaluation of each capture in the same positions, in which the
+ *     occupancy shrinks as the attackers are traded off.</li>
+ * </ul>
+ * The layouts are timed in interleaved rounds, and the best round of each is reported.
+ */
+public class MagicBench {
+
+    private static final List<String> FENS = List.of(
+            FEN.STARTPOS,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10"
+    );
+
+    private static final int DEPTH = 3;
+    private static final int ROUNDS = 10;
+
+    public static void run() {
+
+        Queries movegen = new Queries();
+        Queries see = new Queries();
+        MoveGenerator moveGenerator = new MoveGenerator();
+        for (String fen : FENS) {
+            record(FEN.parse(fen).toBoard(), DEPTH, moveGenerator, movegen, see);
+        }
+
+        UCI.write(String.format("magic layout in use: %s (-D%s=jagged|fancy|black)",
+                Magics.name(Magics.LAYOUT), Magics.PROPERTY));
+        bench("movegen", movegen);
+        bench("see", see);
+
+    }
+
+    private static void bench(String workload, Queries queries) {
+        double[] best = new double[3];
+        Arrays.fill(best, Double.MAX_VALUE);
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int layout = 0; layout < best.length; layout++) {
+                best[layout] = Math.min(best[layout], time(layout, queries));
+            }
+        }
+        UCI.write(String.format(Locale.ROOT, "%s (%d lookups): jagged %.2f ns, fancy %.2f ns, black %.2f ns",
+                workload, queries.count, best[Magics.JAGGED], best[Magics.FANCY], best[Magics.BLACK]));
+    }
+
+    private static double time(int layout, Queries queries) {
+        long start = System.nanoTime();
+        long checksum = switch (layout) {
+            case Magics.JAGGED -> replayJagged(queries);
+            case Magics.FANCY -> replayFancy(queries);
+            default -> replayBlack(queries);
+        };
+        long elapsed = System.nanoTime() - start;
+        // Use the checksum so that the JIT cannot eliminate the lookups.
+        if (checksum == 42) UCI.write("");
+        return (double) elapsed / queries.count;
+    }
+
+    private static long replayJagged(Queries queries) {
+        long checksum = 0;
+        for (int i = 0; i < queries.count; i++) {
+            int square = queries.squares[i];
+            checksum += square < Bits.Square.COUNT
+                    ? Magics.Jagged.bishopAttacks(square, queries.occupancies[i])
+                    : Magics.Jagged.rookAttacks(square - Bits.Square.COUNT, queries.occupancies[i]);
+        }
+        return checksum;
+    }
+
+    private static long replayFancy(Queries queries) {
+        long checksum = 0;
+        for (int i = 0; i < queries.count; i++) {
+            int square = queries.squares[i];
+            checksum += square < Bits.Square.COUNT
+                    ? Magics.Fancy.bishopAttacks(square, queries.occupancies[i])
+                    : Magics.Fancy.rookAttacks(square - Bits.Square.COUNT, queries.occupancies[i]);
+        }
+        return checksum;
+    }
+
+    private static long replayBlack(Queries queries) {
+        long checksum = 0;
+        for (int i = 0; i < queries.count; i++) {
+            int square = queries.squares[i];
+            checksum += square < Bits.Square.COUNT
+                    ? Magics.Black.bishopAttacks(square, queries.occupancies[i])
+                    : Magics.Black.rookAttacks(square - Bits.Square.COUNT, queries.occupancies[i]);
+        }
+        return checksum;
+    }
+
+    private static void record(Board board, int depth, MoveGenerator movegen, Queries moves, Queries see) {
+
+        long occupied = board.getOccupied();
+
+        // The attacks of each slider, and the rays from each king.
+        long diagonals = board.getBishops() | board.getQueens();
+        while (diagonals != 0) {
+            moves.addBishop(Bits.next(diagonals), occupied);
+            diagonals = Bits.pop(diagonals);
+        }
+        long orthogonals = board.getRooks() | board.getQueens();
+        while (orthogonals != 0) {
+            moves.addRook(Bits.next(orthogonals), occupied);
+            orthogonals = Bits.pop(orthogonals);
+        }
+        for (boolean white : new boolean[] { true, false }) {
+            int king = board.kingSquare(white);
+            moves.addBishop(king, occupied);
+            moves.addRook(king, occupied);
+        }
+
+        for (Move move : movegen.generateMoves(board)) {
+            if (board.captured(move) != null) {
+                recordExchange(board, move, see);
+            }
+            if (depth > 1) {
+                board.makeMove(move);
+                record(board, depth - 1, movegen, moves, see);
+                board.unmakeMove();
+            }
+        }
+
+    }
+
+    // Record the lookups of an exchange on the target square, removing the pieces in turn from the least valuable.
+    private static void recordExchange(Board board, Move move, Queries see) {
+        int to = move.to();
+        long occupied = board.getOccupied() ^ Bits.of(move.from());
+        long[] attackers = {
+                board.getPawns(), board.getKnights(), board.getBishops(), board.getRooks(), board.getQueens()
+        };
+        for (long pieces : attackers) {
+            pieces &= occupied & ~Bits.of(to);
+            while (pieces != 0) {
+                long diagonal = Attacks.bishopAttacks(to, occupied);
+                long orthogonal = Attacks.rookAttacks(to, occupied);
+                see.addBishop(to, occupied);
+                see.addRook(to, occupied);
+                int square = Bits.next(pieces);
+                if (!Bits.contains(diagonal | orthogonal, square)) break;
+                occupied ^= Bits.of(square);
+                pieces = Bits.pop(pieces);
+            }
+        }
+    }
+
+    /**
+     * A growable list of lookups. Bishop lookups are stored by square, and rook lookups by square plus 64.
+     */
+    private static class Queries {
+
+        private int[] squares = new int[1024];
+        private long[] occupancies = new long[1024];
+        private int count;
+
+        private void addBishop(int square, long occupied) {
+            add(square, occupied);
+        }
+
+        private void addRook(int square, long occupied) {
+            add(square + Bits.Square.COUNT, occupied);
+        }
+
+        private void add(int square, long occupied) {
+            if (count == squares.length) {
+                squares = Arrays.copyOf(squares, 2 * count);
+                occupancies = Arrays.copyOf(occupancies, 2 * count);
+            }
+            squares[count] = square;
+            occupancies[count++] = occupied;
+        }
+
+    }
+
+}
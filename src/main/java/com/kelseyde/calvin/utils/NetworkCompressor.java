@@ -0,0 +1,134 @@
+package com.kelseyde.calvin.utils;
+
+import com.kelseyde.calvin.board.Bits;
+import com.kelseyde.calvin.board.Bits.File;
+import com.kelseyde.calvin.board.Bits.Square;
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.board.Piece;
+import com.kelseyde.calvin.evaluation.Feature;
+import com.kelseyde.calvin.evaluation.NNUE;
+import com.kelseyde.calvin.evaluation.Network;
+import com.kelseyde.calvin.evaluation.activation.Activation;
+import com.kelseyde.calvin.utils.notation.FEN;
+
+import java.util.List;
+
+/**
+ * Compresses the bundled network so that its input weights are stored as int8, and saves it to the given file. To use
+ * the compressed network, load it with the EvalFile option, or replace the bundled network file with it; the loader
+ * detects the format automatically.
+ * </p>
+ * Before saving, the compressed network is validated against the original on the bench positions: the raw output of
+ * the two networks must match within {@link #TOLERANCE} for every position, otherwise nothing is saved. The same check
+ * is made by {@link NNUE#loadNetwork} when a compressed EvalFile is loaded.
+ */
+public class NetworkCompressor {
+
+    public static final int TOLERANCE = 10;
+
+    public static void main(String[] args) {
+
+        if (args.length < 1) {
+            System.out.println("Usage: NetworkCompressor <output file>");
+            return;
+        }
+
+        Network network = NNUE.NETWORK;
+        if (network.compressed()) {
+            System.out.println("The bundled network is already compressed");
+            return;
+        }
+
+        Network compressed = network.compress();
+        List<Board> boards = Bench.FENS.stream().map(fen -> FEN.parse(fen).toBoard()).toList();
+        int error = maxError(network, compressed, boards);
+        System.out.printf("Input weight scale %s, max error %s over %s positions%n",
+                compressed.inputWeightScale(), error, boards.size());
+
+        if (error > TOLERANCE) {
+            System.out.printf("Max error exceeds tolerance of %s, not saving%n", TOLERANCE);
+            return;
+        }
+        compressed.save(args[0]);
+        System.out.printf("Saved compressed network to %s%n", args[0]);
+
+    }
+
+    /**
+     * Calculate the largest difference between the raw outputs of two networks over a set of positions. Each network is
+     * evaluated with its own output layer, so neither needs to be the network currently loaded for inference.
+     */
+    public static int maxError(Network original, Network compressed, List<Board> boards) {
+        int maxError = 0;
+        for (Board board : boards) {
+            int error = Math.abs(forward(original, board) - forward(compressed, board));
+            maxError = Math.max(maxError, error);
+        }
+        return maxError;
+    }
+
+    // A plain scalar forward pass, which accumulates the features of every piece from scratch.
+    private static int forward(Network network, Board board) {
+        short[] white = accumulate(network, board, true);
+        short[] black = accumulate(network, board, false);
+        return board.isWhite()
+                ? output(network, white, black)
+                : output(network, black, white);
+    }
+
+    // The output layer of the given network, without the 16-bit tricks of the inference kernels.
+    private static int output(Network network, short[] us, short[] them) {
+
+        int hiddenSize = network.hiddenSize();
+        int qa = network.quantisations()[0];
+        int qb = network.quantisations()[1];
+        short[] weights = network.outputWeights();
+        boolean squared = network.activation() == Activation.SCReLU;
+
+        long sum = 0;
+        for (int i = 0; i < hiddenSize; i++) {
+            long usInput = Math.max(0, Math.min(qa, us[i]));
+            long themInput = Math.max(0, Math.min(qa, them[i]));
+            sum += (squared ? usInput * usInput : usInput) * weights[i];
+            sum += (squared ? themInput * themInput : themInput) * weights[i + hiddenSize];
+        }
+        if (squared) {
+            sum /= qa;
+        }
+        return (int) ((sum + network.outputBias()) * network.scale() / (qa * qb));
+
+    }
+
+    private static short[] accumulate(Network network, Board board, boolean whitePerspective) {
+
+        int hiddenSize = network.hiddenSize();
+        int kingSquare = board.kingSquare(whitePerspective);
+        int bucket = network.inputBuckets()[whitePerspective ? kingSquare : Square.flipRank(kingSquare)];
+        boolean mirror = network.horizontalMirror() && File.of(kingSquare) > 3;
+
+        short[] features = network.inputBiases().clone();
+        for (int colourIndex = 0; colourIndex < 2; colourIndex++) {
+            boolean white = colourIndex == 0;
+            for (int pieceIndex = 0; pieceIndex < Piece.COUNT; pieceIndex++) {
+                long pieces = board.getBitboards()[pieceIndex] & board.getBitboards()[Piece.COUNT + colourIndex];
+                while (pieces != 0) {
+                    int square = Bits.next(pieces);
+                    int offset = Feature.index(pieceIndex, square, white, whitePerspective, mirror) * hiddenSize;
+                    for (int i = 0; i < hiddenSize; i++) {
+                        features[i] += weight(network, bucket, offset + i);
+                    }
+                    pieces = Bits.pop(pieces);
+                }
+            }
+        }
+        return features;
+
+    }
+
+    private static int weight(Network network, int bucket, int index) {
+        return network.compressed()
+                ? network.compressedInputWeights()[bucket][index] * network.inputWeightScale()
+                : network.inputWeights()[bucket][index];
+    }
+
+}
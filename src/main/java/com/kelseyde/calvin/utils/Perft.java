@@ -3,11 +3,11 @@ package com.kelseyde.calvin.utils;
 import com.kelseyde.calvin.board.Board;
 import com.kelseyde.calvin.board.Move;
 import com.kelseyde.calvin.movegen.MoveGenerator;
+import com.kelseyde.calvin.movegen.MoveGenerator.MoveFilter;
 import com.kelseyde.calvin.uci.UCI;
 
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -18,9 +18,24 @@ public class Perft {
 
     private final MoveGenerator movegen = new MoveGenerator();
 
+    // Whether to walk the tree using pseudo-legal move generation, verifying the legality of each move before it is
+    // made. This is used to check that the deferred legality checks of the search agree with the legal generator.
+    private final boolean pseudoLegal;
+
     public long nodesSearched = 0;
     private Map<Move, Long> nodesPerMove;
 
+    // One move buffer per remaining depth, so that no moves are allocated while walking the tree.
+    private short[][] moveBuffers = new short[0][];
+
+    public Perft() {
+        this(false);
+    }
+
+    public Perft(boolean pseudoLegal) {
+        this.pseudoLegal = pseudoLegal;
+    }
+
     public long perft(Board board, int depth) {
         nodesSearched = 0;
         nodesPerMove = new HashMap<>();
@@ -37,12 +52,30 @@ public class Perft {
 
     public long perft(Board board, int depth, int originalDepth) {
         nodesSearched++;
-        List<Move> moves = movegen.generateMoves(board);
-        if (depth == 1) {
-            return moves.size();
+        if (moveBuffers.length <= depth) {
+            moveBuffers = new short[depth + 1][MoveGenerator.MAX_MOVES];
+        }
+        short[] moves = moveBuffers[depth];
+        int count = pseudoLegal
+                ? movegen.generatePseudoLegalMoves(board, MoveFilter.ALL, moves)
+                : movegen.generateMoves(board, MoveFilter.ALL, moves);
+
+        // Evasions are always generated legal, so the moves only need verifying if we are not in check.
+        boolean verify = pseudoLegal && !board.inCheck();
+        long pinned = verify ? board.pinned() : 0L;
+        if (depth == 1 && !verify) {
+            return count;
         }
         long totalMoveCount = 0;
-        for (Move move : moves) {
+        for (int i = 0; i < count; i++) {
+            Move move = new Move(moves[i]);
+            if (verify && !movegen.isLegal(board, move, pinned)) {
+                continue;
+            }
+            if (depth == 1) {
+                totalMoveCount++;
+                continue;
+            }
             board.makeMove(move);
             long moveCount = perft(board, depth - 1, originalDepth);
             if (depth == originalDepth) {
@@ -130,13 +130,12 @@ public record FEN(String value,
         board.setBitboards(bitboards);
         board.setPieces(pieces);
         board.setWhite(whiteToMove);
-        board.getState().setRights(castleRights);
-        board.getState().setHalfMoveClock(halfMoveClock);
-        board.getState().setFullMoveNumber(fullMoveNumber);
-        board.getState().setEnPassantFile(enPassantFile);
-        board.getState().setKey(Key.generateKey(board));
-        board.getState().setPawnKey(Key.generatePawnKey(board));
-        board.getState().setNonPawnKeys(Key.generateNonPawnKeys(board));
+        board.setRights(castleRights);
+        board.setHalfMoveClock(halfMoveClock);
+        board.setEnPassantFile(enPassantFile);
+        board.setKey(Key.generateKey(board));
+        board.setPawnKey(Key.generatePawnKey(board));
+        board.setNonPawnKeys(Key.generateNonPawnKeys(board));
         return board;
     }
 
@@ -175,13 +174,13 @@ public record FEN(String value,
             String whiteToMove = toSideToMove(board.isWhite());
             sb.append(" ").append(whiteToMove);
 
-            String castlingRights = toCastlingRights(board.getState().getRights());
+            String castlingRights = toCastlingRights(board.rights());
             sb.append(" ").append(castlingRights);
 
-            String enPassantSquare = toEnPassantSquare(board.getState().getEnPassantFile(), board.isWhite());
+            String enPassantSquare = toEnPassantSquare(board.enPassantFile(), board.isWhite());
             sb.append(" ").append(enPassantSquare);
 
-            String fiftyMoveCounter = toFiftyMoveCounter(board.getState().getHalfMoveClock());
+            String fiftyMoveCounter = toFiftyMoveCounter(board.halfMoveClock());
             sb.append(" ").append(fiftyMoveCounter);
 
             String fullMoveNumber = toFullMoveCounter(board.getPly());
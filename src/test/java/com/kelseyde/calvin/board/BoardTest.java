@@ -48,42 +48,48 @@ public class BoardTest {
     public void testBoardHistoryPreservesCastlingRights() {
 
         Board board = FEN.startpos().toBoard();
-        Assertions.assertTrue(Castling.kingsideAllowed(board.getState().rights, true));
-        Assertions.assertTrue(Castling.queensideAllowed(board.getState().rights, true));
-        Assertions.assertTrue(Castling.kingsideAllowed(board.getState().rights, false));
-        Assertions.assertTrue(Castling.queensideAllowed(board.getState().rights, false));
+        Assertions.assertTrue(Castling.kingsideAllowed(board.rights(), true));
+        Assertions.assertTrue(Castling.queensideAllowed(board.rights(), true));
+        Assertions.assertTrue(Castling.kingsideAllowed(board.rights(), false));
+        Assertions.assertTrue(Castling.queensideAllowed(board.rights(), false));
 
         board.makeMove(TestUtils.getLegalMove(board, "e2", "e3"));
         board.makeMove(TestUtils.getLegalMove(board, "e7", "e6"));
 
-        Assertions.assertTrue(Castling.kingsideAllowed(board.getState().rights, true));
-        Assertions.assertTrue(Castling.queensideAllowed(board.getState().rights, true));
-        Assertions.assertTrue(Castling.kingsideAllowed(board.getState().rights, false));
-        Assertions.assertTrue(Castling.queensideAllowed(board.getState().rights, false));
+        Assertions.assertTrue(Castling.kingsideAllowed(board.rights(), true));
+        Assertions.assertTrue(Castling.queensideAllowed(board.rights(), true));
+        Assertions.assertTrue(Castling.kingsideAllowed(board.rights(), false));
+        Assertions.assertTrue(Castling.queensideAllowed(board.rights(), false));
 
-        board.makeMove(TestUtils.getLegalMove(board, "e1", "e2"));
+        Move kingMove = TestUtils.getLegalMove(board, "e1", "e2");
+        board.makeMove(kingMove);
 
-        Assertions.assertFalse(Castling.kingsideAllowed(board.getState().rights, true));
-        Assertions.assertFalse(Castling.queensideAllowed(board.getState().rights, true));
-        Assertions.assertTrue(Castling.kingsideAllowed(board.getState().rights, false));
-        Assertions.assertTrue(Castling.queensideAllowed(board.getState().rights, false));
+        Assertions.assertFalse(Castling.kingsideAllowed(board.rights(), true));
+        Assertions.assertFalse(Castling.queensideAllowed(board.rights(), true));
+        Assertions.assertTrue(Castling.kingsideAllowed(board.rights(), false));
+        Assertions.assertTrue(Castling.queensideAllowed(board.rights(), false));
 
-        Assertions.assertTrue(Castling.kingsideAllowed(board.getStates()[board.getPly() - 1].rights, true));
-        Assertions.assertTrue(Castling.queensideAllowed(board.getStates()[board.getPly() - 1].rights, true));
-        Assertions.assertTrue(Castling.kingsideAllowed(board.getStates()[board.getPly() - 1].rights, false));
-        Assertions.assertTrue(Castling.queensideAllowed(board.getStates()[board.getPly() - 1].rights, false));
+        board.unmakeMove();
+        Assertions.assertTrue(Castling.kingsideAllowed(board.rights(), true));
+        Assertions.assertTrue(Castling.queensideAllowed(board.rights(), true));
+        Assertions.assertTrue(Castling.kingsideAllowed(board.rights(), false));
+        Assertions.assertTrue(Castling.queensideAllowed(board.rights(), false));
+        board.makeMove(kingMove);
 
-        board.makeMove(TestUtils.getLegalMove(board, "f7", "f6"));
+        Move pawnMove = TestUtils.getLegalMove(board, "f7", "f6");
+        board.makeMove(pawnMove);
 
-        Assertions.assertFalse(Castling.kingsideAllowed(board.getState().rights, true));
-        Assertions.assertFalse(Castling.queensideAllowed(board.getState().rights, true));
-        Assertions.assertTrue(Castling.kingsideAllowed(board.getState().rights, false));
-        Assertions.assertTrue(Castling.queensideAllowed(board.getState().rights, false));
+        Assertions.assertFalse(Castling.kingsideAllowed(board.rights(), true));
+        Assertions.assertFalse(Castling.queensideAllowed(board.rights(), true));
+        Assertions.assertTrue(Castling.kingsideAllowed(board.rights(), false));
+        Assertions.assertTrue(Castling.queensideAllowed(board.rights(), false));
 
-        Assertions.assertFalse(Castling.kingsideAllowed(board.getStates()[board.getPly() - 1].rights, true));
-        Assertions.assertFalse(Castling.queensideAllowed(board.getStates()[board.getPly() - 1].rights, true));
-        Assertions.assertTrue(Castling.kingsideAllowed(board.getStates()[board.getPly() - 1].rights, false));
-        Assertions.assertTrue(Castling.queensideAllowed(board.getStates()[board.getPly() - 1].rights, false));
+        board.unmakeMove();
+        Assertions.assertFalse(Castling.kingsideAllowed(board.rights(), true));
+        Assertions.assertFalse(Castling.queensideAllowed(board.rights(), true));
+        Assertions.assertTrue(Castling.kingsideAllowed(board.rights(), false));
+        Assertions.assertTrue(Castling.queensideAllowed(board.rights(), false));
+        board.makeMove(pawnMove);
 
     }
 
@@ -144,17 +150,17 @@ public class BoardTest {
         // castles
         board.makeMove(new Move(4, 6, Move.CASTLE_FLAG));
         Assertions.assertFalse(board.isWhite());
-        Assertions.assertFalse(Castling.kingsideAllowed(board.getState().rights, true));
-        Assertions.assertFalse(Castling.queensideAllowed(board.getState().rights, true));
-        Assertions.assertTrue(Castling.kingsideAllowed(board.getState().rights, false));
-        Assertions.assertTrue(Castling.queensideAllowed(board.getState().rights, false));
+        Assertions.assertFalse(Castling.kingsideAllowed(board.rights(), true));
+        Assertions.assertFalse(Castling.queensideAllowed(board.rights(), true));
+        Assertions.assertTrue(Castling.kingsideAllowed(board.rights(), false));
+        Assertions.assertTrue(Castling.queensideAllowed(board.rights(), false));
 
         board.unmakeMove();
         Assertions.assertTrue(board.isWhite());
-        Assertions.assertTrue(Castling.kingsideAllowed(board.getState().rights, true));
-        Assertions.assertTrue(Castling.queensideAllowed(board.getState().rights, true));
-        Assertions.assertTrue(Castling.kingsideAllowed(board.getState().rights, false));
-        Assertions.assertTrue(Castling.queensideAllowed(board.getState().rights, false));
+        Assertions.assertTrue(Castling.kingsideAllowed(board.rights(), true));
+        Assertions.assertTrue(Castling.queensideAllowed(board.rights(), true));
+        Assertions.assertTrue(Castling.kingsideAllowed(board.rights(), false));
+        Assertions.assertTrue(Castling.queensideAllowed(board.rights(), false));
 
     }
 
@@ -177,15 +183,15 @@ public class BoardTest {
     public void testMakeNullMoveChangesSideToMove() {
 
         Board board = FEN.parse("rn1qkb1r/ppp2ppp/3p1n2/8/2BPPpb1/5N2/PPP3PP/RNBQK2R w KQkq - 1 6").toBoard();
-        long initialZobrist = board.getState().getKey();
+        long initialZobrist = board.key();
         Assertions.assertTrue(board.isWhite());
         board.makeNullMove();
         Assertions.assertFalse(board.isWhite());
         Board board2 = FEN.parse("rn1qkb1r/ppp2ppp/3p1n2/8/2BPPpb1/5N2/PPP3PP/RNBQK2R b KQkq - 1 6").toBoard();
-        Assertions.assertEquals(board.getState().getKey(), board2.getState().getKey());
+        Assertions.assertEquals(board.key(), board2.key());
         board.unmakeNullMove();
         Assertions.assertTrue(board.isWhite());
-        Assertions.assertEquals(initialZobrist, board.getState().getKey());
+        Assertions.assertEquals(initialZobrist, board.key());
 
     }
 
@@ -193,13 +199,13 @@ public class BoardTest {
     public void testUnmakeMoveResetsEnPassantFile() {
 
         Board board = FEN.parse("r1bqkbnr/ppp1pppp/2n5/3pP3/8/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 3").toBoard();
-        long initialZobrist = board.getState().getKey();
-        Assertions.assertEquals(3, board.getState().getEnPassantFile());
+        long initialZobrist = board.key();
+        Assertions.assertEquals(3, board.enPassantFile());
         board.makeNullMove();
-        Assertions.assertEquals(-1, board.getState().getEnPassantFile());
+        Assertions.assertEquals(-1, board.enPassantFile());
         board.unmakeNullMove();
-        Assertions.assertEquals(3, board.getState().getEnPassantFile());
-        Assertions.assertEquals(initialZobrist, board.getState().getKey());
+        Assertions.assertEquals(3, board.enPassantFile());
+        Assertions.assertEquals(initialZobrist, board.key());
 
     }
 
@@ -207,13 +213,13 @@ public class BoardTest {
     public void testUnmakeMoveResetsFiftyMoveCounter() {
 
         Board board = FEN.parse("8/4n3/2kn4/8/3B4/5K2/8/8 w - - 4 3").toBoard();
-        long initialZobrist = board.getState().getKey();
-        Assertions.assertEquals(4, board.getState().getHalfMoveClock());
+        long initialZobrist = board.key();
+        Assertions.assertEquals(4, board.halfMoveClock());
         board.makeNullMove();
-        Assertions.assertEquals(0, board.getState().getHalfMoveClock());
+        Assertions.assertEquals(0, board.halfMoveClock());
         board.unmakeNullMove();
-        Assertions.assertEquals(4, board.getState().getHalfMoveClock());
-        Assertions.assertEquals(initialZobrist, board.getState().getKey());
+        Assertions.assertEquals(4, board.halfMoveClock());
+        Assertions.assertEquals(initialZobrist, board.key());
 
     }
 
@@ -301,6 +307,30 @@ public class BoardTest {
         }
     }
 
+    @Test
+    public void testUnmakeLongGameRestoresState() {
+        Board board = FEN.parse("r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3").toBoard();
+        long key = board.key();
+        long pawnKey = board.pawnKey();
+        String[] shuffle = { "f3g1", "c6b8", "g1f3", "b8c6" };
+        for (int i = 0; i < 300; i++) {
+            board.makeMove(Move.fromUCI(shuffle[i % 4]));
+        }
+        Assertions.assertEquals(302, board.halfMoveClock());
+        for (int ply = 0; ply <= 300; ply += 4) {
+            Assertions.assertEquals(key, board.keyAt(ply));
+            Assertions.assertFalse(board.isIrreversibleAt(ply));
+        }
+        for (int i = 0; i < 300; i++) {
+            board.unmakeMove();
+        }
+        Assertions.assertEquals(0, board.getPly());
+        Assertions.assertEquals(key, board.key());
+        Assertions.assertEquals(pawnKey, board.pawnKey());
+        Assertions.assertEquals(2, board.halfMoveClock());
+        Assertions.assertEquals(Piece.KNIGHT, board.pieceAt(Square.fromNotation("f3")));
+    }
+
     private Set<Integer> getPiecePositions(Board board, boolean whiteToMove) {
         Set<Integer> positions = new HashSet<>();
         if (whiteToMove) {
@@ -400,7 +400,7 @@ public class CastlingTest {
         Assertions.assertEquals(7, Castling.getRook(r, true, true));
 
         Board board = FEN.startpos().toBoard();
-        int rights = board.getState().getRights();
+        int rights = board.rights();
         Assertions.assertTrue(Castling.kingsideAllowed(rights, true));
         Assertions.assertTrue(Castling.kingsideAllowed(rights, false));
         Assertions.assertTrue(Castling.queensideAllowed(rights, true));
@@ -434,34 +434,34 @@ public class CastlingTest {
     @Test
     public void shredderFen() {
         Board board = Board.from("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w HAha - 0 1");
-        Assertions.assertTrue(Castling.kingsideAllowed(board.getState().getRights(), true));
-        Assertions.assertTrue(Castling.queensideAllowed(board.getState().getRights(), true));
-        Assertions.assertTrue(Castling.kingsideAllowed(board.getState().getRights(), false));
-        Assertions.assertTrue(Castling.queensideAllowed(board.getState().getRights(), false));
+        Assertions.assertTrue(Castling.kingsideAllowed(board.rights(), true));
+        Assertions.assertTrue(Castling.queensideAllowed(board.rights(), true));
+        Assertions.assertTrue(Castling.kingsideAllowed(board.rights(), false));
+        Assertions.assertTrue(Castling.queensideAllowed(board.rights(), false));
 
         board = Board.from("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w HAh - 0 1");
-        Assertions.assertTrue(Castling.kingsideAllowed(board.getState().getRights(), true));
-        Assertions.assertTrue(Castling.queensideAllowed(board.getState().getRights(), true));
-        Assertions.assertTrue(Castling.kingsideAllowed(board.getState().getRights(), false));
-        Assertions.assertFalse(Castling.queensideAllowed(board.getState().getRights(), false));
+        Assertions.assertTrue(Castling.kingsideAllowed(board.rights(), true));
+        Assertions.assertTrue(Castling.queensideAllowed(board.rights(), true));
+        Assertions.assertTrue(Castling.kingsideAllowed(board.rights(), false));
+        Assertions.assertFalse(Castling.queensideAllowed(board.rights(), false));
 
         board = Board.from("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w HA - 0 1");
-        Assertions.assertTrue(Castling.kingsideAllowed(board.getState().getRights(), true));
-        Assertions.assertTrue(Castling.queensideAllowed(board.getState().getRights(), true));
-        Assertions.assertFalse(Castling.kingsideAllowed(board.getState().getRights(), false));
-        Assertions.assertFalse(Castling.queensideAllowed(board.getState().getRights(), false));
+        Assertions.assertTrue(Castling.kingsideAllowed(board.rights(), true));
+        Assertions.assertTrue(Castling.queensideAllowed(board.rights(), true));
+        Assertions.assertFalse(Castling.kingsideAllowed(board.rights(), false));
+        Assertions.assertFalse(Castling.queensideAllowed(board.rights(), false));
 
         board = Board.from("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w H - 0 1");
-        Assertions.assertTrue(Castling.kingsideAllowed(board.getState().getRights(), true));
-        Assertions.assertFalse(Castling.queensideAllowed(board.getState().getRights(), true));
-        Assertions.assertFalse(Castling.kingsideAllowed(board.getState().getRights(), false));
-        Assertions.assertFalse(Castling.queensideAllowed(board.getState().getRights(), false));
+        Assertions.assertTrue(Castling.kingsideAllowed(board.rights(), true));
+        Assertions.assertFalse(Castling.queensideAllowed(board.rights(), true));
+        Assertions.assertFalse(Castling.kingsideAllowed(board.rights(), false));
+        Assertions.assertFalse(Castling.queensideAllowed(board.rights(), false));
 
         board = Board.from("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1");
-        Assertions.assertFalse(Castling.kingsideAllowed(board.getState().getRights(), true));
-        Assertions.assertFalse(Castling.queensideAllowed(board.getState().getRights(), true));
-        Assertions.assertFalse(Castling.kingsideAllowed(board.getState().getRights(), false));
-        Assertions.assertFalse(Castling.queensideAllowed(board.getState().getRights(), false));
+        Assertions.assertFalse(Castling.kingsideAllowed(board.rights(), true));
+        Assertions.assertFalse(Castling.queensideAllowed(board.rights(), true));
+        Assertions.assertFalse(Castling.kingsideAllowed(board.rights(), false));
+        Assertions.assertFalse(Castling.queensideAllowed(board.rights(), false));
     }
 
 }
@@ -342,4 +342,68 @@ public class CheckTest {
 
     }
 
+    @Test
+    public void testGivesCheckMatchesMakeMove() {
+
+        // Direct, discovered, promotion, en passant and castling checks
+        String[] fens = {
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                "5k2/8/8/8/8/8/8/4K2R w K - 0 1"
+        };
+        for (String fen : fens) {
+            Board board = FEN.parse(fen).toBoard();
+            for (Move move : movegen.generateMoves(board)) {
+                boolean givesCheck = movegen.givesCheck(board, move);
+                board.makeMove(move);
+                Assertions.assertEquals(board.inCheck(), givesCheck, fen + " " + Move.toUCI(move));
+                for (Move reply : movegen.generateMoves(board)) {
+                    givesCheck = movegen.givesCheck(board, reply);
+                    board.makeMove(reply);
+                    Assertions.assertEquals(board.inCheck(), givesCheck, fen + " " + Move.toUCI(reply));
+                    board.unmakeMove();
+                }
+                board.unmakeMove();
+            }
+        }
+
+    }
+
+    @Test
+    public void testCachedAttacksAfterMakeUnmake() {
+
+        // Black is in check from the bishop on b5, and the knight on e7 is pinned by the queen on e2
+        Board board = FEN.parse("r1bqk2r/ppp1nppp/5n2/1B4B1/8/2N5/PPPPQPPP/R3K1NR b KQkq - 0 1").toBoard();
+        Assertions.assertEquals(Bits.of(33), board.checkers());
+        Assertions.assertEquals(Bits.of(52), board.pinned());
+        assertCachedAttacks(board);
+
+        for (Move move : movegen.generateMoves(board)) {
+            board.makeMove(move);
+            assertCachedAttacks(board);
+            for (Move reply : movegen.generateMoves(board)) {
+                board.makeMove(reply);
+                assertCachedAttacks(board);
+                board.unmakeMove();
+                assertCachedAttacks(board);
+            }
+            board.unmakeMove();
+            assertCachedAttacks(board);
+        }
+
+    }
+
+    private void assertCachedAttacks(Board board) {
+        Board copy = board.copy();
+        Assertions.assertEquals(copy.checkers(), board.checkers());
+        Assertions.assertEquals(copy.pinned(), board.pinned());
+        Assertions.assertEquals(copy.threats(), board.threats());
+        movegen.calculatePins(board, board.isWhite());
+        Assertions.assertEquals(movegen.getPinMask(), board.pinned());
+        if (!board.inCheck()) {
+            Assertions.assertEquals(movegen.calculateThreats(board, !board.isWhite()), board.threats());
+        }
+    }
+
 }
@@ -0,0 +1,64 @@
+package com.kelseyde.calvin.evaluation;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.utils.notation.FEN;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class EvalCacheTest {
+
+    @Test
+    public void testPutAndGet() {
+
+        EvalCache cache = new EvalCache();
+        long key = FEN.startpos().toBoard().key();
+        Assertions.assertEquals(EvalCache.MISS, cache.get(key));
+
+        cache.put(key, 126);
+        Assertions.assertEquals(126, cache.get(key));
+
+        cache.put(key, -3000);
+        Assertions.assertEquals(-3000, cache.get(key));
+
+    }
+
+    @Test
+    public void testDifferentKeyInSameSlotMisses() {
+
+        EvalCache cache = new EvalCache(1024);
+        Board board = FEN.startpos().toBoard();
+        long key = board.key();
+        long collidingKey = key ^ (1L << 40);
+
+        cache.put(key, 50);
+        Assertions.assertEquals(EvalCache.MISS, cache.get(collidingKey));
+
+        cache.put(collidingKey, -50);
+        Assertions.assertEquals(-50, cache.get(collidingKey));
+        Assertions.assertEquals(EvalCache.MISS, cache.get(key));
+
+    }
+
+    @Test
+    public void testSizeFollowsTableSize() {
+
+        // An eighth of the memory of a 16MB table of 16-byte entries, in 8-byte entries.
+        Assertions.assertEquals(1 << 18, EvalCache.sizeFor(1 << 20));
+        Assertions.assertEquals(1 << 16, EvalCache.sizeFor(1 << 16));
+        Assertions.assertEquals(1 << 20, EvalCache.sizeFor(1L << 30));
+        Assertions.assertEquals(1 << 18, EvalCache.sizeFor((1 << 20) + (1 << 19)));
+
+    }
+
+    @Test
+    public void testClear() {
+
+        EvalCache cache = new EvalCache();
+        long key = FEN.startpos().toBoard().key();
+        cache.put(key, 10);
+        cache.clear();
+        Assertions.assertEquals(EvalCache.MISS, cache.get(key));
+
+    }
+
+}
@@ -2,13 +2,24 @@ package com.kelseyde.calvin.evaluation;
 
 import com.kelseyde.calvin.board.Board;
 import com.kelseyde.calvin.board.Move;
+import com.kelseyde.calvin.board.Piece;
+import com.kelseyde.calvin.engine.Engine;
 import com.kelseyde.calvin.movegen.MoveGenerator;
 import com.kelseyde.calvin.uci.UCI;
+import com.kelseyde.calvin.utils.Bench;
+import com.kelseyde.calvin.utils.NetworkCompressor;
 import com.kelseyde.calvin.utils.notation.FEN;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
 public class NNUETest {
 
     public void testBenchmark() {
@@ -285,6 +296,239 @@ public class NNUETest {
         }
     }
 
+    @Test
+    public void testLazyUpdatesAcrossSkippedPlies() {
+
+        // Play random games, only evaluating at some plies, so that the accumulator must be brought up to date across
+        // several deferred updates, including king moves that cross buckets and the mirror axis.
+        MoveGenerator movegen = new MoveGenerator();
+        Random random = new Random(0);
+        for (int game = 0; game < 20; game++) {
+            Board board = FEN.startpos().toBoard();
+            NNUE nnue = new NNUE(board);
+            int plies = 0;
+            for (int ply = 0; ply < 80; ply++) {
+                List<Move> moves = movegen.generateMoves(board);
+                if (moves.isEmpty()) break;
+                Move move = moves.get(random.nextInt(moves.size()));
+                nnue.makeMove(board, move);
+                board.makeMove(move);
+                plies++;
+                if (random.nextInt(4) == 0)
+                    Assertions.assertEquals(new NNUE(board).evaluate(), nnue.evaluate());
+            }
+            // Unwind part of the game, and check that the accumulators computed earlier are still valid.
+            for (int i = 0; i < plies / 2; i++) {
+                board.unmakeMove();
+                nnue.unmakeMove();
+            }
+            Assertions.assertEquals(new NNUE(board).evaluate(), nnue.evaluate());
+        }
+
+    }
+
+    @Test
+    public void testMakeMoveDoesNotAllocate() {
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Board board = FEN.parse("r1bqk2r/pppp1ppp/2n2n2/2b1p3/2B1P3/3P1N2/PPP2PPP/RNBQK2R w KQkq - 1 5").toBoard();
+        NNUE nnue = new NNUE(board);
+        // Moves that refresh the accumulator run the vector kernels, which may allocate before they are compiled.
+        Move[] moves = new MoveGenerator().generateMoves(board).stream()
+                .filter(move -> board.pieceAt(move.from()) != Piece.KING)
+                .toArray(Move[]::new);
+
+        for (Move move : moves) {
+            nnue.makeMove(board, move);
+            nnue.unmakeMove();
+        }
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 1000; i++) {
+            for (Move move : moves) {
+                nnue.makeMove(board, move);
+                nnue.unmakeMove();
+            }
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        Assertions.assertEquals(0, allocated);
+
+    }
+
+    @Test
+    public void testCompressedNetworkMatchesWithinTolerance() {
+
+        Network network = NNUE.NETWORK;
+        Network compressed = network.compress();
+        Assertions.assertTrue(compressed.compressed());
+        Assertions.assertTrue(compressed.inputWeightScale() >= 1);
+
+        List<Board> boards = Bench.FENS.stream().map(fen -> FEN.parse(fen).toBoard()).toList();
+        int error = NetworkCompressor.maxError(network, compressed, boards);
+        Assertions.assertTrue(error <= NetworkCompressor.TOLERANCE, "Max error " + error);
+
+    }
+
+    @Test
+    public void testMaxErrorDetectsCorruptedNetwork() {
+
+        Network network = NNUE.NETWORK;
+        List<Board> boards = Bench.FENS.stream().map(fen -> FEN.parse(fen).toBoard()).toList();
+        Assertions.assertEquals(0, NetworkCompressor.maxError(network, network, boards));
+
+        // Flip the sign of every compressed weight, which the tolerance must not let through.
+        Network corrupted = network.compress();
+        for (byte[] weights : corrupted.compressedInputWeights()) {
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = (byte) -weights[i];
+            }
+        }
+        int error = NetworkCompressor.maxError(network, corrupted, boards);
+        Assertions.assertTrue(error > NetworkCompressor.TOLERANCE, "Max error " + error);
+
+    }
+
+    @Test
+    public void testLoadCompressedNetworkValidatesTolerance() throws IOException {
+
+        Board board = FEN.parse("r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4").toBoard();
+        int eval = new NNUE(board).evaluate();
+
+        Path valid = Files.createTempFile("network", ".nnue");
+        Path corrupted = Files.createTempFile("network", ".nnue");
+        try {
+            Network compressed = NNUE.NETWORK.compress();
+            compressed.save(valid.toString());
+            NNUE.loadNetwork(valid);
+            Assertions.assertTrue(NNUE.NETWORK.compressed());
+            Assertions.assertTrue(Math.abs(eval - new NNUE(board).evaluate()) <= NetworkCompressor.TOLERANCE);
+            NNUE.loadNetwork(null);
+            Assertions.assertFalse(NNUE.NETWORK.compressed());
+
+            for (byte[] weights : compressed.compressedInputWeights()) {
+                for (int i = 0; i < weights.length; i++) {
+                    weights[i] = (byte) -weights[i];
+                }
+            }
+            compressed.save(corrupted.toString());
+            Assertions.assertThrows(IOException.class, () -> NNUE.loadNetwork(corrupted));
+            Assertions.assertEquals(eval, new NNUE(board).evaluate());
+        } finally {
+            NNUE.loadNetwork(null);
+            Files.deleteIfExists(valid);
+            Files.deleteIfExists(corrupted);
+        }
+
+    }
+
+    @Test
+    public void testLoadNetworkFromFile() throws IOException {
+
+        Path path = Files.createTempFile("network", ".nnue");
+        try {
+            NNUE.NETWORK.save(path.toString());
+            Board board = FEN.parse("r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4").toBoard();
+            int eval = new NNUE(board).evaluate();
+            short[][] weights = NNUE.NETWORK.inputWeights();
+
+            NNUE.loadNetwork(path);
+            Assertions.assertSame(weights, NNUE.NETWORK.inputWeights());
+            Assertions.assertEquals(eval, new NNUE(board).evaluate());
+        } finally {
+            NNUE.loadNetwork(null);
+            Files.deleteIfExists(path);
+        }
+
+    }
+
+    @Test
+    public void testLoadNetworkRejectsWrongArchitecture() throws IOException {
+
+        Path path = Files.createTempFile("network", ".nnue");
+        try {
+            Files.write(path, new byte[1024]);
+            Assertions.assertThrows(IOException.class, () -> NNUE.loadNetwork(path));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+
+    }
+
+    @Test
+    public void testEvaluateReusedInstance() {
+
+        NNUE nnue = new NNUE();
+        for (int i = 0; i < 2; i++) {
+            for (String fen : Bench.FENS) {
+                Board board = FEN.parse(fen).toBoard();
+                Assertions.assertEquals(new NNUE(board).evaluate(), nnue.evaluate(board), fen);
+            }
+        }
+
+    }
+
+    @Test
+    public void testSetPositionKeepsBucketCache() {
+
+        NNUE nnue = new NNUE();
+        MoveGenerator moveGenerator = new MoveGenerator();
+        for (String fen : Bench.FENS) {
+            Board board = FEN.parse(fen).toBoard();
+            nnue.setPosition(board);
+            Assertions.assertEquals(new NNUE(board).evaluate(), nnue.evaluate(), fen);
+
+            // Play a few moves before the next position, so that the accumulator stack is no longer at its root.
+            for (int i = 0; i < 4; i++) {
+                List<Move> moves = moveGenerator.generateMoves(board);
+                if (moves.isEmpty()) break;
+                Move move = moves.get(moves.size() / 2);
+                nnue.makeMove(board, move);
+                board.makeMove(move);
+                Assertions.assertEquals(new NNUE(board).evaluate(), nnue.evaluate(), fen);
+            }
+        }
+
+        Board board = FEN.startpos().toBoard();
+        nnue.clearHistory();
+        nnue.setPosition(board);
+        Assertions.assertEquals(new NNUE(board).evaluate(), nnue.evaluate());
+
+    }
+
+    @Test
+    public void testBatchEvaluation() {
+
+        String[] fens = Bench.FENS.toArray(new String[0]);
+        BatchEvaluator evaluator = new BatchEvaluator(4);
+        try {
+            int[] scores = evaluator.evaluate(fens);
+            Assertions.assertEquals(fens.length, scores.length);
+            for (int i = 0; i < fens.length; i++) {
+                Board board = FEN.parse(fens[i]).toBoard();
+                Assertions.assertEquals(new NNUE(board).evaluate(), scores[i], fens[i]);
+            }
+            // Evaluating the same batch again reuses the pooled accumulators and bucket caches.
+            Assertions.assertArrayEquals(scores, evaluator.evaluate(fens));
+            Assertions.assertEquals(0, evaluator.evaluate(new String[0]).length);
+        } finally {
+            evaluator.shutdown();
+        }
+
+    }
+
+    @Test
+    public void testEngineReusesBatchEvaluator() throws IOException {
+
+        Engine engine = Engine.getInstance();
+        BatchEvaluator evaluator = engine.getBatchEvaluator();
+        Assertions.assertSame(evaluator, engine.getBatchEvaluator());
+
+        // Loading a new network discards the evaluator, whose bucket caches were built with the old weights.
+        engine.loadEvalFile(null);
+        Assertions.assertNotSame(evaluator, engine.getBatchEvaluator());
+
+    }
+
     @AfterAll
     public static void tearDown() {
         UCI.Options.chess960 = false;
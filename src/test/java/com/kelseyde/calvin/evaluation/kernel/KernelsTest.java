@@ -0,0 +1,189 @@
+package com.kelseyde.calvin.evaluation.kernel;
+
+import com.kelseyde.calvin.evaluation.NNUE;
+import com.kelseyde.calvin.evaluation.Network;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+public class KernelsTest {
+
+    private static final int HIDDEN_SIZE = NNUE.NETWORK.hiddenSize();
+    private static final int INPUT_SIZE = NNUE.NETWORK.inputSize();
+
+    private final Kernels scalar = new ScalarKernels();
+    private final Kernels vector = new VectorKernels();
+    private final Random random = new Random(0);
+
+    @Test
+    public void testSelectedKernelsAreReported() {
+
+        Assertions.assertNotNull(KernelSelector.KERNELS);
+        Assertions.assertTrue(KernelSelector.SUMMARY.startsWith(KernelSelector.KERNELS.name()));
+
+    }
+
+    @Test
+    public void testUpdatesMatch() {
+
+        for (int i = 0; i < 100; i++) {
+            short[] src = randomFeatures(-2000, 2000);
+            int bucket = random.nextInt(NNUE.NETWORK.inputBucketCount());
+            int o1 = randomOffset(), o2 = randomOffset(), o3 = randomOffset(), o4 = randomOffset();
+
+            assertUpdateMatches(src, (k, dest) -> k.add(src, dest, bucket, o1));
+            assertUpdateMatches(src, (k, dest) -> k.sub(src, dest, bucket, o1));
+            assertUpdateMatches(src, (k, dest) -> k.addSub(src, dest, bucket, o1, o2));
+            assertUpdateMatches(src, (k, dest) -> k.addSubSub(src, dest, bucket, o1, o2, o3));
+            assertUpdateMatches(src, (k, dest) -> k.addAddSubSub(src, dest, bucket, o1, o2, o3, o4));
+            assertUpdateMatches(src, (k, dest) -> k.addAddAddAdd(src, dest, bucket, o1, o2, o3, o4));
+            assertUpdateMatches(src, (k, dest) -> k.subSubSubSub(src, dest, bucket, o1, o2, o3, o4));
+            assertUpdateMatches(src, (k, dest) -> k.copy(src, dest));
+        }
+
+    }
+
+    @Test
+    public void testLoadedCompressedNetworkUsesInt8Weights() throws IOException {
+
+        Path path = Files.createTempFile("network", ".nnue");
+        try {
+            NNUE.NETWORK.compress().save(path.toString());
+            NNUE.loadNetwork(path);
+            Assertions.assertTrue(NNUE.NETWORK.compressed());
+            Assertions.assertNull(NNUE.NETWORK.inputWeights());
+
+            // Write a pattern into the int8 weights held by the network, which the kernels must then read back.
+            byte[][] weights = NNUE.NETWORK.compressedInputWeights();
+            int scale = NNUE.NETWORK.inputWeightScale();
+            short[] empty = new short[HIDDEN_SIZE];
+            for (int i = 0; i < 10; i++) {
+                int bucket = random.nextInt(NNUE.NETWORK.inputBucketCount());
+                int offset = randomOffset();
+                short[] expected = new short[HIDDEN_SIZE];
+                for (int j = 0; j < HIDDEN_SIZE; j++) {
+                    weights[bucket][offset + j] = (byte) (random.nextInt(255) - 127);
+                    expected[j] = (short) (weights[bucket][offset + j] * scale);
+                }
+
+                short[] actual = new short[HIDDEN_SIZE];
+                scalar.add(empty, actual, bucket, offset);
+                Assertions.assertArrayEquals(expected, actual);
+                actual = new short[HIDDEN_SIZE];
+                vector.add(empty, actual, bucket, offset);
+                Assertions.assertArrayEquals(expected, actual);
+            }
+
+            testUpdatesMatch();
+        } finally {
+            NNUE.loadNetwork(null);
+            Files.deleteIfExists(path);
+        }
+        Assertions.assertFalse(NNUE.NETWORK.compressed());
+
+    }
+
+    @Test
+    public void testUpdateInPlace() {
+
+        short[] features = randomFeatures(-2000, 2000);
+        short[] expected = new short[HIDDEN_SIZE];
+        int offset = randomOffset();
+
+        scalar.addSub(features, expected, 0, offset, 0);
+        vector.addSub(features, features, 0, offset, 0);
+        Assertions.assertArrayEquals(expected, features);
+
+    }
+
+    @Test
+    public void testScreluMatches() {
+
+        short[] weights = NNUE.NETWORK.outputWeights();
+        for (int i = 0; i < 100; i++) {
+            short[] us = randomFeatures(-500, 500);
+            short[] them = randomFeatures(-500, 500);
+            Assertions.assertEquals(scalar.screlu(us, them, weights), vector.screlu(us, them, weights));
+        }
+
+    }
+
+    @Test
+    public void testCreluMatches() {
+
+        short[] weights = NNUE.NETWORK.outputWeights();
+        for (int i = 0; i < 100; i++) {
+            short[] us = randomFeatures(-500, 500);
+            short[] them = randomFeatures(-500, 500);
+            Assertions.assertEquals(scalar.crelu(us, them, weights), vector.crelu(us, them, weights));
+        }
+
+    }
+
+    @Test
+    public void testOutputMatchesWithRandomWeights() {
+
+        // Random weights across the whole 16-bit range, so that the sum of any one vector overflows a short.
+        for (int i = 0; i < 100; i++) {
+            short[] weights = randomWeights(2 * HIDDEN_SIZE);
+            short[] us = randomFeatures(-500, 500);
+            short[] them = randomFeatures(-500, 500);
+            Assertions.assertEquals(scalar.crelu(us, them, weights), vector.crelu(us, them, weights));
+            Assertions.assertEquals(scalar.screlu(us, them, weights), vector.screlu(us, them, weights));
+        }
+
+    }
+
+    @Test
+    public void testCreluDoesNotWrap() {
+
+        // Every input is clipped to QA, and every weight is large enough that a single vector sum overflows 16 bits.
+        int qa = NNUE.NETWORK.quantisations()[0];
+        short[] weights = new short[2 * HIDDEN_SIZE];
+        Arrays.fill(weights, (short) 100);
+        short[] inputs = new short[HIDDEN_SIZE];
+        Arrays.fill(inputs, (short) qa);
+        int expected = 2 * HIDDEN_SIZE * qa * 100;
+        Assertions.assertEquals(expected, scalar.crelu(inputs, inputs, weights));
+        Assertions.assertEquals(expected, vector.crelu(inputs, inputs, weights));
+
+    }
+
+    private void assertUpdateMatches(short[] src, Update update) {
+        short[] expected = new short[HIDDEN_SIZE];
+        short[] actual = new short[HIDDEN_SIZE];
+        update.apply(scalar, expected);
+        update.apply(vector, actual);
+        Assertions.assertArrayEquals(expected, actual);
+    }
+
+    private short[] randomFeatures(int min, int max) {
+        short[] features = new short[HIDDEN_SIZE];
+        for (int i = 0; i < HIDDEN_SIZE; i++) {
+            features[i] = (short) (min + random.nextInt(max - min));
+        }
+        return features;
+    }
+
+    private short[] randomWeights(int length) {
+        short[] weights = new short[length];
+        for (int i = 0; i < length; i++) {
+            weights[i] = (short) random.nextInt();
+        }
+        return weights;
+    }
+
+    private int randomOffset() {
+        return random.nextInt(INPUT_SIZE) * HIDDEN_SIZE;
+    }
+
+    private interface Update {
+        void apply(Kernels kernels, short[] dest);
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.kelseyde.calvin.movegen;
+
+import com.kelseyde.calvin.board.Bits.Square;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class MagicsTest {
+
+    @Test
+    public void testLayoutsMatchAttackMasks() {
+
+        Random random = new Random(1);
+        for (int square = 0; square < Square.COUNT; square++) {
+            for (int i = 0; i < 1000; i++) {
+                // Sparse occupancies, like those of a real position, as well as dense ones.
+                long occupied = i % 2 == 0
+                        ? random.nextLong() & random.nextLong() & random.nextLong()
+                        : random.nextLong();
+
+                long rook = Attacks.initAttackMask(square, occupied & Attacks.ROOK_MASKS[square], true);
+                Assertions.assertEquals(rook, Magics.Jagged.rookAttacks(square, occupied));
+                Assertions.assertEquals(rook, Magics.Fancy.rookAttacks(square, occupied));
+                Assertions.assertEquals(rook, Magics.Black.rookAttacks(square, occupied));
+
+                long bishop = Attacks.initAttackMask(square, occupied & Attacks.BISHOP_MASKS[square], false);
+                Assertions.assertEquals(bishop, Magics.Jagged.bishopAttacks(square, occupied));
+                Assertions.assertEquals(bishop, Magics.Fancy.bishopAttacks(square, occupied));
+                Assertions.assertEquals(bishop, Magics.Black.bishopAttacks(square, occupied));
+            }
+        }
+
+    }
+
+    @Test
+    public void testSelectLayout() {
+
+        Assertions.assertEquals(Magics.JAGGED, Magics.select("jagged"));
+        Assertions.assertEquals(Magics.FANCY, Magics.select(" Fancy "));
+        Assertions.assertEquals(Magics.BLACK, Magics.select("BLACK"));
+        Assertions.assertEquals(Magics.DEFAULT, Magics.select(null));
+        Assertions.assertEquals(Magics.DEFAULT, Magics.select("pext"));
+
+    }
+
+}
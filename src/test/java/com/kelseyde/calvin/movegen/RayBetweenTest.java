@@ -1,5 +1,6 @@
 package com.kelseyde.calvin.movegen;
 
+import com.kelseyde.calvin.board.Bits;
 import com.kelseyde.calvin.board.Bits.Ray;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -279,4 +280,20 @@ public class RayBetweenTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testLine() {
+
+        // Rank, file and both diagonals, in either direction
+        Assertions.assertEquals(Bits.Rank.FIRST, Ray.line(2, 5));
+        Assertions.assertEquals(Bits.Rank.FIRST, Ray.line(5, 2));
+        Assertions.assertEquals(Bits.File.toBitboard(4), Ray.line(12, 36));
+        Assertions.assertEquals(0x8040201008040201L, Ray.line(27, 9));
+        Assertions.assertEquals(0x0102040810204080L, Ray.line(14, 49));
+
+        // Not aligned, or the same square
+        Assertions.assertEquals(0L, Ray.line(0, 17));
+        Assertions.assertEquals(0L, Ray.line(18, 18));
+
+    }
+
+}
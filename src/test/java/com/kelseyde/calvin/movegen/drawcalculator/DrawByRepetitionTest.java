@@ -183,4 +183,148 @@ public class DrawByRepetitionTest {
 
     }
 
+    @Test
+    public void testRepetitionOfPositionBeforeCopiedRoot() {
+
+        Board board = FEN.startpos().toBoard();
+        board.makeMove(TestUtils.getLegalMove(board, "e2", "e3"));
+        board.makeMove(TestUtils.getLegalMove(board, "e7", "e6"));
+
+        board.makeMove(TestUtils.getLegalMove(board, "g1", "f3"));
+        board.makeMove(TestUtils.getLegalMove(board, "g8", "f6"));
+        board.makeMove(TestUtils.getLegalMove(board, "f3", "g1"));
+
+        // Only the positions since the last pawn move are carried over, and every copy of the root shares them.
+        Board root = board.copy();
+        Assertions.assertEquals(3, root.historyLength());
+        Board copy = root.copy();
+        Assertions.assertEquals(0, copy.getPly());
+        Assertions.assertEquals(root.historyLength(), copy.historyLength());
+        Assertions.assertFalse(Score.isDraw(copy));
+
+        copy.makeMove(TestUtils.getLegalMove(copy, "f6", "g8"));
+        Assertions.assertTrue(Score.isDraw(copy));
+        Assertions.assertFalse(Score.isThreefoldRepetition(copy));
+
+        // One ply into the search, the repeated position is from the game before the root, where it has only been seen
+        // once, so the game has only seen it twice.
+        Assertions.assertFalse(Score.isDraw(copy, 1));
+
+        copy.makeMove(TestUtils.getLegalMove(copy, "g1", "f3"));
+        copy.makeMove(TestUtils.getLegalMove(copy, "g8", "f6"));
+        copy.makeMove(TestUtils.getLegalMove(copy, "f3", "g1"));
+        copy.makeMove(TestUtils.getLegalMove(copy, "f6", "g8"));
+        Assertions.assertTrue(Score.isThreefoldRepetition(copy));
+
+    }
+
+    @Test
+    public void testRepetitionWithinSearch() {
+
+        Board board = FEN.startpos().toBoard();
+        board.makeMove(TestUtils.getLegalMove(board, "e2", "e3"));
+
+        Board copy = board.copy();
+        copy.makeMove(TestUtils.getLegalMove(copy, "g8", "f6"));
+        copy.makeMove(TestUtils.getLegalMove(copy, "g1", "f3"));
+        copy.makeMove(TestUtils.getLegalMove(copy, "f6", "g8"));
+        copy.makeMove(TestUtils.getLegalMove(copy, "f3", "g1"));
+
+        // Returning to the root position has only repeated it once in the game.
+        Assertions.assertFalse(Score.isDraw(copy, 4));
+
+        // Repeating a position reached within the search is enough.
+        copy.makeMove(TestUtils.getLegalMove(copy, "g8", "f6"));
+        Assertions.assertTrue(Score.isDraw(copy, 5));
+
+    }
+
+    @Test
+    public void testRepetitionOfRootSeenTwice() {
+
+        Board board = FEN.startpos().toBoard();
+        board.makeMove(TestUtils.getLegalMove(board, "e2", "e3"));
+        board.makeMove(TestUtils.getLegalMove(board, "g8", "f6"));
+        board.makeMove(TestUtils.getLegalMove(board, "g1", "f3"));
+        board.makeMove(TestUtils.getLegalMove(board, "f6", "g8"));
+        board.makeMove(TestUtils.getLegalMove(board, "f3", "g1"));
+
+        // The root position has already occurred twice in the game, so returning to it is a threefold repetition.
+        Board copy = board.copy();
+        copy.makeMove(TestUtils.getLegalMove(copy, "g8", "f6"));
+        copy.makeMove(TestUtils.getLegalMove(copy, "g1", "f3"));
+        copy.makeMove(TestUtils.getLegalMove(copy, "f6", "g8"));
+        copy.makeMove(TestUtils.getLegalMove(copy, "f3", "g1"));
+        Assertions.assertTrue(Score.isDraw(copy, 4));
+
+    }
+
+    @Test
+    public void testCopyDropsHistoryBeforeIrreversibleMove() {
+
+        Board board = FEN.startpos().toBoard();
+        board.makeMove(TestUtils.getLegalMove(board, "g1", "f3"));
+        board.makeMove(TestUtils.getLegalMove(board, "g8", "f6"));
+        board.makeMove(TestUtils.getLegalMove(board, "f3", "g1"));
+        board.makeMove(TestUtils.getLegalMove(board, "f6", "g8"));
+        board.makeMove(TestUtils.getLegalMove(board, "e2", "e4"));
+
+        Assertions.assertEquals(0, board.copy().historyLength());
+
+    }
+
+    @Test
+    public void testUpcomingRepetition() {
+
+        Board board = FEN.startpos().toBoard();
+        board.makeMove(TestUtils.getLegalMove(board, "g1", "f3"));
+        board.makeMove(TestUtils.getLegalMove(board, "g8", "f6"));
+        board.makeMove(TestUtils.getLegalMove(board, "f3", "g1"));
+
+        // Black can play Ng8, repeating the starting position.
+        Assertions.assertTrue(Score.hasUpcomingRepetition(board, 4));
+        Assertions.assertFalse(Score.isDraw(board));
+
+        // Unless the starting position is before the root of the search.
+        Assertions.assertFalse(Score.hasUpcomingRepetition(board, 3));
+
+    }
+
+    @Test
+    public void testNoUpcomingRepetitionAfterDifferentMoves() {
+
+        Board board = FEN.startpos().toBoard();
+        board.makeMove(TestUtils.getLegalMove(board, "g1", "f3"));
+        board.makeMove(TestUtils.getLegalMove(board, "g8", "f6"));
+        board.makeMove(TestUtils.getLegalMove(board, "b1", "c3"));
+
+        // Two of white's pieces have moved, so no single move by black can repeat a position.
+        Assertions.assertFalse(Score.hasUpcomingRepetition(board, 10));
+
+    }
+
+    @Test
+    public void testNoUpcomingRepetitionIfMoveIsBlocked() {
+
+        // The rook takes the long way round from a1 to a3, and can't go straight back since the knight is in the way.
+        // Meanwhile the black king takes a different route back to e8, so no earlier position is one move away.
+        Assertions.assertFalse(Score.hasUpcomingRepetition(rookDetour("4k3/8/8/8/8/8/N7/R3K3 b - - 0 1"), 10));
+
+        // Without the knight, Ra1 repeats the starting position.
+        Assertions.assertTrue(Score.hasUpcomingRepetition(rookDetour("4k3/8/8/8/8/8/8/R3K3 b - - 0 1"), 10));
+
+    }
+
+    private Board rookDetour(String fen) {
+        Board board = FEN.parse(fen).toBoard();
+        board.makeMove(TestUtils.getLegalMove(board, "e8", "d8"));
+        board.makeMove(TestUtils.getLegalMove(board, "a1", "b1"));
+        board.makeMove(TestUtils.getLegalMove(board, "d8", "c8"));
+        board.makeMove(TestUtils.getLegalMove(board, "b1", "b3"));
+        board.makeMove(TestUtils.getLegalMove(board, "c8", "d8"));
+        board.makeMove(TestUtils.getLegalMove(board, "b3", "a3"));
+        board.makeMove(TestUtils.getLegalMove(board, "d8", "e8"));
+        return board;
+    }
+
 }
@@ -26,7 +26,12 @@ public abstract class PerftTest {
         UCI.Options.chess960 = true;
         Board board = FEN.parse(getFen()).toBoard();
         Instant start = Instant.now();
-        long totalMoveCount = PERFT.perft(board, depth);
+        long totalMoveCount;
+        try {
+            totalMoveCount = PERFT.perft(board, depth);
+        } finally {
+            UCI.Options.chess960 = false;
+        }
         long totalNodeCount = PERFT.nodesSearched;
         System.out.println("totalMoveCount: " + totalNodeCount);
         Instant end = Instant.now();
@@ -0,0 +1,74 @@
+package com.kelseyde.calvin.movegen.perft;
+
+import com.kelseyde.calvin.board.Board;
+import com.kelseyde.calvin.uci.UCI;
+import com.kelseyde.calvin.utils.Perft;
+import com.kelseyde.calvin.utils.notation.FEN;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+public class PseudoLegalPerftTest {
+
+    private static final int MAX_DEPTH = 3;
+
+    private final Perft perft = new Perft(true);
+
+    @AfterEach
+    public void afterEach() {
+        UCI.Options.chess960 = false;
+    }
+
+    // In standard chess, castling moves are legal as soon as they are generated; in Chess960 mode, the legality check
+    // falls back to making and unmaking the move. Both paths are tested.
+    @Test
+    public void testPerftSuite() throws IOException {
+        perftSuite(false);
+    }
+
+    @Test
+    public void testPerftSuiteChess960() throws IOException {
+        perftSuite(true);
+    }
+
+    @Test
+    public void testKiwipete() {
+        kiwipete(false);
+    }
+
+    @Test
+    public void testKiwipeteChess960() {
+        kiwipete(true);
+    }
+
+    private void perftSuite(boolean chess960) throws IOException {
+
+        UCI.Options.chess960 = chess960;
+        List<String> lines = Files.readAllLines(Paths.get("src/test/resources/perft_suite.epd"));
+        for (String line : lines) {
+            String[] parts = line.split(";");
+            String fen = parts[0];
+            for (int depth = 1; depth < parts.length && depth <= MAX_DEPTH; depth++) {
+                long expected = Long.parseLong(parts[depth].split(" ")[1].trim());
+                Board board = FEN.parse(fen).toBoard();
+                Assertions.assertEquals(expected, perft.perft(board, depth),
+                        String.format("Fen: %s, Depth: %s, Chess960: %s", fen, depth, chess960));
+            }
+        }
+
+    }
+
+    private void kiwipete(boolean chess960) {
+
+        UCI.Options.chess960 = chess960;
+        Board board = FEN.parse("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1").toBoard();
+        Assertions.assertEquals(4085603, perft.perft(board, 4));
+
+    }
+
+}
@@ -158,6 +158,32 @@ public class QuiescentTest {
 
     }
 
+    @Test
+    public void testGenerateIntoBuffer() {
+
+        // Includes promotions, captures with promotion, en passant and castling
+        String fen = "r3k2r/1P4P1/8/3pP3/8/8/p6p/R3K2R w KQkq d6 0 1";
+        Board board = FEN.parse(fen).toBoard();
+        short[] buffer = new short[MoveGenerator.MAX_MOVES];
+
+        for (MoveGenerator.MoveFilter filter : MoveGenerator.MoveFilter.values()) {
+            int count = moveGenerator.generateMoves(board, filter, buffer);
+            List<Move> expected = moveGenerator.generateMoves(board, filter);
+            Assertions.assertEquals(expected.size(), count);
+            for (int i = 0; i < count; i++) {
+                Assertions.assertEquals(expected.get(i), new Move(buffer[i]));
+            }
+        }
+
+        int count = moveGenerator.generateMoves(board, MoveGenerator.MoveFilter.ALL, buffer);
+        long promotions = java.util.stream.IntStream.range(0, count)
+                .filter(i -> new Move(buffer[i]).from() == Move.fromUCI("g7g8").from())
+                .count();
+        // g7g8 and g7xh8, each to four pieces
+        Assertions.assertEquals(8, promotions);
+
+    }
+
     private void assertMoves(List<Move> expected, List<Move> actual) {
         Assertions.assertEquals(expected.size(), actual.size());
         Assertions.assertTrue(expected.stream().allMatch(move -> actual.stream().anyMatch(move::matches)));
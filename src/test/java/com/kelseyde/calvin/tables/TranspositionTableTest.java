@@ -6,6 +6,7 @@ import com.kelseyde.calvin.board.Piece;
 import com.kelseyde.calvin.search.Score;
 import com.kelseyde.calvin.tables.tt.HashEntry;
 import com.kelseyde.calvin.tables.tt.HashFlag;
+import com.kelseyde.calvin.tables.tt.HashStats;
 import com.kelseyde.calvin.tables.tt.TranspositionTable;
 import com.kelseyde.calvin.utils.TestUtils;
 import com.kelseyde.calvin.utils.notation.FEN;
@@ -13,6 +14,14 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class TranspositionTableTest {
 
     private TranspositionTable table;
@@ -29,7 +38,7 @@ public class TranspositionTableTest {
     public void testBasicEntry() {
 
         Board board = FEN.parse("3r1r1k/pQ1b2pp/4p1q1/2p1b3/2B2p2/2N1B2P/PPP2PP1/3R1RK1 w - - 0 23").toBoard();
-        long zobristKey = board.getState().getKey();
+        long zobristKey = board.key();
         int depth = 17;
         int score = 548;
         int flag = HashFlag.EXACT;
@@ -41,7 +50,7 @@ public class TranspositionTableTest {
     @Test
     public void testNullMoveEntry() {
         Board board = FEN.parse("3r1r1k/pQ1b2pp/4p1q1/2p1b3/2B2p2/2N1B2P/PPP2PP1/3R1RK1 w - - 0 23").toBoard();
-        long zobristKey = board.getState().getKey();
+        long zobristKey = board.key();
         int depth = 1;
         int score = 1;
         int flag = HashFlag.UPPER;
@@ -51,7 +60,7 @@ public class TranspositionTableTest {
     @Test
     public void testCheckmateEntry() {
         Board board = FEN.parse("3r1r1k/pQ1b2pp/4p1q1/2p1b3/2B2p2/2N1B2P/PPP2PP1/3R1RK1 w - - 0 23").toBoard();
-        long zobristKey = board.getState().getKey();
+        long zobristKey = board.key();
         int depth = 1;
         int score = Score.MATE;
         int flag = HashFlag.UPPER;
@@ -62,7 +71,7 @@ public class TranspositionTableTest {
     @Test
     public void testNegativeCheckmateEntry() {
         Board board = FEN.parse("3r1r1k/pQ1b2pp/4p1q1/2p1b3/2B2p2/2N1B2P/PPP2PP1/3R1RK1 w - - 0 23").toBoard();
-        long zobristKey = board.getState().getKey();
+        long zobristKey = board.key();
         int depth = 1;
         int score = -Score.MATE;
         int flag = HashFlag.UPPER;
@@ -73,7 +82,7 @@ public class TranspositionTableTest {
     @Test
     public void testMaxDepth() {
         Board board = FEN.parse("3r1r1k/pQ1b2pp/4p1q1/2p1b3/2B2p2/2N1B2P/PPP2PP1/3R1RK1 w - - 0 23").toBoard();
-        long zobristKey = board.getState().getKey();
+        long zobristKey = board.key();
         int depth = 255;
         int score = -789;
         int flag = HashFlag.UPPER;
@@ -83,7 +92,7 @@ public class TranspositionTableTest {
     @Test
     public void testPromotionFlag() {
         Board board = FEN.parse("3r1r1k/pQ1b2pp/4p1q1/2p1b3/2B2p2/2N1B2P/PPP2PP1/3R1RK1 w - - 0 23").toBoard();
-        long zobristKey = board.getState().getKey();
+        long zobristKey = board.key();
         int depth = 255;
         int score = -789;
         int flag = HashFlag.LOWER;
@@ -104,11 +113,11 @@ public class TranspositionTableTest {
         int depth = 3;
         int ply = 2;
 
-        table.put(board.getState().getKey(), flag, depth, ply, bestMove,  0, eval, true);
+        table.put(board.key(), flag, depth, ply, bestMove,  0, eval, true);
 
         // Do some more searching, return to this position
 
-        HashEntry entry = table.get(board.getState().getKey(), ply);
+        HashEntry entry = table.get(board.key(), ply);
 
         Assertions.assertNotNull(entry);
         Assertions.assertEquals(flag, entry.flag());
@@ -121,9 +130,9 @@ public class TranspositionTableTest {
         bestMove = Move.fromUCI("e2e4");
         eval = 28666;
         depth = 255;
-        table.put(board.getState().getKey(), flag, depth, ply + 1, bestMove, 0,  eval, true);
+        table.put(board.key(), flag, depth, ply + 1, bestMove, 0,  eval, true);
 
-        entry = table.get(board.getState().getKey(), ply);
+        entry = table.get(board.key(), ply);
         Assertions.assertNotNull(entry);
         Assertions.assertEquals(flag, entry.flag());
         Assertions.assertEquals(bestMove, entry.move());
@@ -134,9 +143,9 @@ public class TranspositionTableTest {
         flag = HashFlag.LOWER;
         eval = Score.MATE;
         depth = 10;
-        table.put(board.getState().getKey(), flag, depth, ply + 2, null, 0,  eval, true);
+        table.put(board.key(), flag, depth, ply + 2, null, 0,  eval, true);
 
-        entry = table.get(board.getState().getKey(), ply);
+        entry = table.get(board.key(), ply);
         Assertions.assertNotNull(entry);
         Assertions.assertEquals(flag, entry.flag());
         Assertions.assertEquals(null, entry.move());
@@ -157,22 +166,22 @@ public class TranspositionTableTest {
         int depth = 3;
         int ply = 25;
 
-        table.put(board.getState().getKey(), flag, depth, ply, bestMove, 0,  eval, false);
+        table.put(board.key(), flag, depth, ply, bestMove, 0,  eval, false);
 
         board.unmakeMove();
         board.unmakeMove();
 
         // Do some more searching, return to this position
 
-        HashEntry entry = table.get(board.getState().getKey(), ply);
+        HashEntry entry = table.get(board.key(), ply);
         Assertions.assertNull(entry);
 
         board.makeMove(TestUtils.getLegalMove(board, "e2", "e4"));
-        entry = table.get(board.getState().getKey(), ply);
+        entry = table.get(board.key(), ply);
         Assertions.assertNull(entry);
 
         board.makeMove(TestUtils.getLegalMove(board, "e7", "e5"));
-        entry = table.get(board.getState().getKey(), ply);
+        entry = table.get(board.key(), ply);
         Assertions.assertNotNull(entry);
 
     }
@@ -186,11 +195,11 @@ public class TranspositionTableTest {
         int depth = 3;
         int ply = 255;
 
-        table.put(board.getState().getKey(), flag, depth, ply, bestMove, 0,  eval, false);
+        table.put(board.key(), flag, depth, ply, bestMove, 0,  eval, false);
 
         // Do some more searching, return to this position
 
-        HashEntry entry = table.get(board.getState().getKey(), ply);
+        HashEntry entry = table.get(board.key(), ply);
 
         Assertions.assertNotNull(entry);
         Assertions.assertEquals(flag, entry.flag());
@@ -210,13 +219,13 @@ public class TranspositionTableTest {
         int plyRemaining = 10;
         int plyFromRoot = 0;
 
-        table.put(board.getState().getKey(), flag, plyRemaining, plyFromRoot, bestMove, 0, Score.MATE, true);
+        table.put(board.key(), flag, plyRemaining, plyFromRoot, bestMove, 0, Score.MATE, true);
 
-        Assertions.assertEquals(Score.MATE, table.get(board.getState().getKey(), 0).score());
+        Assertions.assertEquals(Score.MATE, table.get(board.key(), 0).score());
 
-        table.put(board.getState().getKey(), flag, plyRemaining + 1, plyFromRoot, bestMove, 0,  -Score.MATE, false);
+        table.put(board.key(), flag, plyRemaining + 1, plyFromRoot, bestMove, 0,  -Score.MATE, false);
 
-        Assertions.assertEquals(-Score.MATE, table.get(board.getState().getKey(), 0).score());
+        Assertions.assertEquals(-Score.MATE, table.get(board.key(), 0).score());
 
     }
 
@@ -228,27 +237,27 @@ public class TranspositionTableTest {
         int plyRemaining = 10;
         int plyFromRoot = 1;
 
-        table.put(board.getState().getKey(), flag, plyRemaining, plyFromRoot, bestMove, 0, Score.MATE, true);
+        table.put(board.key(), flag, plyRemaining, plyFromRoot, bestMove, 0, Score.MATE, true);
 
-        Assertions.assertEquals(Score.MATE - 1, table.get(board.getState().getKey(), 0).score());
+        Assertions.assertEquals(Score.MATE - 1, table.get(board.key(), 0).score());
 
-        table.put(board.getState().getKey(), flag, plyRemaining + 1, plyFromRoot, bestMove, 0, -Score.MATE, false);
+        table.put(board.key(), flag, plyRemaining + 1, plyFromRoot, bestMove, 0, -Score.MATE, false);
 
-        Assertions.assertEquals(-Score.MATE + 1, table.get(board.getState().getKey(), 0).score());
+        Assertions.assertEquals(-Score.MATE + 1, table.get(board.key(), 0).score());
 
     }
 
     @Test
     public void testScorePositiveCheckmateThenAccessFromDeeperPly() {
 
-        long zobrist = board.getState().getKey();
+        long zobrist = board.key();
         int flag = HashFlag.EXACT;
         Move bestMove = Move.fromUCI("e7e8b");
         int eval = Score.MATE;
         int plyRemaining = 10;
         int plyFromRoot = 5;
 
-        table.put(board.getState().getKey(), flag, plyRemaining, plyFromRoot, bestMove, 0,  eval, true);
+        table.put(board.key(), flag, plyRemaining, plyFromRoot, bestMove, 0,  eval, true);
 
         Assertions.assertEquals(Score.MATE, table.get(zobrist, 5).score());
         Assertions.assertEquals(Score.MATE - 1, table.get(zobrist, 4).score());
@@ -261,20 +270,20 @@ public class TranspositionTableTest {
     @Test
     public void testDoesNotReplaceEntryWithMoreDepth() {
 
-        long zobrist = board.getState().getKey();
+        long zobrist = board.key();
         int flag = HashFlag.EXACT;
         Move bestMove = Move.fromUCI("e2e4");
         int eval = 60;
         int plyFromRoot = 0;
         int plyRemaining = 12;
 
-        table.put(board.getState().getKey(), flag, plyRemaining, plyFromRoot, bestMove, 0,  eval, false);
+        table.put(board.key(), flag, plyRemaining, plyFromRoot, bestMove, 0,  eval, false);
 
         flag = HashFlag.UPPER;
         eval = 70;
         plyRemaining = 11;
         bestMove = Move.fromUCI("e2e4");
-        table.put(board.getState().getKey(), flag, plyRemaining, plyFromRoot, bestMove, 0,  eval, true);
+        table.put(board.key(), flag, plyRemaining, plyFromRoot, bestMove, 0,  eval, true);
 
         assertEntry(zobrist, 60, Move.fromUCI("e2e4"), HashFlag.EXACT, 12, true);
 
@@ -283,68 +292,188 @@ public class TranspositionTableTest {
     @Test
     public void testReplacesEntryWithLessDepth() {
 
-        long zobrist = board.getState().getKey();
+        long zobrist = board.key();
         int flag = HashFlag.EXACT;
         Move bestMove = Move.fromUCI("e2e4");
         int eval = 60;
         int plyFromRoot = 0;
         int plyRemaining = 12;
 
-        table.put(board.getState().getKey(), flag, plyRemaining, plyFromRoot, bestMove, 0,  eval, false);
+        table.put(board.key(), flag, plyRemaining, plyFromRoot, bestMove, 0,  eval, false);
 
         flag = HashFlag.UPPER;
         eval = 70;
         plyRemaining = 13;
         bestMove = Move.fromUCI("e2e4");
-        table.put(board.getState().getKey(), flag, plyRemaining, plyFromRoot, bestMove, 0,  eval, true);
+        table.put(board.key(), flag, plyRemaining, plyFromRoot, bestMove, 0,  eval, true);
 
         assertEntry(zobrist, 60, bestMove, flag, 13, true);
 
     }
 
     @Test
-    public void testStoreOnlyStaticEvalInTt() {
+    public void testTTPV() {
 
         long key = board.key();
-        int flag = HashFlag.NONE;
-        int depth = 0;
-        int ply = 0;
-        int eval = 126;
-        int score = 0;
 
-        table.put(key, flag, depth, ply, null, eval, score, true);
+        table.put(key, HashFlag.EXACT, 0, 0, Move.fromUCI("e2e4"), 0, 0, true);
+        HashEntry entry = table.get(key, 0);
+        Assertions.assertTrue(entry.pv());
+
+        table.put(key, HashFlag.EXACT, 0, 0, Move.fromUCI("e2e4"), 0, 0, false);
+        entry = table.get(key, 0);
+        Assertions.assertFalse(entry.pv());
+
+    }
+
+    @Test
+    public void testConcurrentReadsAndWritesNeverReturnTornEntries() throws Exception {
+
+        // Use a tiny table and a small pool of keys, so that many threads contend for the same buckets.
+        TranspositionTable table = new TranspositionTable(1);
+        int threadCount = 8;
+        int iterations = 500000;
+        long[] keys = new Random(0).longs(4096).toArray();
+
+        AtomicInteger hits = new AtomicInteger();
+        AtomicInteger tornEntries = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            Future<?>[] futures = new Future<?>[threadCount];
+            for (int t = 0; t < threadCount; t++) {
+                Random random = new Random(t);
+                futures[t] = executor.submit(() -> {
+                    for (int i = 0; i < iterations; i++) {
+                        long key = keys[random.nextInt(keys.length)];
+                        if (random.nextBoolean()) {
+                            table.put(key, HashFlag.EXACT, random.nextInt(20), 0, null, expectedStaticEval(key), expectedScore(key), false);
+                        } else {
+                            HashEntry entry = table.get(key, 0);
+                            if (entry == null) continue;
+                            hits.incrementAndGet();
+                            if (entry.score() != expectedScore(key) || entry.staticEval() != expectedStaticEval(key)) {
+                                tornEntries.incrementAndGet();
+                            }
+                        }
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assertions.assertTrue(hits.get() > 0);
+        Assertions.assertEquals(0, tornEntries.get());
 
-        HashEntry ttEntry = table.get(key, ply);
+    }
 
-        Assertions.assertNotNull(ttEntry);
-        Assertions.assertEquals(HashFlag.NONE, ttEntry.flag());
-        Assertions.assertNull(ttEntry.move());
-        Assertions.assertEquals(126, ttEntry.staticEval());
-        Assertions.assertEquals(0, ttEntry.score());
-        Assertions.assertEquals(0, ttEntry.depth());
-        Assertions.assertTrue(ttEntry.pv());
+    @Test
+    public void testSaveAndLoad() throws Exception {
+
+        long[] keys = new Random(0).longs(1000).toArray();
+        for (long key : keys) {
+            table.put(key, HashFlag.LOWER, 7, 0, Move.fromUCI("e2e4"), expectedStaticEval(key), expectedScore(key), true);
+        }
+
+        Path path = Files.createTempFile("calvin", ".hash");
+        try {
+            table.save(path);
+            TranspositionTable loaded = new TranspositionTable(1);
+            loaded.load(path);
+
+            Assertions.assertEquals(table.size(), loaded.size());
+            for (long key : keys) {
+                Assertions.assertEquals(table.get(key, 0), loaded.get(key, 0));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
 
     }
 
     @Test
-    public void testTTPV() {
+    public void testStatsCountHitsAndMisses() {
 
+        table.setStatsEnabled(true);
         long key = board.key();
+        table.get(key, 0);
+        table.put(key, HashFlag.EXACT, 5, 0, Move.fromUCI("e2e4"), 0, 100, true);
+        table.get(key, 0);
+        table.put(key, HashFlag.LOWER, 0, 0, Move.fromUCI("d2d4"), 0, 50, false);
 
-        table.put(key, HashFlag.EXACT, 0, 0, Move.fromUCI("e2e4"), 0, 0, true);
-        HashEntry entry = table.get(key, 0);
-        Assertions.assertTrue(entry.pv());
+        HashStats stats = table.getStats();
+        Assertions.assertEquals(2, stats.probes.sum());
+        Assertions.assertEquals(1, stats.hits.sum());
+        Assertions.assertEquals(0.5, stats.hitRate());
+        Assertions.assertEquals(1, stats.replacedEmpty.sum());
+        Assertions.assertEquals(1, stats.rejected.sum());
 
-        table.put(key, HashFlag.EXACT, 0, 0, Move.fromUCI("e2e4"), 0, 0, false);
-        entry = table.get(key, 0);
-        Assertions.assertFalse(entry.pv());
+        stats.reset();
+        Assertions.assertEquals(0, stats.probes.sum());
+
+    }
+
+    @Test
+    public void testStatsCountFullBucketMisses() {
+
+        TranspositionTable table = new TranspositionTable(1);
+        table.setStatsEnabled(true);
+        Random random = new Random(0);
+        long key = random.nextLong();
+        table.get(key, 0);
+        Assertions.assertEquals(0, table.getStats().fullBucketMisses.sum());
+
+        // Once every bucket is full, a probe for a new position misses against four other positions.
+        random.longs(8 * table.size()).forEach(k ->
+                table.put(k, HashFlag.LOWER, 3, 0, Move.fromUCI("e2e4"), 0, 0, false));
+        table.getStats().reset();
+        table.get(random.nextLong(), 0);
+        Assertions.assertEquals(1, table.getStats().probes.sum());
+        Assertions.assertEquals(1, table.getStats().fullBucketMisses.sum());
+
+    }
+
+    @Test
+    public void testStatsDisabledByDefault() {
+
+        long key = board.key();
+        table.put(key, HashFlag.EXACT, 5, 0, Move.fromUCI("e2e4"), 0, 100, true);
+        table.get(key, 0);
+        Assertions.assertEquals(0, table.getStats().probes.sum());
+        Assertions.assertEquals(0, table.getStats().replacedEmpty.sum());
+
+    }
+
+    @Test
+    public void testFillIgnoresEntriesFromPreviousSearches() {
+
+        TranspositionTable table = new TranspositionTable(1);
+        Assertions.assertEquals(0, table.fill());
+
+        new Random(0).longs(4 * table.size()).forEach(key ->
+                table.put(key, HashFlag.LOWER, 3, 0, Move.fromUCI("e2e4"), 0, 0, false));
+        Assertions.assertTrue(table.fill() > 900);
+
+        table.birthday();
+        Assertions.assertEquals(0, table.fill());
+
+    }
+
+    // Derive the stored data from the key, so that any entry can be checked for consistency.
+    private int expectedScore(long key) {
+        return (int) ((key >>> 40) & 0x3FF);
+    }
 
+    private int expectedStaticEval(long key) {
+        return (int) ((key >>> 50) & 0x3FF);
     }
 
     private void assertEntry(long zobrist, int score, Move move, int flag, int depth, boolean pv) {
-        long key = HashEntry.Key.of(zobrist, 0, 0);
-        long value = HashEntry.Value.of(score, move, flag, depth, pv);
-        HashEntry entry = HashEntry.of(key, value);
+        long value = HashEntry.Value.of(score, 0, move, flag, depth, pv);
+        HashEntry entry = HashEntry.of(value);
         Assertions.assertEquals(depth, entry.depth());
         Assertions.assertEquals(score, entry.score());
         Assertions.assertEquals(flag, entry.flag());